@@ -0,0 +1,56 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.bytecode.AndroidTranslator;
+import com.xtremelabs.robolectric.bytecode.ClassCache;
+import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import javassist.ClassPool;
+import javassist.LoaderClassPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for {@link AndroidTranslator#onLoad} to instrument one Android class read from a cold {@link ClassPool}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class AndroidTranslatorBenchmark {
+    @Param({"android.view.View", "android.widget.TextView", "android.app.Activity"})
+    public String className;
+
+    private AndroidTranslator androidTranslator;
+    private ClassPool classPool;
+
+    @Setup
+    public void createTranslator() throws Exception {
+        String classCachePath = BenchmarkFiles.newTempDirectory("robolectric-classes").getPath();
+        androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), new ClassCache(classCachePath, AndroidTranslator.CACHE_VERSION));
+    }
+
+    @Setup(Level.Invocation)
+    public void createClassPool() {
+        classPool = new ClassPool();
+        classPool.appendClassPath(new LoaderClassPath(AndroidTranslatorBenchmark.class.getClassLoader()));
+    }
+
+    @Benchmark
+    public ClassPool instrument() throws Exception {
+        androidTranslator.onLoad(classPool, className);
+        return classPool;
+    }
+}
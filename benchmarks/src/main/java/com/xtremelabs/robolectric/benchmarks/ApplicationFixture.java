@@ -0,0 +1,35 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import android.app.Application;
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.res.ResourceLoader;
+import com.xtremelabs.robolectric.shadows.ShadowApplication;
+import com.xtremelabs.robolectric.util.DatabaseConfig;
+import com.xtremelabs.robolectric.util.SQLiteMap;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * A fixture that runs inside an {@link InstrumentedEnvironment} with the application set up the way
+ * {@link com.xtremelabs.robolectric.RobolectricTestRunner} sets it up before a test, against the test resources.
+ */
+public abstract class ApplicationFixture implements Callable<Object> {
+    public static final int SDK_VERSION = 16;
+
+    protected final ResourceLoader resourceLoader;
+
+    protected ApplicationFixture() throws Exception {
+        resourceLoader = newResourceLoader();
+        Robolectric.bindDefaultShadowClasses();
+        Robolectric.resetStaticState();
+        DatabaseConfig.setDatabaseMap(new SQLiteMap());
+        Robolectric.application = ShadowApplication.bind(new Application(), resourceLoader);
+    }
+
+    protected static ResourceLoader newResourceLoader() throws Exception {
+        File testResourcesDir = InstrumentedEnvironment.testResourcesDir();
+        return new ResourceLoader(SDK_VERSION, R.class, new File(testResourcesDir, "res"), new File(testResourcesDir, "assets"));
+    }
+}
@@ -0,0 +1,32 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+class BenchmarkFiles {
+    /**
+     * @return a new empty directory that's deleted, with its contents, when the JVM exits
+     */
+    static File newTempDirectory(String prefix) throws IOException {
+        final File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("couldn't create " + dir);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override public void run() {
+                delete(dir);
+            }
+        });
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,37 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for a new {@link com.xtremelabs.robolectric.bytecode.RobolectricClassLoader} to load {@code Activity} and
+ * everything it pulls in, as each test class's runner does. The class cache is kept in a fresh directory per fork, so
+ * the first iteration instruments everything and later ones read the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+public class ClassLoaderBootstrapBenchmark {
+    @Setup
+    public void useFreshClassCache() throws Exception {
+        System.setProperty("cached.robolectric.classes.path", BenchmarkFiles.newTempDirectory("robolectric-classes").getPath());
+    }
+
+    @Benchmark
+    public Class<?> loadActivity() throws Exception {
+        return InstrumentedEnvironment.newClassLoader().loadClass("android.app.Activity");
+    }
+}
@@ -0,0 +1,55 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.tester.org.apache.http.FakeHttpLayer;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link FakeHttpLayer#emulateRequest} finding a response among {@link #ruleCount} rules, where the
+ * request matches the last rule added.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class FakeHttpLayerBenchmark {
+    @Param({"1", "100"})
+    public int ruleCount;
+
+    private FakeHttpLayer fakeHttpLayer;
+    private HttpHost host;
+    private HttpGet request;
+
+    @Setup
+    public void addRules() {
+        fakeHttpLayer = new FakeHttpLayer();
+        for (int i = 0; i < ruleCount; i++) {
+            fakeHttpLayer.addHttpResponseRule("http://example.com/" + i, "response " + i);
+        }
+        host = new HttpHost("example.com");
+        request = new HttpGet("http://example.com/" + (ruleCount - 1));
+    }
+
+    @Benchmark
+    public HttpResponse emulateRequest() throws Exception {
+        HttpResponse response = fakeHttpLayer.emulateRequest(host, request, null, null);
+        fakeHttpLayer.clearRequestInfos();
+        return response;
+    }
+}
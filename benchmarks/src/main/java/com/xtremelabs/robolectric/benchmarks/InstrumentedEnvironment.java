@@ -0,0 +1,53 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
+import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * Sets up the same instrumenting class loader {@link RobolectricTestRunner} does, delegating the same classes, so
+ * benchmarks can exercise code that uses Android classes. Fixtures are loaded through that class loader and driven
+ * through {@link Callable}, which both sides share.
+ */
+public class InstrumentedEnvironment {
+    public static final String TEST_RESOURCES_PROPERTY = "robolectric.benchmarks.testResources";
+
+    public static RobolectricClassLoader newClassLoader() {
+        RobolectricClassLoader classLoader = new RobolectricClassLoader(ShadowWrangler.getInstance());
+        for (String className : RobolectricTestRunner.getDelegatedClassNames()) {
+            classLoader.delegateLoadingOf(className);
+        }
+        return classLoader;
+    }
+
+    /**
+     * Loads {@code fixtureClass} through a new instrumenting class loader and creates one with its no-arg constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Callable<T> newFixture(Class<? extends Callable<T>> fixtureClass) throws Exception {
+        RobolectricClassLoader classLoader = newClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+        return (Callable<T>) classLoader.bootstrap(fixtureClass).newInstance();
+    }
+
+    /**
+     * @return the directory holding Robolectric's test fixtures, which the test R class describes
+     */
+    public static File testResourcesDir() {
+        String path = System.getProperty(TEST_RESOURCES_PROPERTY);
+        if (path != null) {
+            return new File(path);
+        }
+        for (String candidate : new String[] {"src/test/resources", "../src/test/resources"}) {
+            File dir = new File(candidate);
+            if (new File(dir, "TestAndroidManifest.xml").isFile()) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("can't find Robolectric's test resources; run from the Robolectric checkout or set -D"
+                + TEST_RESOURCES_PROPERTY);
+    }
+}
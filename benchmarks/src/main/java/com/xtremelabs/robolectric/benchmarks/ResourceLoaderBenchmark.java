@@ -0,0 +1,47 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.res.ResourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to create a {@link ResourceLoader} for the test resources and parse them, which it does on first use.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ResourceLoaderBenchmark {
+    private Callable<Object> loadResources;
+
+    @Setup
+    public void createFixture() throws Exception {
+        loadResources = InstrumentedEnvironment.newFixture(LoadResources.class);
+    }
+
+    @Benchmark
+    public Object loadResources() throws Exception {
+        return loadResources.call();
+    }
+
+    public static class LoadResources implements Callable<Object> {
+        @Override public Object call() throws Exception {
+            ResourceLoader resourceLoader = ApplicationFixture.newResourceLoader();
+            return resourceLoader.getStringValue(R.string.hello);
+        }
+    }
+}
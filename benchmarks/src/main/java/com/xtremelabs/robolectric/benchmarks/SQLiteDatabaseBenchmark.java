@@ -0,0 +1,149 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of single-row inserts, primary key queries and full table scans through {@code ShadowSQLiteDatabase},
+ * backed by the in-memory database tests get by default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SQLiteDatabaseBenchmark {
+    private static final int ROW_COUNT = 1000;
+    private static final int SCAN_ROW_COUNT = 10000;
+
+    /**
+     * Each benchmark loads its own fixture: the SQLite driver's native library can only be loaded by one class loader.
+     */
+    @State(Scope.Thread)
+    public static class InsertState {
+        Callable<Object> insert;
+
+        @Setup
+        public void createFixture() throws Exception {
+            insert = InstrumentedEnvironment.newFixture(Insert.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QueryState {
+        Callable<Object> query;
+
+        @Setup
+        public void createFixture() throws Exception {
+            query = InstrumentedEnvironment.newFixture(Query.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ScanState {
+        Callable<Object> scan;
+
+        @Setup
+        public void createFixture() throws Exception {
+            scan = InstrumentedEnvironment.newFixture(Scan.class);
+        }
+    }
+
+    @Benchmark
+    public Object insert(InsertState state) throws Exception {
+        return state.insert.call();
+    }
+
+    @Benchmark
+    public Object queryById(QueryState state) throws Exception {
+        return state.query.call();
+    }
+
+    @Benchmark
+    public Object scanTable(ScanState state) throws Exception {
+        return state.scan.call();
+    }
+
+    public abstract static class DatabaseFixture extends ApplicationFixture {
+        protected final SQLiteDatabase database;
+
+        protected DatabaseFixture() throws Exception {
+            database = SQLiteDatabase.openDatabase("path", null, 0);
+            database.execSQL("CREATE TABLE rows (id INTEGER PRIMARY KEY AUTOINCREMENT, name VARCHAR(255), value INTEGER)");
+        }
+
+        protected long insertRow(int i) {
+            ContentValues values = new ContentValues();
+            values.put("name", "row " + i);
+            values.put("value", i);
+            return database.insert("rows", null, values);
+        }
+    }
+
+    public static class Insert extends DatabaseFixture {
+        private int i;
+
+        public Insert() throws Exception {
+        }
+
+        @Override public Object call() throws Exception {
+            return insertRow(i++);
+        }
+    }
+
+    public static class Query extends DatabaseFixture {
+        private int i;
+
+        public Query() throws Exception {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                insertRow(i);
+            }
+        }
+
+        @Override public Object call() throws Exception {
+            String id = String.valueOf(i++ % ROW_COUNT + 1);
+            Cursor cursor = database.query("rows", new String[] {"name", "value"}, "id = ?", new String[] {id}, null, null, null);
+            try {
+                cursor.moveToFirst();
+                return cursor.getString(0);
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    public static class Scan extends DatabaseFixture {
+        public Scan() throws Exception {
+            for (int i = 0; i < SCAN_ROW_COUNT; i++) {
+                insertRow(i);
+            }
+        }
+
+        @Override public Object call() throws Exception {
+            Cursor cursor = database.query("rows", new String[] {"name", "value"}, null, null, null, null, null);
+            try {
+                long sum = 0;
+                while (cursor.moveToNext()) {
+                    sum += cursor.getLong(1);
+                }
+                return sum;
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.util.Scheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to post {@link #runnableCount} delayed runnables to a paused {@link Scheduler} and then run them all, and to
+ * advance past {@link #runnableCount} runs of a runnable that keeps posting itself, as polling code does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SchedulerBenchmark {
+    @Param({"1000", "100000"})
+    public int runnableCount;
+
+    private final Counter counter = new Counter();
+
+    @Benchmark
+    public int postAndDrain() {
+        Scheduler scheduler = new Scheduler();
+        scheduler.pause();
+        counter.count = 0;
+        for (int i = 0; i < runnableCount; i++) {
+            scheduler.postDelayed(counter, i % 100);
+        }
+        scheduler.advanceToLastPostedRunnable();
+        return counter.count;
+    }
+
+    @Benchmark
+    public int pollRepeatedly() {
+        final Scheduler scheduler = new Scheduler();
+        scheduler.pause();
+        Counter poller = new Counter() {
+            @Override public void run() {
+                super.run();
+                scheduler.postDelayed(this, 10);
+            }
+        };
+        scheduler.postDelayed(poller, 10);
+        scheduler.advanceBy(10L * runnableCount);
+        return poller.count;
+    }
+
+    private static class Counter implements Runnable {
+        int count;
+
+        @Override public void run() {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.bytecode.MethodCallSite;
+import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import com.xtremelabs.robolectric.internal.Implementation;
+import com.xtremelabs.robolectric.internal.Implements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ShadowWrangler#methodInvoked}, the call every instrumented Android method makes, for a method
+ * with a shadow implementation and for one without.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ShadowWranglerBenchmark {
+    private static final String[] NO_PARAM_TYPES = new String[0];
+
+    private ShadowWrangler shadowWrangler;
+    private Dispatched instance;
+    private MethodCallSite shadowedCallSite;
+
+    @Setup
+    public void bindShadow() {
+        shadowWrangler = ShadowWrangler.getInstance();
+        shadowWrangler.beforeTest();
+        shadowWrangler.silence();
+        shadowWrangler.bindShadowClass(Dispatched.class, ShadowDispatched.class);
+        instance = new Dispatched();
+        shadowedCallSite = new MethodCallSite(Dispatched.class, "getValue", NO_PARAM_TYPES);
+    }
+
+    @Benchmark
+    public Object shadowedByName() throws Throwable {
+        return shadowWrangler.methodInvoked(Dispatched.class, "getValue", instance, NO_PARAM_TYPES, MethodCallSite.NO_PARAMS);
+    }
+
+    @Benchmark
+    public Object shadowedByCallSite() throws Throwable {
+        return shadowWrangler.methodInvoked(shadowedCallSite, instance, MethodCallSite.NO_PARAMS);
+    }
+
+    @Benchmark
+    public Object unshadowedByName() throws Throwable {
+        return shadowWrangler.methodInvoked(Dispatched.class, "getOtherValue", instance, NO_PARAM_TYPES, MethodCallSite.NO_PARAMS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object shadowedByCallSiteFromFourThreads() throws Throwable {
+        return shadowWrangler.methodInvoked(shadowedCallSite, instance, MethodCallSite.NO_PARAMS);
+    }
+
+    /**
+     * Stands in for an instrumented Android class; it only needs the field instrumentation would have added.
+     */
+    public static class Dispatched {
+        public Object __shadow__;
+
+        public String getValue() {
+            return "real";
+        }
+
+        public String getOtherValue() {
+            return "real";
+        }
+    }
+
+    @Implements(Dispatched.class)
+    public static class ShadowDispatched {
+        @Implementation
+        public String getValue() {
+            return "shadow";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.xtremelabs.robolectric.benchmarks;
+
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.res.AttrResourceLoader;
+import com.xtremelabs.robolectric.res.ViewLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to inflate a layout: the test resources' {@code main} layout, their {@code media} layout, which
+ * {@code <include>}s another with overridden attributes, and a synthetic one nesting {@link #depth}
+ * {@code LinearLayout}s, each holding a {@code TextView}, which is deeper than anything in the test resources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ViewInflationBenchmark {
+    @Param({"30"})
+    public int depth;
+
+    private Callable<Object> inflateMainLayout;
+    private Callable<Object> inflateMediaLayout;
+    private Callable<Object> inflateDeepLayout;
+
+    @Setup
+    public void createFixtures() throws Exception {
+        System.setProperty(InflateDeepLayout.DEPTH_PROPERTY, String.valueOf(depth));
+        inflateMainLayout = InstrumentedEnvironment.newFixture(InflateMainLayout.class);
+        inflateMediaLayout = InstrumentedEnvironment.newFixture(InflateMediaLayout.class);
+        inflateDeepLayout = InstrumentedEnvironment.newFixture(InflateDeepLayout.class);
+    }
+
+    @Benchmark
+    public Object inflateMainLayout() throws Exception {
+        return inflateMainLayout.call();
+    }
+
+    @Benchmark
+    public Object inflateMediaLayout() throws Exception {
+        return inflateMediaLayout.call();
+    }
+
+    @Benchmark
+    public Object inflateDeepLayout() throws Exception {
+        return inflateDeepLayout.call();
+    }
+
+    public static class InflateMainLayout extends ApplicationFixture {
+        public InflateMainLayout() throws Exception {
+        }
+
+        @Override public Object call() throws Exception {
+            return resourceLoader.inflateView(Robolectric.application, R.layout.main, null);
+        }
+    }
+
+    public static class InflateMediaLayout extends ApplicationFixture {
+        public InflateMediaLayout() throws Exception {
+        }
+
+        @Override public Object call() throws Exception {
+            return resourceLoader.inflateView(Robolectric.application, R.layout.media, null);
+        }
+    }
+
+    public static class InflateDeepLayout extends ApplicationFixture {
+        static final String DEPTH_PROPERTY = "robolectric.benchmarks.layoutDepth";
+
+        private final ViewLoader.ViewNode root;
+
+        public InflateDeepLayout() throws Exception {
+            ViewLoader viewLoader = new ViewLoader(resourceLoader.getResourceExtractor(),
+                    new AttrResourceLoader(resourceLoader.getResourceExtractor()));
+            int depth = Integer.parseInt(System.getProperty(DEPTH_PROPERTY));
+
+            root = newLinearLayout(viewLoader);
+            ViewLoader.ViewNode parent = root;
+            for (int i = 0; i < depth; i++) {
+                Map<String, String> textViewAttributes = new HashMap<String, String>();
+                textViewAttributes.put("android:text", "level " + i);
+                parent.addChild(viewLoader.new ViewNode("TextView", textViewAttributes, false));
+
+                ViewLoader.ViewNode child = newLinearLayout(viewLoader);
+                parent.addChild(child);
+                parent = child;
+            }
+        }
+
+        private static ViewLoader.ViewNode newLinearLayout(ViewLoader viewLoader) {
+            Map<String, String> attributes = new HashMap<String, String>();
+            attributes.put("android:orientation", "vertical");
+            attributes.put("android:layout_width", "fill_parent");
+            attributes.put("android:layout_height", "wrap_content");
+            return viewLoader.new ViewNode("LinearLayout", attributes, false);
+        }
+
+        @Override public Object call() throws Exception {
+            return root.inflate(Robolectric.application, null);
+        }
+    }
+}
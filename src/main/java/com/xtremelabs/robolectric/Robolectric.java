@@ -62,6 +62,7 @@ import android.widget.*;
 import com.xtremelabs.robolectric.bytecode.DirectCallPolicy.FullStackDirectCallPolicy;
 import com.xtremelabs.robolectric.bytecode.RobolectricInternals;
 import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.shadows.*;
 import com.xtremelabs.robolectric.tester.org.apache.http.FakeHttpLayer;
 import com.xtremelabs.robolectric.tester.org.apache.http.HttpRequestInfo;
@@ -78,7 +79,12 @@ import java.util.Arrays;
 import java.util.List;
 
 public class Robolectric {
+    /**
+     * The application for the test that's running. When {@link RobolectricContext#isPerThread() each thread has its
+     * own state}, this only holds the application of the test started most recently; use {@link #getApplication()}.
+     */
     public static Application application;
+    private static final RobolectricContext.Slot<Application> applicationForContext = new RobolectricContext.Slot<Application>();
     public static final int DEFAULT_SDK_VERSION = 16;
 
     public static <T> T newInstanceOf(Class<T> clazz) {
@@ -104,8 +110,16 @@ public class Robolectric {
         RobolectricInternals.bindShadowClass(shadowClass);
     }
 
+    /**
+     * Binds the default shadow classes. The bindings are worked out the first time this is called and reused after
+     * that, so calling it before every test is cheap.
+     */
     public static void bindDefaultShadowClasses() {
-        bindShadowClasses(getDefaultShadowClasses());
+        ShadowWrangler shadowWrangler = ShadowWrangler.getInstance();
+        if (!shadowWrangler.hasDefaultShadowClasses()) {
+            shadowWrangler.setDefaultShadowClasses(RobolectricInternals.getShadowClassBindings(getDefaultShadowClasses()));
+        }
+        shadowWrangler.bindDefaultShadowClasses();
     }
 
     public static void bindShadowClasses(List<Class<?>> shadowClasses) {
@@ -386,7 +400,7 @@ public class Robolectric {
 
     public static void resetStaticState() {
         ShadowWrangler.getInstance().silence();
-        Robolectric.application = new Application();
+        setApplication(new Application());
         ShadowBitmapFactory.reset();
         ShadowDrawable.reset();
         ShadowMediaStore.reset();
@@ -1121,13 +1135,32 @@ public class Robolectric {
     }
 
     /**
-     * Runs any background tasks previously queued by {@link android.os.AsyncTask#execute(Object[])}.
+     * Runs any background tasks previously queued by {@link android.os.AsyncTask#execute(Object[])}. If background
+     * tasks run on worker threads (see {@link ShadowApplication#BACKGROUND_THREADS_PROPERTY}), waits for them, and for
+     * any tasks they queue in turn, to finish.
      * <p/>
      * <p/>
      * Note: calling this method does not pause or un-pause the scheduler.
      */
     public static void runBackgroundTasks() {
-        getBackgroundScheduler().advanceBy(0);
+        Scheduler backgroundScheduler = getBackgroundScheduler();
+        do {
+            backgroundScheduler.advanceBy(0);
+            waitForBackgroundTasks();
+        } while (backgroundScheduler.areAnyRunnable());
+    }
+
+    /**
+     * Waits for background tasks already running on worker threads to finish, without starting any more; see
+     * {@link ShadowApplication#BACKGROUND_THREADS_PROPERTY}.
+     */
+    public static void waitForBackgroundTasks() {
+        try {
+            getBackgroundScheduler().waitForIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -1329,7 +1362,19 @@ public class Robolectric {
     }
 
     public static ShadowApplication getShadowApplication() {
-        return shadowOf(Robolectric.application);
+        return shadowOf(getApplication());
+    }
+
+    /**
+     * @return the application for the test running on this thread
+     */
+    public static Application getApplication() {
+        return RobolectricContext.isPerThread() ? applicationForContext.get() : application;
+    }
+
+    public static void setApplication(Application application) {
+        Robolectric.application = application;
+        applicationForContext.set(application);
     }
 
     public static void setDisplayMetricsDensity(float densityMultiplier) {
@@ -3,9 +3,12 @@ package com.xtremelabs.robolectric;
 import android.app.Application;
 import android.net.Uri__FromAndroid;
 import com.xtremelabs.robolectric.bytecode.ClassHandler;
+import com.xtremelabs.robolectric.bytecode.ClassLoaderPool;
 import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
 import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import com.xtremelabs.robolectric.bytecode.RunnerProfiler;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.internal.RobolectricTestRunnerInterface;
 import com.xtremelabs.robolectric.res.ResourceLoader;
 import com.xtremelabs.robolectric.shadows.ShadowApplication;
@@ -33,7 +36,9 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -57,18 +62,31 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
 	// fields in the RobolectricTestRunner in the instrumented ClassLoader
     protected RobolectricConfig robolectricConfig;
 
-    private static RobolectricClassLoader getDefaultLoader() {
+    private static synchronized RobolectricClassLoader getDefaultLoader() {
         if (defaultLoader == null) {
-            defaultLoader = new RobolectricClassLoader(ShadowWrangler.getInstance());
+            defaultLoader = ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), null);
         }
         return defaultLoader;
     }
 
+    /**
+     * Returns the class loader shared by every runner that instruments the given classes or packages besides the
+     * Android ones, for subclasses that pass their own loader to
+     * {@link #RobolectricTestRunner(Class, ClassHandler, RobolectricClassLoader, RobolectricConfig)}. Test classes run
+     * with the same loader only instrument and load each class once between them.
+     *
+     * @param classOrPackageNames fully-qualified class or package names
+     * @return the shared loader
+     */
+    protected static RobolectricClassLoader getClassLoaderInstrumenting(String... classOrPackageNames) {
+        return ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), Arrays.asList(classOrPackageNames));
+    }
+
     public static void setInstrumentDetector(final InstrumentDetector detector) {
       instrumentDetector = detector;
     }
 
-    public static void setDefaultLoader(Loader robolectricClassLoader) {
+    public static synchronized void setDefaultLoader(Loader robolectricClassLoader) {
     	//used by the RoboSpecs project to allow for mixed scala\java tests to be run with Maven Surefire (see the RoboSpecs project on github)
         if (defaultLoader == null) {
             defaultLoader = (RobolectricClassLoader)robolectricClassLoader;
@@ -80,11 +98,14 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
      * into "do nothing" classes which proxy all method calls to shadow classes, just like it does
      * with the android classes by default.
      *
+     * The default loader goes on instrumenting them for the rest of the run; the pool hands out a new one to
+     * runners that ask for a loader instrumenting only the Android classes.
+     *
      * @param classOrPackageToBeInstrumented fully-qualified class or package name
      */
     protected static void addClassOrPackageToInstrument(String classOrPackageToBeInstrumented) {
         if (!isInstrumented()) {
-            defaultLoader.addCustomShadowClass(classOrPackageToBeInstrumented);
+            ClassLoaderPool.addCustomClass(getDefaultLoader(), classOrPackageToBeInstrumented);
         }
     }
 
@@ -222,13 +243,9 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
 
             Thread.currentThread().setContextClassLoader(classLoader);
 
-            delegateLoadingOf(Uri__FromAndroid.class.getName());
-            delegateLoadingOf(RobolectricTestRunnerInterface.class.getName());
-            delegateLoadingOf(RealObject.class.getName());
-            delegateLoadingOf(ShadowWrangler.class.getName());
-            delegateLoadingOf(RobolectricConfig.class.getName());
-            delegateLoadingOf(DatabaseMap.class.getName());
-            delegateLoadingOf(android.R.class.getName());
+            for (String className : getDelegatedClassNames()) {
+                delegateLoadingOf(className);
+            }
 
             Class<?> delegateClass = classLoader.bootstrap(this.getClass());
             try {
@@ -263,11 +280,35 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
         Robolectric.Reflection.setFinalStaticField(clazz, fieldName, value);
     }
 
+    /**
+     * @return the classes the runner's instrumenting class loader leaves to the class loader that loaded Robolectric,
+     *         so the runner and the tests it runs share them. Anything else that sets up an instrumenting class loader
+     *         the way the runner does should delegate the same classes.
+     */
+    public static List<String> getDelegatedClassNames() {
+        return Arrays.asList(
+                Uri__FromAndroid.class.getName(),
+                RobolectricTestRunnerInterface.class.getName(),
+                RealObject.class.getName(),
+                ShadowWrangler.class.getName(),
+                RobolectricConfig.class.getName(),
+                DatabaseMap.class.getName(),
+                DatabaseConfig.SnapshotableDatabaseMap.class.getName(),
+                DatabaseConfig.DatabaseSnapshot.class.getName(),
+                DatabaseConfig.FileDatabaseMap.class.getName(),
+                android.R.class.getName());
+    }
+
     protected void delegateLoadingOf(final String className) {
         classLoader.delegateLoadingOf(className);
     }
 
     @Override protected Statement methodBlock(final FrameworkMethod method) {
+        RunnerProfiler.startTest(getTestClass().getName() + "." + method.getName());
+        long phaseStart = RunnerProfiler.startPhase();
+
+        RobolectricContext.reset();
+
         setupI18nStrictState(method.getMethod(), robolectricConfig);
         lookForLocaleAnnotation( method.getMethod(), robolectricConfig );
         
@@ -276,10 +317,12 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
             classHandler.beforeTest();
         }
         delegate.internalBeforeTest(method.getMethod());
+        RunnerProfiler.endPhase("beforeTest", phaseStart);
 
         final Statement statement = super.methodBlock(method);
         return new Statement() {
             @Override public void evaluate() throws Throwable {
+                long phaseStart = RunnerProfiler.startPhase();
             	HashMap<Field,Object> withConstantAnnos = getWithConstantAnnotations(method.getMethod());
 
             	// todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
@@ -295,9 +338,15 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
                 		}
                 	}
                 } finally {
-                    delegate.internalAfterTest(method.getMethod());
-                    if (classHandler != null) {
-                        classHandler.afterTest();
+                    phaseStart = RunnerProfiler.endPhase("test", phaseStart);
+                    try {
+                        delegate.internalAfterTest(method.getMethod());
+                        if (classHandler != null) {
+                            classHandler.afterTest();
+                        }
+                    } finally {
+                        RunnerProfiler.endPhase("afterTest", phaseStart);
+                        RunnerProfiler.finishTest();
                     }
                 }
             }
@@ -314,7 +363,21 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     @Override public void internalAfterTest(final Method method) {
-        afterTest(method);
+        try {
+            afterTest(method);
+        } finally {
+            waitForBackgroundTasks();
+        }
+    }
+
+    /**
+     * Background tasks on worker threads (see {@link ShadowApplication#BACKGROUND_THREADS_PROPERTY}) have to finish
+     * before the next test resets the state they're using; the workers are shared by every test.
+     */
+    private void waitForBackgroundTasks() {
+        if (Robolectric.getApplication() != null) {
+            Robolectric.waitForBackgroundTasks();
+        }
     }
 
     @Override public void setRobolectricConfig(final RobolectricConfig robolectricConfig) {
@@ -357,20 +420,27 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     public void setupApplicationState(final RobolectricConfig robolectricConfig) {
+        long phaseStart = RunnerProfiler.startPhase();
         setupLogging();
         
         ResourceLoader resourceLoader = createResourceLoader(robolectricConfig );
+        phaseStart = RunnerProfiler.endPhase("createResourceLoader", phaseStart);
 
         Robolectric.bindDefaultShadowClasses();
         bindShadowClasses();
+        phaseStart = RunnerProfiler.endPhase("bindShadowClasses", phaseStart);
 
         resourceLoader.setLayoutQualifierSearchPath();
         Robolectric.resetStaticState();
         resetStaticState();
+        phaseStart = RunnerProfiler.endPhase("resetStaticState", phaseStart);
 
         DatabaseConfig.setDatabaseMap(this.databaseMap);//Set static DatabaseMap in DBConfig
 
-        Robolectric.application = ShadowApplication.bind(createApplication(), resourceLoader);
+        Application application = createApplication();
+        phaseStart = RunnerProfiler.endPhase("createApplication", phaseStart);
+        Robolectric.setApplication(ShadowApplication.bind(application, resourceLoader));
+        RunnerProfiler.endPhase("bindApplication", phaseStart);
     }
     
     /**
@@ -595,28 +665,30 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     private ResourceLoader createResourceLoader(final RobolectricConfig robolectricConfig) {
-        ResourceLoader resourceLoader = resourceLoaderForRootAndDirectory.get(robolectricConfig);
-        
-        if (resourceLoader == null ) {
-            try {
-                robolectricConfig.validate();
+        synchronized (resourceLoaderForRootAndDirectory) {
+            ResourceLoader resourceLoader = resourceLoaderForRootAndDirectory.get(robolectricConfig);
 
-                String rClassName = robolectricConfig.getRClassName();
-                Class rClass = Class.forName(rClassName);
-                resourceLoader = new ResourceLoader(robolectricConfig.getRealSdkVersion(), rClass, robolectricConfig.getResourceDirectory(), robolectricConfig.getAssetsDirectory() );
-                resourceLoaderForRootAndDirectory.put(robolectricConfig, resourceLoader);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            if (resourceLoader == null ) {
+                try {
+                    robolectricConfig.validate();
+
+                    String rClassName = robolectricConfig.getRClassName();
+                    Class rClass = Class.forName(rClassName);
+                    resourceLoader = new ResourceLoader(robolectricConfig.getRealSdkVersion(), rClass, robolectricConfig.getResourceDirectory(), robolectricConfig.getAssetsDirectory() );
+                    resourceLoaderForRootAndDirectory.put(robolectricConfig, resourceLoader);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            // When locale has changed, reload values resource files.
+            else if(robolectricConfig.isValuesResQualifiersChanged()){
+                resourceLoader.reloadValuesResouces( robolectricConfig.getValuesResQualifiers() );
             }
-        }
-        
-        // When locale has changed, reload values resource files.
-        else if(robolectricConfig.isValuesResQualifiersChanged()){
-        	resourceLoader.reloadValuesResouces( robolectricConfig.getValuesResQualifiers() );
-        }
 
-        resourceLoader.setStrictI18n(robolectricConfig.getStrictI18n());
-        return resourceLoader;
+            resourceLoader.setStrictI18n(robolectricConfig.getStrictI18n());
+            return resourceLoader;
+        }
     }
 
     private String findResourcePackageName(final File projectManifestFile) throws ParserConfigurationException, IOException, SAXException {
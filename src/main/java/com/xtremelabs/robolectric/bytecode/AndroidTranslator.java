@@ -15,18 +15,28 @@ public class AndroidTranslator implements Translator {
      * IMPORTANT -- increment this number when the bytecode generated for modified classes changes
      * so the cache file can be invalidated.
      */
-    public static final int CACHE_VERSION = 21;
+    public static final int CACHE_VERSION = 24;
+
+    /**
+     * Set this system property to "true" to have each instrumented method dispatch through its own
+     * {@link MethodCallSite} instead of passing its name and parameter types to the {@link ClassHandler} on every call.
+     * It only has an effect if the class handler is a {@link CallSiteAwareClassHandler}.
+     */
+    public static final String USE_CALL_SITES = "robolectric.callSites";
 
     private static final List<ClassHandler> CLASS_HANDLERS = new ArrayList<ClassHandler>();
 
     private ClassHandler classHandler;
     private ClassCache classCache;
+    private final boolean useCallSites;
     private final List<String> instrumentingList = new ArrayList<String>();
     private final List<String> instrumentingExcludeList = new ArrayList<String>();
+    private volatile String instrumentationFingerprint;
 
     public AndroidTranslator(ClassHandler classHandler, ClassCache classCache) {
         this.classHandler = classHandler;
         this.classCache = classCache;
+        useCallSites = isUsingCallSites() && classHandler instanceof CallSiteAwareClassHandler;
 
         // Initialize lists
         instrumentingList.add("android.");
@@ -35,21 +45,45 @@ public class AndroidTranslator implements Translator {
 
         instrumentingExcludeList.add("android.support.v4.app.NotificationCompat");
         instrumentingExcludeList.add("android.support.v4.util.LruCache");
+
+        updateInstrumentationFingerprint();
     }
 
     public AndroidTranslator(ClassHandler classHandler, ClassCache classCache, List<String> customShadowClassNames) {
         this(classHandler, classCache);
         if (customShadowClassNames != null && !customShadowClassNames.isEmpty()) {
             instrumentingList.addAll(customShadowClassNames);
+            updateInstrumentationFingerprint();
         }
     }
 
     public void addCustomShadowClass(String customShadowClassName) {
         if (!instrumentingList.contains(customShadowClassName)) {
             instrumentingList.add(customShadowClassName);
+            updateInstrumentationFingerprint();
+        }
+    }
+
+    /**
+     * Describes everything besides the original class bytes that affects the bytecode we generate, so the
+     * {@link ClassCache} can tell whether a cached class was instrumented the way we would instrument it now.
+     */
+    public String getInstrumentationFingerprint() {
+        return instrumentationFingerprint;
+    }
+
+    private void updateInstrumentationFingerprint() {
+        instrumentationFingerprint = "version=" + CACHE_VERSION + ";callSites=" + useCallSites
+                + ";instrument=" + instrumentingList + ";exclude=" + instrumentingExcludeList;
+        if (classCache != null) {
+            classCache.setInstrumentationFingerprint(instrumentationFingerprint);
         }
     }
 
+    public static boolean isUsingCallSites() {
+        return Boolean.getBoolean(USE_CALL_SITES);
+    }
+
     public static ClassHandler getClassHandler(int index) {
         return CLASS_HANDLERS.get(index);
     }
@@ -92,18 +126,8 @@ public class AndroidTranslator implements Translator {
             throw new IgnorableClassNotFoundException(e);
         }
 
-        if (shouldInstrument(ctClass)) {
-            int modifiers = ctClass.getModifiers();
-            if (Modifier.isFinal(modifiers)) {
-                ctClass.setModifiers(modifiers & ~Modifier.FINAL);
-            }
-
-            classHandler.instrument(ctClass);
-
-            MethodGenerator methodGenerator = new MethodGenerator(ctClass);
-            methodGenerator.fixConstructors();
-            methodGenerator.fixMethods();
-
+        if (instrument(ctClass)) {
+            RunnerProfiler.classInstrumented();
             try {
                 classCache.addClass(className, ctClass.toBytecode());
             } catch (IOException e) {
@@ -112,6 +136,29 @@ public class AndroidTranslator implements Translator {
         }
     }
 
+    /**
+     * Rewrites {@code ctClass} in place so its methods and constructors dispatch to the {@link ClassHandler}.
+     *
+     * @return false if the class isn't one we instrument, in which case it is left untouched
+     */
+    /* package */ boolean instrument(CtClass ctClass) throws NotFoundException, CannotCompileException {
+        if (!shouldInstrument(ctClass)) {
+            return false;
+        }
+
+        int modifiers = ctClass.getModifiers();
+        if (Modifier.isFinal(modifiers)) {
+            ctClass.setModifiers(modifiers & ~Modifier.FINAL);
+        }
+
+        classHandler.instrument(ctClass);
+
+        MethodGenerator methodGenerator = new MethodGenerator(ctClass, useCallSites);
+        methodGenerator.fixConstructors();
+        methodGenerator.fixMethods();
+        return true;
+    }
+
     /* package */ boolean shouldInstrument(CtClass ctClass) {
         if (ctClass.hasAnnotation(Instrument.class)) {
             return true;
@@ -132,7 +179,7 @@ public class AndroidTranslator implements Translator {
         }
     }
 
-    private boolean classHasFromAndroidEquivalent(String className) {
+    /* package */ boolean classHasFromAndroidEquivalent(String className) {
         return className.startsWith(Uri.class.getName());
     }
 
@@ -0,0 +1,17 @@
+package com.xtremelabs.robolectric.bytecode;
+
+/**
+ * A {@link ClassHandler} that can be handed a {@link MethodCallSite} instead of a method's name and parameter types.
+ * Instrumented methods only dispatch through call sites (see {@link AndroidTranslator#USE_CALL_SITES}) when the
+ * class handler is one of these; any other handler keeps getting
+ * {@link #methodInvoked(Class, String, Object, String[], Object[])}.
+ */
+public interface CallSiteAwareClassHandler extends ClassHandler {
+    Object methodInvoked(MethodCallSite callSite, Object instance, Object[] params) throws Throwable;
+
+    Object methodInvoked(MethodCallSite callSite, Object instance, Object param1) throws Throwable;
+
+    Object methodInvoked(MethodCallSite callSite, Object instance, Object param1, Object param2) throws Throwable;
+
+    Object methodInvoked(MethodCallSite callSite, Object instance, Object param1, Object param2, Object param3) throws Throwable;
+}
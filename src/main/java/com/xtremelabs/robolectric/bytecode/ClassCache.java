@@ -1,64 +1,153 @@
 package com.xtremelabs.robolectric.bytecode;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 
+/**
+ * On-disk cache of instrumented class bytes, shared by every run that points at the same directory.
+ * <p/>
+ * Entries are keyed by a SHA-1 of the original class bytes plus the instrumentation fingerprint (see
+ * {@link #setInstrumentationFingerprint(String)}), so a cached class is only used if both the class and the way we
+ * instrument it are unchanged. The cache is two append-only files: {@code index}, a list of
+ * (class name, key, offset, length) records, and {@code classes}, the instrumented bytes they point at. Both are
+ * memory-mapped on startup; only the index is parsed, and class bytes are copied out only when a class is actually
+ * loaded. Newly instrumented classes are appended when the JVM exits rather than rewriting the whole cache.
+ * <p/>
+ * Several JVMs (e.g. parallel Surefire forks) can share one cache directory. Appends happen under an exclusive lock on
+ * the {@code lock} file, and each JVM skips classes another one has already cached in the meantime. Files are never
+ * truncated in place, since other JVMs may have them mapped; when they must be reset they are replaced by renaming a
+ * new file over them. Readers map the files under a shared lock, so they never see an index from one generation of
+ * the files and classes from another.
+ * <p/>
+ * Entries replaced by newer ones for the same class, for instance after the instrumentation fingerprint changes, stay
+ * in the files until they're compacted: whenever more than half the bytes are stale, or the classes file would grow
+ * past {@value #MAX_SIZE_PROPERTY} bytes (1GB by default), the live entries are copied into new files. Classes that
+ * still don't fit aren't cached.
+ * <p/>
+ * Set the system property {@code robolectric.classCache.stats} to "true" to print startup time and bytes read at exit.
+ */
 public class ClassCache {
-    private static final Attributes.Name VERSION_ATTRIBUTE = new Attributes.Name("version");
+    public static final String STATS_PROPERTY = "robolectric.classCache.stats";
+    public static final String MAX_SIZE_PROPERTY = "robolectric.classCache.maxSize";
+    static final long DEFAULT_MAX_SIZE = 1L << 30;
 
-    private Map<String, byte[]> cachedClasses = new HashMap<String, byte[]>();
+    static final String INDEX_FILE_NAME = "index";
+    static final String CLASSES_FILE_NAME = "classes";
+    static final String LOCK_FILE_NAME = "lock";
+
+    private static final int MAGIC = 0x52434331; // "RCC1"
+    private static final int HEADER_SIZE = 8;
+    private static final int KEY_SIZE = 20;
+
+    private final File cacheDirectory;
+    private final int expectedCacheVersion;
+    private final long maxSize;
+    private final ClassLoader originalClassLoader = ClassCache.class.getClassLoader();
+    private final Map<String, IndexEntry> index = new HashMap<String, IndexEntry>();
+    private final Map<String, NewEntry> newClasses = new LinkedHashMap<String, NewEntry>();
+    private ByteBuffer classData;
+    private String instrumentationFingerprint = "";
     private boolean startedWriting = false;
+    private boolean hasUnsavedClasses = false;
+
+    private long openNanos;
+    private int classesRead;
+    private long bytesRead;
+    private long bytesAppended;
 
     public ClassCache(String classCachePath, final int expectedCacheVersion) {
-        final File cacheJarFile = new File(classCachePath);
-        JarFile cacheFile;
+        this(classCachePath, expectedCacheVersion, Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * @param maxSize the most bytes of instrumented classes to keep; no more than {@link Integer#MAX_VALUE}, since
+     *                the classes file is mapped into one buffer
+     */
+    ClassCache(String classCachePath, final int expectedCacheVersion, long maxSize) {
+        this.cacheDirectory = new File(classCachePath);
+        this.expectedCacheVersion = expectedCacheVersion;
+        this.maxSize = Math.min(maxSize, Integer.MAX_VALUE);
+
+        long start = System.nanoTime();
         try {
-            cacheFile = new JarFile(cacheJarFile);
-            int cacheVersion = 0;
-            Manifest manifest = cacheFile.getManifest();
-            if (manifest != null) {
-                Attributes attributes = manifest.getEntries().get("robolectric");
-                if (attributes != null) {
-                    String cacheVersionStr = (String) attributes.get(VERSION_ATTRIBUTE);
-                    if (cacheVersionStr != null) {
-                        cacheVersion = Integer.parseInt(cacheVersionStr);
-                    }
-                }
-            }
-            if (cacheVersion != expectedCacheVersion) {
-                cacheJarFile.delete();
-            } else {
-                readEntries(cacheFile);
-            }
+            readIndex();
         } catch (IOException e) {
-            // no problem
+            // no problem, we'll just instrument everything again
+            index.clear();
+            classData = null;
+        } catch (RuntimeException e) {
+            // e.g. a file too big to map, left by an older version; treat it like an unreadable cache
+            index.clear();
+            classData = null;
         }
+        openNanos = System.nanoTime() - start;
 
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override public void run() {
-                Manifest manifest = new Manifest();
-                Attributes attributes = new Attributes();
-                attributes.put(VERSION_ATTRIBUTE, String.valueOf(expectedCacheVersion));
-                manifest.getEntries().put("robolectric", attributes);
-
-                saveAllClassesToCache(cacheJarFile, manifest);
+                saveAllClassesToCache();
+                if (Boolean.getBoolean(STATS_PROPERTY)) {
+                    System.out.println(getStats());
+                }
             }
         });
     }
 
+    /**
+     * Sets the description of how classes are currently being instrumented. Cached classes are only returned if they
+     * were instrumented under the same fingerprint.
+     */
+    public void setInstrumentationFingerprint(String instrumentationFingerprint) {
+        synchronized (this) {
+            this.instrumentationFingerprint = instrumentationFingerprint;
+        }
+    }
+
     public byte[] getClassBytesFor(String name) {
-        return cachedClasses.get(name);
+        IndexEntry indexEntry;
+        synchronized (this) {
+            NewEntry newEntry = newClasses.get(name);
+            if (newEntry != null) {
+                return newEntry.classBytes;
+            }
+            indexEntry = index.get(name);
+        }
+        if (indexEntry == null) {
+            return null;
+        }
+
+        byte[] key = keyFor(name);
+        if (key == null || !Arrays.equals(key, indexEntry.key)) {
+            return null;
+        }
+
+        byte[] classBytes = new byte[indexEntry.length];
+        ByteBuffer buffer = classData.duplicate();
+        buffer.position((int) indexEntry.offset);
+        buffer.get(classBytes);
+
+        synchronized (this) {
+            classesRead++;
+            bytesRead += classBytes.length;
+        }
+        return classBytes;
     }
 
     public boolean isWriting() {
@@ -68,64 +157,386 @@ public class ClassCache {
     }
 
     public void addClass(String className, byte[] classBytes) {
-        cachedClasses.put(className, classBytes);
+        byte[] key = keyFor(className);
+        if (key == null) {
+            return;
+        }
+        synchronized (this) {
+            newClasses.put(className, new NewEntry(key, classBytes));
+            hasUnsavedClasses = true;
+        }
     }
 
-    private void readEntries(JarFile cacheFile) {
-        Enumeration<JarEntry> entries = cacheFile.entries();
-        try {
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String className = entry.getName();
-                if (className.endsWith(".class")) {
-                    int classSize = (int) entry.getSize();
-                    InputStream inputStream = cacheFile.getInputStream(entry);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream(classSize);
-                    int c;
-                    while ((c = inputStream.read()) != -1) {
-                        baos.write(c);
-                    }
-                    className = className.substring(0, className.indexOf(".class")).replace('/', '.');
-                    addClass(className, baos.toByteArray());
+    public String getStats() {
+        synchronized (this) {
+            return "Robolectric class cache " + cacheDirectory + ": opened " + index.size() + " entries in "
+                    + (openNanos / 1000000) + " ms, read " + classesRead + " classes (" + bytesRead + " bytes), appended "
+                    + newClasses.size() + " classes (" + bytesAppended + " bytes)";
+        }
+    }
+
+    private void readIndex() throws IOException {
+        File indexFile = new File(cacheDirectory, INDEX_FILE_NAME);
+        File classesFile = new File(cacheDirectory, CLASSES_FILE_NAME);
+        if (!indexFile.exists() || !classesFile.exists()) {
+            return;
+        }
+
+        // the file lock only excludes other JVMs, so this JVM's loaders take turns
+        synchronized (ClassCache.class) {
+            RandomAccessFile lockFile = new RandomAccessFile(new File(cacheDirectory, LOCK_FILE_NAME), "rw");
+            try {
+                FileLock lock = lockFile.getChannel().lock(0, Long.MAX_VALUE, true);
+                try {
+                    ByteBuffer indexBuffer = map(indexFile);
+                    classData = map(classesFile);
+                    readIndexEntries(indexBuffer, classData.limit(), index);
+                } finally {
+                    lock.release();
                 }
+            } finally {
+                lockFile.close();
+            }
+        }
+    }
 
+    /**
+     * Reads every complete entry from {@code indexBuffer} into {@code entries}.
+     *
+     * @return the length of the index up to the end of the last complete entry, or -1 if the index wasn't written by
+     *         this version of the cache
+     */
+    private int readIndexEntries(ByteBuffer indexBuffer, long classDataSize, Map<String, IndexEntry> entries) {
+        if (indexBuffer.remaining() < HEADER_SIZE || indexBuffer.getInt() != MAGIC || indexBuffer.getInt() != expectedCacheVersion) {
+            return -1;
+        }
+
+        int validLength = indexBuffer.position();
+        IndexEntry indexEntry;
+        while ((indexEntry = readIndexEntry(indexBuffer)) != null) {
+            validLength = indexBuffer.position();
+            if (indexEntry.offset + indexEntry.length <= classDataSize) {
+                entries.put(indexEntry.className, indexEntry);
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * @return the next complete entry, or null at the end of the index or at a partially written entry
+     */
+    private IndexEntry readIndexEntry(ByteBuffer indexBuffer) {
+        try {
+            int start = indexBuffer.position();
+            byte[] nameBytes = new byte[indexBuffer.getShort() & 0xffff];
+            indexBuffer.get(nameBytes);
+            byte[] key = new byte[KEY_SIZE];
+            indexBuffer.get(key);
+            long offset = indexBuffer.getLong();
+            int length = indexBuffer.getInt();
+            int end = indexBuffer.position();
+            long checksum = indexBuffer.getLong();
+
+            CRC32 crc = new CRC32();
+            byte[] record = new byte[end - start];
+            ByteBuffer recordBuffer = indexBuffer.duplicate();
+            recordBuffer.position(start);
+            recordBuffer.get(record);
+            crc.update(record);
+            if (crc.getValue() != checksum) {
+                return null;
             }
+            return new IndexEntry(new String(nameBytes, "UTF-8"), key, offset, length);
+        } catch (BufferUnderflowException e) {
+            return null;
         } catch (IOException e) {
-            // no problem, we didn't want those bytes that much anyway
+            return null;
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
         }
     }
 
-    protected void saveAllClassesToCache(File file, Manifest manifest) {
+    protected void saveAllClassesToCache() {
         synchronized (this) {
             startedWriting = true;
-    
-            if (cachedClasses.size() > 0) {
-                JarOutputStream jarOutputStream = null;
-                try {
-                    File cacheJarDir = file.getParentFile();
-                    if (!cacheJarDir.exists()) {
-                        cacheJarDir.mkdirs();
-                    }
-    
-                    jarOutputStream = new JarOutputStream(new FileOutputStream(file), manifest);
-                    for (Map.Entry<String, byte[]> entry : cachedClasses.entrySet()) {
-                        String key = entry.getKey();
-                        jarOutputStream.putNextEntry(new JarEntry(key.replace('.', '/') + ".class"));
-                        jarOutputStream.write(entry.getValue());
-                        jarOutputStream.closeEntry();
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    if (jarOutputStream != null) {
-                        try {
-                            jarOutputStream.close();
-                        } catch (IOException ignore) {
-                        }
+
+            if (hasUnsavedClasses) {
+                // the file lock only excludes other JVMs; loaders in this JVM share one, and their shutdown hooks run
+                // concurrently
+                synchronized (ClassCache.class) {
+                    try {
+                        appendNewClasses();
+                        hasUnsavedClasses = false;
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
                     }
                 }
             }
             startedWriting = false;
         }
     }
+
+    private void appendNewClasses() throws IOException {
+        if (!cacheDirectory.exists()) {
+            cacheDirectory.mkdirs();
+        }
+
+        RandomAccessFile lockFile = new RandomAccessFile(new File(cacheDirectory, LOCK_FILE_NAME), "rw");
+        try {
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                appendNewClassesWhileLocked();
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private void appendNewClassesWhileLocked() throws IOException {
+        File indexFile = new File(cacheDirectory, INDEX_FILE_NAME);
+        File classesFile = new File(cacheDirectory, CLASSES_FILE_NAME);
+
+        // another JVM may have appended since we started, so look at the index as it is now
+        Map<String, IndexEntry> currentEntries = new HashMap<String, IndexEntry>();
+        int validLength = -1;
+        if (indexFile.exists() && classesFile.exists()) {
+            validLength = readIndexEntries(ByteBuffer.wrap(readFully(indexFile)), classesFile.length(), currentEntries);
+        }
+
+        if (validLength == -1) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.writeInt(MAGIC);
+            headerOut.writeInt(expectedCacheVersion);
+            headerOut.flush();
+            replaceFile(classesFile, new byte[0]);
+            replaceFile(indexFile, header.toByteArray());
+        } else if (validLength < indexFile.length()) {
+            // drop the tail left by a JVM that died while appending, or our entries would never be read
+            byte[] validIndex = new byte[validLength];
+            System.arraycopy(readFully(indexFile), 0, validIndex, 0, validLength);
+            replaceFile(indexFile, validIndex);
+        }
+
+        Map<String, NewEntry> entriesToAppend = new LinkedHashMap<String, NewEntry>();
+        long appendLength = 0;
+        for (Map.Entry<String, NewEntry> entry : newClasses.entrySet()) {
+            IndexEntry currentEntry = currentEntries.get(entry.getKey());
+            if (currentEntry == null || !Arrays.equals(currentEntry.key, entry.getValue().key)) {
+                entriesToAppend.put(entry.getKey(), entry.getValue());
+                appendLength += entry.getValue().classBytes.length;
+            }
+        }
+        if (entriesToAppend.isEmpty()) {
+            return;
+        }
+
+        long classesLength = classesFile.length();
+        long liveLength = 0;
+        for (IndexEntry currentEntry : currentEntries.values()) {
+            if (!entriesToAppend.containsKey(currentEntry.className)) {
+                liveLength += currentEntry.length;
+            }
+        }
+        if (classesLength + appendLength > maxSize || classesLength - liveLength > liveLength + appendLength) {
+            compact(indexFile, classesFile, currentEntries, entriesToAppend);
+        } else {
+            append(indexFile, classesFile, entriesToAppend);
+        }
+    }
+
+    private void append(File indexFile, File classesFile, Map<String, NewEntry> entriesToAppend) throws IOException {
+        RandomAccessFile indexOut = new RandomAccessFile(indexFile, "rw");
+        RandomAccessFile classesOut = new RandomAccessFile(classesFile, "rw");
+        try {
+            long offset = classesOut.length();
+            classesOut.seek(offset);
+            ByteArrayOutputStream indexRecords = new ByteArrayOutputStream();
+            for (Map.Entry<String, NewEntry> entry : entriesToAppend.entrySet()) {
+                byte[] classBytes = entry.getValue().classBytes;
+                classesOut.write(classBytes);
+                writeIndexEntry(indexRecords, entry.getKey(), entry.getValue().key, offset, classBytes.length);
+                offset += classBytes.length;
+                bytesAppended += classBytes.length;
+            }
+
+            // entries go in after the bytes they point at, in one write, so readers never see an entry without its bytes
+            indexOut.seek(indexOut.length());
+            indexOut.write(indexRecords.toByteArray());
+        } finally {
+            classesOut.close();
+            indexOut.close();
+        }
+    }
+
+    /**
+     * Replaces the files with new ones holding just the current entries that aren't being replaced, and as many of
+     * the new entries as fit in {@link #maxSize}.
+     */
+    private void compact(File indexFile, File classesFile, Map<String, IndexEntry> currentEntries, Map<String, NewEntry> entriesToAppend) throws IOException {
+        ByteArrayOutputStream indexRecords = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(indexRecords);
+        headerOut.writeInt(MAGIC);
+        headerOut.writeInt(expectedCacheVersion);
+        headerOut.flush();
+
+        File newClassesFile = File.createTempFile(classesFile.getName(), ".tmp", cacheDirectory);
+        RandomAccessFile classesIn = new RandomAccessFile(classesFile, "r");
+        FileOutputStream classesOut = new FileOutputStream(newClassesFile);
+        try {
+            long offset = 0;
+            for (IndexEntry currentEntry : currentEntries.values()) {
+                if (entriesToAppend.containsKey(currentEntry.className) || offset + currentEntry.length > maxSize) {
+                    continue;
+                }
+                byte[] classBytes = new byte[currentEntry.length];
+                classesIn.seek(currentEntry.offset);
+                classesIn.readFully(classBytes);
+                classesOut.write(classBytes);
+                writeIndexEntry(indexRecords, currentEntry.className, currentEntry.key, offset, classBytes.length);
+                offset += classBytes.length;
+            }
+            for (Map.Entry<String, NewEntry> entry : entriesToAppend.entrySet()) {
+                byte[] classBytes = entry.getValue().classBytes;
+                if (offset + classBytes.length > maxSize) {
+                    continue;
+                }
+                classesOut.write(classBytes);
+                writeIndexEntry(indexRecords, entry.getKey(), entry.getValue().key, offset, classBytes.length);
+                offset += classBytes.length;
+                bytesAppended += classBytes.length;
+            }
+        } finally {
+            classesOut.close();
+            classesIn.close();
+        }
+
+        moveOver(newClassesFile, classesFile);
+        replaceFile(indexFile, indexRecords.toByteArray());
+    }
+
+    private static void replaceFile(File file, byte[] contents) throws IOException {
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        moveOver(tempFile, file);
+    }
+
+    private static void moveOver(File tempFile, File file) throws IOException {
+        if (!tempFile.renameTo(file)) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("couldn't replace " + file);
+            }
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        return readFully(new FileInputStream(file));
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                baos.write(buffer, 0, count);
+            }
+            return baos.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void writeIndexEntry(ByteArrayOutputStream out, String className, byte[] key, long offset, int length) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        byte[] nameBytes = className.getBytes("UTF-8");
+        recordOut.writeShort(nameBytes.length);
+        recordOut.write(nameBytes);
+        recordOut.write(key);
+        recordOut.writeLong(offset);
+        recordOut.writeInt(length);
+        recordOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(record.toByteArray());
+        recordOut.writeLong(crc.getValue());
+        recordOut.flush();
+        record.writeTo(out);
+    }
+
+    /**
+     * @return the cache key for the current contents of {@code className}, or null if its original bytes can't be found
+     */
+    private byte[] keyFor(String className) {
+        byte[] originalBytes = readOriginalClassBytes(className);
+        if (originalBytes == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            synchronized (this) {
+                digest.update(instrumentationFingerprint.getBytes("UTF-8"));
+            }
+            digest.update(originalBytes);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] readOriginalClassBytes(String className) {
+        InputStream inputStream = originalClassLoader.getResourceAsStream(className.replace('.', '/') + ".class");
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            return readFully(inputStream);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class IndexEntry {
+        final String className;
+        final byte[] key;
+        final long offset;
+        final int length;
+
+        IndexEntry(String className, byte[] key, long offset, int length) {
+            this.className = className;
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class NewEntry {
+        final byte[] key;
+        final byte[] classBytes;
+
+        NewEntry(byte[] key, byte[] classBytes) {
+            this.key = key;
+            this.classBytes = classBytes;
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out one {@link RobolectricClassLoader} per instrumentation configuration, so every runner and test class that
+ * instruments the same classes with the same {@link ClassHandler} shares one loader, and pays for creating its
+ * {@code ClassPool} and opening its {@link ClassCache} once, instead of each building its own.
+ * <p/>
+ * Sharing is safe because the runner throws away Robolectric's state before every test, whichever test class it
+ * belongs to; see {@link com.xtremelabs.robolectric.internal.RobolectricContext}.
+ */
+public class ClassLoaderPool {
+    private static final Map<Key, RobolectricClassLoader> classLoaders = new HashMap<Key, RobolectricClassLoader>();
+
+    /**
+     * @param classHandler      the handler instrumented classes call
+     * @param customClassNames  classes or packages to instrument besides the Android ones, or null
+     * @return the loader for that configuration, created the first time it's asked for
+     */
+    public static RobolectricClassLoader getClassLoader(ClassHandler classHandler, List<String> customClassNames) {
+        Key key = new Key(classHandler, customClassNames);
+        synchronized (classLoaders) {
+            RobolectricClassLoader classLoader = classLoaders.get(key);
+            if (classLoader == null) {
+                classLoader = new RobolectricClassLoader(classHandler, key.customClassNames);
+                classLoaders.put(key, classLoader);
+            }
+            return classLoader;
+        }
+    }
+
+    /**
+     * Has {@code classLoader} instrument another class or package as well. A loader from the pool is moved to the
+     * key for its new configuration, so the pool doesn't go on handing it out to runners that asked for the old one.
+     */
+    public static void addCustomClass(RobolectricClassLoader classLoader, String classOrPackageName) {
+        synchronized (classLoaders) {
+            Key oldKey = null;
+            for (Map.Entry<Key, RobolectricClassLoader> entry : classLoaders.entrySet()) {
+                if (entry.getValue() == classLoader) {
+                    oldKey = entry.getKey();
+                    break;
+                }
+            }
+
+            classLoader.addCustomShadowClass(classOrPackageName);
+
+            if (oldKey != null && !oldKey.customClassNames.contains(classOrPackageName)) {
+                classLoaders.remove(oldKey);
+                List<String> customClassNames = new ArrayList<String>(oldKey.customClassNames);
+                customClassNames.add(classOrPackageName);
+                Key newKey = new Key(oldKey.classHandler, customClassNames);
+                if (!classLoaders.containsKey(newKey)) {
+                    classLoaders.put(newKey, classLoader);
+                }
+            }
+        }
+    }
+
+    private static class Key {
+        private final ClassHandler classHandler;
+        private final List<String> customClassNames;
+
+        Key(ClassHandler classHandler, List<String> customClassNames) {
+            this.classHandler = classHandler;
+            this.customClassNames = customClassNames == null
+                    ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<String>(customClassNames));
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return classHandler == key.classHandler && customClassNames.equals(key.customClassNames);
+        }
+
+        @Override public int hashCode() {
+            return 31 * System.identityHashCode(classHandler) + customClassNames.hashCode();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the calls {@link ShadowWrangler} dispatches for each instrumented method, split into calls that reached a
+ * shadow method and calls that didn't and so silently returned a default value.
+ * <p/>
+ * Counting is off unless the {@value #FILE_PROPERTY} system property names a file, in which case the counts are
+ * written there, busiest method first, as the JVM exits.
+ */
+public class DispatchHistogram {
+    public static final String FILE_PROPERTY = "robolectric.dispatchHistogramFile";
+
+    private static final ConcurrentMap<String, Counts> countsByMethod = new ConcurrentHashMap<String, Counts>();
+    private static volatile boolean enabled = System.getProperty(FILE_PROPERTY) != null;
+
+    static {
+        if (enabled) {
+            Runtime.getRuntime().addShutdownHook(new Thread("robolectric-dispatch-histogram") {
+                @Override public void run() {
+                    try {
+                        write(new File(System.getProperty(FILE_PROPERTY)));
+                    } catch (IOException e) {
+                        System.err.println("couldn't write the Robolectric dispatch histogram: " + e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the counters for calls to the given method, or null if counting is off
+     */
+    static Counts countsFor(String methodDescription) {
+        if (!enabled) {
+            return null;
+        }
+
+        Counts counts = countsByMethod.get(methodDescription);
+        if (counts == null) {
+            Counts newCounts = new Counts(methodDescription);
+            counts = countsByMethod.putIfAbsent(methodDescription, newCounts);
+            if (counts == null) {
+                counts = newCounts;
+            }
+        }
+        return counts;
+    }
+
+    static void setEnabled(boolean enabled) {
+        DispatchHistogram.enabled = enabled;
+    }
+
+    static void clear() {
+        countsByMethod.clear();
+    }
+
+    /**
+     * @return the counts for every method called so far, busiest first
+     */
+    static List<Counts> getCounts() {
+        List<Counts> counts = new ArrayList<Counts>(countsByMethod.values());
+        Collections.sort(counts, new Comparator<Counts>() {
+            @Override public int compare(Counts o1, Counts o2) {
+                long total1 = o1.getTotal();
+                long total2 = o2.getTotal();
+                if (total1 != total2) {
+                    return total1 > total2 ? -1 : 1;
+                }
+                return o1.methodDescription.compareTo(o2.methodDescription);
+            }
+        });
+        return counts;
+    }
+
+    static void write(File file) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("total\tshadowed\tunshadowed\tmethod");
+            for (Counts counts : getCounts()) {
+                out.println(counts.getTotal() + "\t" + counts.getShadowed() + "\t" + counts.getUnshadowed() + "\t"
+                        + counts.methodDescription);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    static class Counts {
+        private final String methodDescription;
+        private final StripedCounter shadowed = new StripedCounter();
+        private final StripedCounter unshadowed = new StripedCounter();
+
+        Counts(String methodDescription) {
+            this.methodDescription = methodDescription;
+        }
+
+        void countCall(boolean wasShadowed) {
+            (wasShadowed ? shadowed : unshadowed).increment();
+        }
+
+        String getMethodDescription() {
+            return methodDescription;
+        }
+
+        long getShadowed() {
+            return shadowed.get();
+        }
+
+        long getUnshadowed() {
+            return unshadowed.get();
+        }
+
+        long getTotal() {
+            return getShadowed() + getUnshadowed();
+        }
+    }
+
+    /**
+     * A counter spread over several slots, picked by thread, so threads counting calls to the same method don't all
+     * contend on one value. Slots are a cache line apart.
+     */
+    static class StripedCounter {
+        private static final int PADDING = 8;
+        private static final int STRIPES = stripeCount();
+
+        private final AtomicLongArray slots = new AtomicLongArray(STRIPES * PADDING);
+
+        void increment() {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            slots.incrementAndGet(stripe * PADDING);
+        }
+
+        long get() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += slots.get(i * PADDING);
+            }
+            return sum;
+        }
+
+        private static int stripeCount() {
+            int stripes = 1;
+            while (stripes < Runtime.getRuntime().availableProcessors()) {
+                stripes <<= 1;
+            }
+            return stripes;
+        }
+    }
+}
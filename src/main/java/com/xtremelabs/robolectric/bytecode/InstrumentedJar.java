@@ -0,0 +1,305 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * A jar of classes that were instrumented ahead of time, so {@link RobolectricClassLoader} can define them directly
+ * instead of running them through Javassist the first time each one is loaded.
+ * <p/>
+ * Build one with
+ * <pre>
+ *   java -cp robolectric-with-dependencies.jar:android.jar:maps.jar \
+ *       com.xtremelabs.robolectric.bytecode.InstrumentedJar instrumented-android.jar android.jar maps.jar
+ * </pre>
+ * and point the {@link #PATH_PROPERTY} system property at it when running tests. The jar records the
+ * {@link AndroidTranslator#getInstrumentationFingerprint() instrumentation fingerprint} it was built with; if the test
+ * run instruments classes differently (a different Robolectric version, call sites switched on or off, custom classes
+ * to instrument) the jar is ignored and classes are instrumented at load time as usual. It also records the size and
+ * SHA-1 digest of each input jar, along with a class from it; if the jar that class is loaded from at test time doesn't
+ * match (a different android.jar or maps.jar), the instrumented jar is ignored too.
+ */
+public class InstrumentedJar {
+    /**
+     * Set this system property to the path of one or more instrumented jars, separated by the platform path separator.
+     */
+    public static final String PATH_PROPERTY = "robolectric.instrumentedJar";
+    public static final String FINGERPRINT_ATTRIBUTE = "Robolectric-Instrumentation-Fingerprint";
+    public static final String INPUT_JARS_ATTRIBUTE = "Robolectric-Input-Jars";
+
+    // digests of jars we've already checked, keyed by path, size and modification time
+    private static final Map<String, String> digestCache = new HashMap<String, String>();
+
+    private final JarFile jarFile;
+    private final String fingerprint;
+    private final String inputJars;
+    private final ClassLoader classLoader;
+    private Boolean inputJarsUnchanged;
+
+    public InstrumentedJar(File file) throws IOException {
+        this(file, InstrumentedJar.class.getClassLoader());
+    }
+
+    /**
+     * @param classLoader the class loader the original (uninstrumented) classes are loaded from, used to find the
+     *                    android.jar and maps.jar this jar is checked against
+     */
+    public InstrumentedJar(File file, ClassLoader classLoader) throws IOException {
+        jarFile = new JarFile(file);
+        this.classLoader = classLoader;
+        Manifest manifest = jarFile.getManifest();
+        fingerprint = manifest == null ? null : manifest.getMainAttributes().getValue(FINGERPRINT_ATTRIBUTE);
+        inputJars = manifest == null ? null : manifest.getMainAttributes().getValue(INPUT_JARS_ATTRIBUTE);
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isCompatibleWith(AndroidTranslator androidTranslator) {
+        return fingerprint != null && fingerprint.equals(androidTranslator.getInstrumentationFingerprint())
+                && inputJarsUnchanged();
+    }
+
+    private synchronized boolean inputJarsUnchanged() {
+        if (inputJarsUnchanged == null) {
+            inputJarsUnchanged = inputJars != null && inputJars.equals(describeInputJarsOnClassPath());
+        }
+        return inputJarsUnchanged;
+    }
+
+    private String describeInputJarsOnClassPath() {
+        StringBuilder description = new StringBuilder();
+        if (inputJars.length() == 0) {
+            return "";
+        }
+        for (String inputJar : inputJars.split(" ")) {
+            String probeEntryName = inputJar.substring(0, inputJar.indexOf('='));
+            File file = jarContaining(probeEntryName);
+            if (file == null) {
+                return null;
+            }
+            try {
+                appendDescription(description, probeEntryName, file);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return description.toString();
+    }
+
+    private File jarContaining(String entryName) {
+        URL url = classLoader.getResource(entryName);
+        if (url == null || !"jar".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            URL jarFileUrl = ((JarURLConnection) url.openConnection()).getJarFileURL();
+            return "file".equals(jarFileUrl.getProtocol()) ? new File(jarFileUrl.toURI()) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the instrumented bytes for the class, or null if the jar doesn't contain it
+     */
+    public byte[] getClassBytesFor(String className) {
+        JarEntry entry = jarFile.getJarEntry(className.replace('.', '/') + ".class");
+        if (entry == null) {
+            return null;
+        }
+        try {
+            InputStream in = jarFile.getInputStream(entry);
+            try {
+                return readFully(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("couldn't read " + className + " from " + jarFile.getName(), e);
+        }
+    }
+
+    /**
+     * Instruments every class in {@code inputJars} that {@code androidTranslator} would instrument at load time and
+     * writes the results to {@code outputJar}.
+     *
+     * @return the number of classes written
+     */
+    public static int build(File outputJar, List<File> inputJars, AndroidTranslator androidTranslator) throws IOException, NotFoundException {
+        ClassPool classPool = new ClassPool(true);
+        for (File inputJar : inputJars) {
+            classPool.insertClassPath(inputJar.getAbsolutePath());
+        }
+
+        StringBuilder inputJarsDescription = new StringBuilder();
+        for (File inputJar : inputJars) {
+            String probeEntryName = firstClassEntryName(inputJar);
+            if (probeEntryName != null) {
+                appendDescription(inputJarsDescription, probeEntryName, inputJar);
+            }
+        }
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(FINGERPRINT_ATTRIBUTE, androidTranslator.getInstrumentationFingerprint());
+        manifest.getMainAttributes().putValue(INPUT_JARS_ATTRIBUTE, inputJarsDescription.toString());
+
+        int classCount = 0;
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(outputJar), manifest);
+        try {
+            for (File inputJar : inputJars) {
+                JarFile jarFile = new JarFile(inputJar);
+                try {
+                    Enumeration<JarEntry> entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        String entryName = entries.nextElement().getName();
+                        if (!entryName.endsWith(".class")) {
+                            continue;
+                        }
+
+                        String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+                        if (androidTranslator.classHasFromAndroidEquivalent(className)) {
+                            continue;
+                        }
+
+                        CtClass ctClass = null;
+                        try {
+                            ctClass = classPool.get(className);
+                            if (androidTranslator.instrument(ctClass)) {
+                                byte[] classBytes = ctClass.toBytecode();
+                                out.putNextEntry(new JarEntry(entryName));
+                                out.write(classBytes);
+                                out.closeEntry();
+                                classCount++;
+                            }
+                        } catch (Exception e) {
+                            // leave it to be instrumented at load time, where any problem will surface in context
+                            System.err.println("skipping " + className + ": " + e);
+                        } finally {
+                            if (ctClass != null) {
+                                ctClass.detach();
+                            }
+                        }
+                    }
+                } finally {
+                    jarFile.close();
+                }
+            }
+        } finally {
+            out.close();
+        }
+        return classCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: " + InstrumentedJar.class.getName() + " <output jar> <input jar>...");
+            System.exit(1);
+        }
+
+        List<File> inputJars = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            inputJars.add(new File(args[i]));
+        }
+
+        AndroidTranslator androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        int classCount = build(new File(args[0]), inputJars, androidTranslator);
+        System.out.println("wrote " + classCount + " instrumented classes to " + args[0]);
+    }
+
+    private static String firstClassEntryName(File jar) throws IOException {
+        JarFile jarFile = new JarFile(jar);
+        try {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (entryName.endsWith(".class")) {
+                    return entryName;
+                }
+            }
+            return null;
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    private static void appendDescription(StringBuilder description, String probeEntryName, File jar) throws IOException {
+        if (description.length() > 0) {
+            description.append(' ');
+        }
+        description.append(probeEntryName).append('=').append(jar.length()).append(':').append(digest(jar));
+    }
+
+    private static String digest(File file) throws IOException {
+        String key = file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified();
+        synchronized (digestCache) {
+            String digest = digestCache.get(key);
+            if (digest == null) {
+                digest = sha1(file);
+                digestCache.put(key, digest);
+            }
+            return digest;
+        }
+    }
+
+    private static String sha1(File file) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
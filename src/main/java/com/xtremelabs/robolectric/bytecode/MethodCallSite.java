@@ -0,0 +1,44 @@
+package com.xtremelabs.robolectric.bytecode;
+
+/**
+ * Identifies a single instrumented method. When call sites are enabled (see {@link AndroidTranslator#USE_CALL_SITES}),
+ * each instrumented method keeps one of these in a static field and hands it to the
+ * {@link CallSiteAwareClassHandler} on every call, so the handler can remember how to dispatch the method instead of looking it up by name each time.
+ */
+public class MethodCallSite {
+    public static final Object[] NO_PARAMS = new Object[0];
+
+    private final Class clazz;
+    private final String methodName;
+    private final String[] paramTypes;
+    private volatile Object handlerState;
+
+    public MethodCallSite(Class clazz, String methodName, String[] paramTypes) {
+        this.clazz = clazz;
+        this.methodName = methodName;
+        this.paramTypes = paramTypes;
+    }
+
+    public Class getDeclaringClass() {
+        return clazz;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String[] getParamTypes() {
+        return paramTypes;
+    }
+
+    /**
+     * @return whatever the {@link ClassHandler} last stored for this call site, or null
+     */
+    public Object getHandlerState() {
+        return handlerState;
+    }
+
+    public void setHandlerState(Object handlerState) {
+        this.handlerState = handlerState;
+    }
+}
@@ -3,10 +3,28 @@ package com.xtremelabs.robolectric.bytecode;
 import javassist.*;
 
 public class MethodGenerator {
+    /**
+     * The most parameters a method can have for its call site to pass them without an array; see
+     * {@link CallSiteAwareClassHandler#methodInvoked(MethodCallSite, Object, Object, Object, Object)}.
+     */
+    public static final int MAX_UNWRAPPED_PARAMS = 3;
+
     private final CtClass ctClass;
+    private final boolean useCallSites;
+    private int callSiteCount = 0;
 
     public MethodGenerator(CtClass ctClass) {
+        this(ctClass, false);
+    }
+
+    /**
+     * @param useCallSites if true, generated methods dispatch through a {@link MethodCallSite} kept in a static field
+     *                     of {@code ctClass} rather than passing their name and parameter types on every call; only
+     *                     pass true if the class handler is a {@link CallSiteAwareClassHandler}
+     */
+    public MethodGenerator(CtClass ctClass, boolean useCallSites) {
         this.ctClass = ctClass;
+        this.useCallSites = useCallSites;
     }
 
     public void fixConstructors() throws CannotCompileException, NotFoundException {
@@ -44,7 +62,7 @@ public class MethodGenerator {
         wrapMethodInvocation(ctConstructor, false);
     }
 
-    public String generateConstructorBody(CtClass[] parameterTypes) throws NotFoundException {
+    public String generateConstructorBody(CtClass[] parameterTypes) throws NotFoundException, CannotCompileException {
         return generateMethodBody(
                 new CtMethod(CtClass.voidType, "<init>", parameterTypes, ctClass),
                 CtClass.voidType,
@@ -175,7 +193,7 @@ public class MethodGenerator {
         return parameterReplacementList;
     }
 
-    public String generateMethodBody(CtMethod ctMethod, boolean wasNative, boolean wasAbstract, CtClass returnCtClass, Type returnType, boolean aStatic, boolean shouldGenerateCallToSuper) throws NotFoundException {
+    public String generateMethodBody(CtMethod ctMethod, boolean wasNative, boolean wasAbstract, CtClass returnCtClass, Type returnType, boolean aStatic, boolean shouldGenerateCallToSuper) throws NotFoundException, CannotCompileException {
         String methodBody;
         if (wasAbstract) {
             methodBody = returnType.isVoid() ? "" : "return " + returnType.defaultReturnString() + ";";
@@ -189,7 +207,7 @@ public class MethodGenerator {
         return methodBody;
     }
 
-    public String generateMethodBody(CtMethod ctMethod, CtClass returnCtClass, Type returnType, boolean isStatic, boolean shouldGenerateCallToSuper) throws NotFoundException {
+    public String generateMethodBody(CtMethod ctMethod, CtClass returnCtClass, Type returnType, boolean isStatic, boolean shouldGenerateCallToSuper) throws NotFoundException, CannotCompileException {
         boolean returnsVoid = returnType.isVoid();
         String className = ctClass.getName();
 
@@ -208,6 +226,12 @@ public class MethodGenerator {
                 <optional super call or return default (null/0)>;
             }
 
+            With call sites enabled, the name and parameter types are passed once to build the call site instead:
+
+            if (<callSiteField> == null) <callSiteField> = RobolectricInternals.callSite(<className>.class, "<methodName>", <paramTypes>);
+            Object x = RobolectricInternals.methodInvoked(<callSiteField>, isStatic ? null : this, <params>);
+            (<params> are passed one by one, not in an array, when there are no more than MAX_UNWRAPPED_PARAMS of them)
+
         */
 
         String methodBody;
@@ -218,15 +242,38 @@ public class MethodGenerator {
         buf.append(isStatic ? className + ".class" : "this");
         buf.append(")) {\n");
 
+        String callSiteField = null;
+        if (useCallSites) {
+            callSiteField = declareCallSiteField();
+            buf.append("if (");
+            buf.append(callSiteField);
+            buf.append(" == null) ");
+            buf.append(callSiteField);
+            buf.append(" = ");
+            buf.append(RobolectricInternals.class.getName());
+            buf.append(".callSite(");
+            buf.append(className);
+            buf.append(".class, \"");
+            buf.append(ctMethod.getName());
+            buf.append("\", ");
+            appendParamTypeArray(buf, ctMethod);
+            buf.append(");\n");
+        }
+
         if (!returnsVoid) {
             buf.append("Object x = ");
         }
         buf.append(RobolectricInternals.class.getName());
         buf.append(".methodInvoked(\n  ");
-        buf.append(className);
-        buf.append(".class, \"");
-        buf.append(ctMethod.getName());
-        buf.append("\", ");
+        if (useCallSites) {
+            buf.append(callSiteField);
+            buf.append(", ");
+        } else {
+            buf.append(className);
+            buf.append(".class, \"");
+            buf.append(ctMethod.getName());
+            buf.append("\", ");
+        }
         if (!isStatic) {
             buf.append("this");
         } else {
@@ -234,8 +281,10 @@ public class MethodGenerator {
         }
         buf.append(", ");
 
-        appendParamTypeArray(buf, ctMethod);
-        buf.append(", ");
+        if (!useCallSites) {
+            appendParamTypeArray(buf, ctMethod);
+            buf.append(", ");
+        }
         appendParamArray(buf, ctMethod);
 
         buf.append(")");
@@ -264,6 +313,14 @@ public class MethodGenerator {
         return methodBody;
     }
 
+    private String declareCallSiteField() throws NotFoundException, CannotCompileException {
+        String fieldName = "__callSite_" + callSiteCount++ + "__";
+        CtField field = new CtField(ctClass.getClassPool().get(MethodCallSite.class.getName()), fieldName, ctClass);
+        field.setModifiers(Modifier.PRIVATE | Modifier.STATIC);
+        ctClass.addField(field);
+        return fieldName;
+    }
+
     public void appendParamTypeArray(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
         CtClass[] parameterTypes = ctMethod.getParameterTypes();
         if (parameterTypes.length == 0) {
@@ -281,20 +338,31 @@ public class MethodGenerator {
         }
     }
 
+    /**
+     * Appends the method's parameters, boxed; with call sites enabled, methods with up to
+     * {@link #MAX_UNWRAPPED_PARAMS} parameters pass them one by one, so no array is allocated unless the handler
+     * needs one.
+     */
     public void appendParamArray(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
         int parameterCount = ctMethod.getParameterTypes().length;
         if (parameterCount == 0) {
-            buf.append("new Object[0]");
+            buf.append(useCallSites ? MethodCallSite.class.getName() + ".NO_PARAMS" : "new Object[0]");
+        } else if (useCallSites && parameterCount <= MAX_UNWRAPPED_PARAMS) {
+            appendBoxedParams(buf, parameterCount);
         } else {
             buf.append("new Object[] {");
-            for (int i = 0; i < parameterCount; i++) {
-                if (i > 0) buf.append(", ");
-                buf.append(RobolectricInternals.class.getName());
-                buf.append(".autobox(");
-                buf.append("$").append(i + 1);
-                buf.append(")");
-            }
+            appendBoxedParams(buf, parameterCount);
             buf.append("}");
         }
     }
+
+    private void appendBoxedParams(StringBuilder buf, int parameterCount) {
+        for (int i = 0; i < parameterCount; i++) {
+            if (i > 0) buf.append(", ");
+            buf.append(RobolectricInternals.class.getName());
+            buf.append(".autobox(");
+            buf.append("$").append(i + 1);
+            buf.append(")");
+        }
+    }
 }
@@ -1,17 +1,21 @@
 package com.xtremelabs.robolectric.bytecode;
 
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import javassist.CannotCompileException;
 import javassist.ClassPool;
 import javassist.LoaderClassPath;
 import javassist.NotFoundException;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.System;
+import java.util.ArrayList;
 import java.util.List;
 
 public class RobolectricClassLoader extends javassist.Loader {
     private ClassCache classCache;
     private AndroidTranslator androidTranslator;
+    private final List<InstrumentedJar> instrumentedJars = new ArrayList<InstrumentedJar>();
 
     public RobolectricClassLoader(ClassHandler classHandler) {
         this(classHandler, null);
@@ -22,6 +26,11 @@ public class RobolectricClassLoader extends javassist.Loader {
 
         delegateLoadingOf(AndroidTranslator.class.getName());
         delegateLoadingOf(ClassHandler.class.getName());
+        delegateLoadingOf(CallSiteAwareClassHandler.class.getName());
+        delegateLoadingOf(MethodCallSite.class.getName());
+        delegateLoadingOf(RunnerProfiler.class.getName());
+        delegateLoadingOf(RobolectricContext.class.getName());
+        delegateLoadingOf(RobolectricContext.Slot.class.getName());
 
         final String classCachePath = System.getProperty("cached.robolectric.classes.path");
         final File classCacheDirectory;
@@ -31,7 +40,7 @@ public class RobolectricClassLoader extends javassist.Loader {
             classCacheDirectory = new File(classCachePath);
         }
 
-        classCache = new ClassCache(new File(classCacheDirectory, "cached-robolectric-classes.jar").getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
+        classCache = new ClassCache(new File(classCacheDirectory, "cached-robolectric-classes").getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
         try {
             ClassPool classPool = new ClassPool();
             classPool.appendClassPath(new LoaderClassPath(RobolectricClassLoader.class.getClassLoader()));
@@ -43,6 +52,18 @@ public class RobolectricClassLoader extends javassist.Loader {
         } catch (CannotCompileException e) {
             throw new RuntimeException(e);
         }
+
+        String instrumentedJarPaths = System.getProperty(InstrumentedJar.PATH_PROPERTY);
+        if (instrumentedJarPaths != null) {
+            for (String instrumentedJarPath : instrumentedJarPaths.split(File.pathSeparator)) {
+                if (instrumentedJarPath.trim().length() == 0) continue;
+                try {
+                    instrumentedJars.add(new InstrumentedJar(new File(instrumentedJarPath.trim())));
+                } catch (IOException e) {
+                    throw new RuntimeException("couldn't open instrumented jar " + instrumentedJarPath, e);
+                }
+            }
+        }
     }
 
     public void addCustomShadowClass(String classOrPackageToBeInstrumented) {
@@ -76,10 +97,27 @@ public class RobolectricClassLoader extends javassist.Loader {
 
     @Override
     protected Class findClass(String name) throws ClassNotFoundException {
-        byte[] classBytes = classCache.getClassBytesFor(name);
+        RunnerProfiler.classLoaded();
+        byte[] classBytes = getPreInstrumentedClassBytesFor(name);
+        if (classBytes == null) {
+            classBytes = classCache.getClassBytesFor(name);
+        }
         if (classBytes != null) {
             return defineClass(name, classBytes, 0, classBytes.length);
         }
         return super.findClass(name);
     }
+
+    private byte[] getPreInstrumentedClassBytesFor(String name) {
+        for (InstrumentedJar instrumentedJar : instrumentedJars) {
+            // custom classes to instrument may be added after we're created, so check every time
+            if (instrumentedJar.isCompatibleWith(androidTranslator)) {
+                byte[] classBytes = instrumentedJar.getClassBytesFor(name);
+                if (classBytes != null) {
+                    return classBytes;
+                }
+            }
+        }
+        return null;
+    }
 }
@@ -6,7 +6,10 @@ import com.xtremelabs.robolectric.internal.Implements;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @SuppressWarnings({"UnusedDeclaration"})
@@ -58,13 +61,34 @@ public class RobolectricInternals {
     }
 
     public static void bindShadowClass(Class<?> shadowClass) {
+        Class<?> realClass = getRealClass(shadowClass);
+        if (realClass != null) {
+            ShadowWrangler.getInstance().bindShadowClass(realClass, shadowClass);
+        }
+    }
+
+    /**
+     * @return the names of the classes shadowed by {@code shadowClasses}, mapped to the names of their shadow classes
+     */
+    public static Map<String, String> getShadowClassBindings(List<Class<?>> shadowClasses) {
+        Map<String, String> shadowClassBindings = new HashMap<String, String>();
+        for (Class<?> shadowClass : shadowClasses) {
+            Class<?> realClass = getRealClass(shadowClass);
+            if (realClass != null) {
+                shadowClassBindings.put(realClass.getName(), shadowClass.getName());
+            }
+        }
+        return shadowClassBindings;
+    }
+
+    private static Class<?> getRealClass(Class<?> shadowClass) {
         Implements realClass = shadowClass.getAnnotation(Implements.class);
         if (realClass == null) {
             throw new IllegalArgumentException(shadowClass + " is not annotated with @Implements");
         }
 
         try {
-            ShadowWrangler.getInstance().bindShadowClass(realClass.value(), shadowClass);
+            return realClass.value();
         } catch (TypeNotPresentException typeLoadingException) {
             String unloadableClassName = shadowClass.getSimpleName();
             if (isIgnorableClassLoadingException(typeLoadingException)) {
@@ -72,6 +96,7 @@ public class RobolectricInternals {
                 if (unloadableClassNames.add(unloadableClassName)) {
                     System.out.println("Warning: an error occurred while binding shadow class: " + unloadableClassName);
                 }
+                return null;
             } else {
                 throw typeLoadingException;
             }
@@ -147,6 +172,64 @@ public class RobolectricInternals {
         }
     }
 
+    /*
+     * AndroidTranslator only generates call sites for a CallSiteAwareClassHandler; any other handler gets the call
+     * by name, as it would have without them.
+     */
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(MethodCallSite callSite, Object instance, Object[] params) throws Throwable {
+        try {
+          if (classHandler instanceof CallSiteAwareClassHandler) {
+            return ((CallSiteAwareClassHandler) classHandler).methodInvoked(callSite, instance, params);
+          }
+          return classHandler.methodInvoked(callSite.getDeclaringClass(), callSite.getMethodName(), instance, callSite.getParamTypes(), params);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(MethodCallSite callSite, Object instance, Object param1) throws Throwable {
+        try {
+          if (classHandler instanceof CallSiteAwareClassHandler) {
+            return ((CallSiteAwareClassHandler) classHandler).methodInvoked(callSite, instance, param1);
+          }
+          return classHandler.methodInvoked(callSite.getDeclaringClass(), callSite.getMethodName(), instance, callSite.getParamTypes(), new Object[] {param1});
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(MethodCallSite callSite, Object instance, Object param1, Object param2) throws Throwable {
+        try {
+          if (classHandler instanceof CallSiteAwareClassHandler) {
+            return ((CallSiteAwareClassHandler) classHandler).methodInvoked(callSite, instance, param1, param2);
+          }
+          return classHandler.methodInvoked(callSite.getDeclaringClass(), callSite.getMethodName(), instance, callSite.getParamTypes(), new Object[] {param1, param2});
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static Object methodInvoked(MethodCallSite callSite, Object instance, Object param1, Object param2, Object param3) throws Throwable {
+        try {
+          if (classHandler instanceof CallSiteAwareClassHandler) {
+            return ((CallSiteAwareClassHandler) classHandler).methodInvoked(callSite, instance, param1, param2, param3);
+          }
+          return classHandler.methodInvoked(callSite.getDeclaringClass(), callSite.getMethodName(), instance, callSite.getParamTypes(), new Object[] {param1, param2, param3});
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static MethodCallSite callSite(Class clazz, String methodName, String[] paramTypes) {
+        return new MethodCallSite(clazz, methodName, paramTypes);
+    }
+
     @SuppressWarnings({"UnusedDeclaration"})
     public static Object autobox(Object o) {
         return o;
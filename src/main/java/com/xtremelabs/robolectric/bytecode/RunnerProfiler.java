@@ -0,0 +1,234 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records where the time goes in each test: how long each phase of setting up and running it took, how many classes
+ * were loaded and instrumented while it ran, and how many calls were dispatched to shadows.
+ * <p/>
+ * Profiling is off unless the {@value #REPORT_DIRECTORY_PROPERTY} system property names a directory. When it's on,
+ * a row per test is written to {@code robolectric-profile.csv} in that directory and totals for the whole run to
+ * {@code robolectric-profile.json} as the JVM exits. Phases can nest: the runner's {@code beforeTest} phase
+ * includes {@code createResourceLoader}, {@code bindShadowClasses} and the other parts of setting up the application.
+ * <p/>
+ * This class is shared between the instrumenting class loader and the one that loaded it, so a test's phases are all
+ * recorded in the same place whichever side of the runner they happen on. The current test is tracked per thread, so
+ * tests run in parallel don't record into each other; work a test hands off to other threads isn't counted. The
+ * hooks called on every class load and shadow dispatch return straight away when profiling is off.
+ */
+public class RunnerProfiler {
+    public static final String REPORT_DIRECTORY_PROPERTY = "robolectric.profileReportDir";
+
+    private static final List<TestRecord> finishedTests = new ArrayList<TestRecord>();
+    private static volatile boolean enabled = System.getProperty(REPORT_DIRECTORY_PROPERTY) != null;
+    private static final ThreadLocal<TestRecord> currentTest = new ThreadLocal<TestRecord>();
+
+    static {
+        if (enabled) {
+            Runtime.getRuntime().addShutdownHook(new Thread("robolectric-profile-report") {
+                @Override public void run() {
+                    try {
+                        writeReports(new File(System.getProperty(REPORT_DIRECTORY_PROPERTY)));
+                    } catch (IOException e) {
+                        System.err.println("couldn't write the Robolectric profile report: " + e);
+                    }
+                }
+            });
+        }
+    }
+
+    public static void startTest(String testName) {
+        if (enabled) {
+            currentTest.set(new TestRecord(testName));
+        }
+    }
+
+    public static void finishTest() {
+        TestRecord test = currentTest.get();
+        if (test != null) {
+            currentTest.remove();
+            synchronized (finishedTests) {
+                finishedTests.add(test);
+            }
+        }
+    }
+
+    /**
+     * @return the time a phase starting now started at, to be passed to {@link #endPhase(String, long)}
+     */
+    public static long startPhase() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since {@code startNanos} to the named phase of the current test.
+     *
+     * @return the time the phase ended at, so it can be used to start the next one
+     */
+    public static long endPhase(String phase, long startNanos) {
+        if (!enabled) {
+            return 0;
+        }
+        TestRecord test = currentTest.get();
+        if (test == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        test.addPhase(phase, now - startNanos);
+        return now;
+    }
+
+    public static void classLoaded() {
+        if (!enabled) {
+            return;
+        }
+        TestRecord test = currentTest.get();
+        if (test != null) {
+            test.classesLoaded.incrementAndGet();
+        }
+    }
+
+    public static void classInstrumented() {
+        if (!enabled) {
+            return;
+        }
+        TestRecord test = currentTest.get();
+        if (test != null) {
+            test.classesInstrumented.incrementAndGet();
+        }
+    }
+
+    public static void shadowMethodInvoked() {
+        if (!enabled) {
+            return;
+        }
+        TestRecord test = currentTest.get();
+        if (test != null) {
+            test.shadowDispatches.incrementAndGet();
+        }
+    }
+
+    static void setEnabled(boolean enabled) {
+        RunnerProfiler.enabled = enabled;
+    }
+
+    static List<TestRecord> getFinishedTests() {
+        synchronized (finishedTests) {
+            return new ArrayList<TestRecord>(finishedTests);
+        }
+    }
+
+    static void clearFinishedTests() {
+        synchronized (finishedTests) {
+            finishedTests.clear();
+        }
+    }
+
+    static void writeReports(File reportDirectory) throws IOException {
+        List<TestRecord> tests = getFinishedTests();
+        if (!reportDirectory.isDirectory() && !reportDirectory.mkdirs()) {
+            throw new IOException("couldn't create " + reportDirectory);
+        }
+
+        Set<String> phases = new LinkedHashSet<String>();
+        for (TestRecord test : tests) {
+            phases.addAll(test.getPhaseNanos().keySet());
+        }
+
+        writeCsv(new File(reportDirectory, "robolectric-profile.csv"), tests, phases);
+        writeJson(new File(reportDirectory, "robolectric-profile.json"), tests, phases);
+    }
+
+    private static void writeCsv(File file, List<TestRecord> tests, Set<String> phases) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.print("test");
+            for (String phase : phases) {
+                out.print("," + phase + "Nanos");
+            }
+            out.println(",classesLoaded,classesInstrumented,shadowDispatches");
+
+            for (TestRecord test : tests) {
+                out.print("\"" + test.name.replace("\"", "\"\"") + "\"");
+                Map<String, Long> phaseNanos = test.getPhaseNanos();
+                for (String phase : phases) {
+                    Long nanos = phaseNanos.get(phase);
+                    out.print("," + (nanos == null ? 0 : nanos));
+                }
+                out.println("," + test.classesLoaded + "," + test.classesInstrumented + "," + test.shadowDispatches);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeJson(File file, List<TestRecord> tests, Set<String> phases) throws IOException {
+        long classesLoaded = 0;
+        long classesInstrumented = 0;
+        long shadowDispatches = 0;
+        for (TestRecord test : tests) {
+            classesLoaded += test.classesLoaded.get();
+            classesInstrumented += test.classesInstrumented.get();
+            shadowDispatches += test.shadowDispatches.get();
+        }
+
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("{");
+            out.println("  \"tests\": " + tests.size() + ",");
+            out.println("  \"phases\": {");
+            int phaseIndex = 0;
+            for (String phase : phases) {
+                long totalNanos = 0;
+                long maxNanos = 0;
+                for (TestRecord test : tests) {
+                    Long nanos = test.getPhaseNanos().get(phase);
+                    if (nanos != null) {
+                        totalNanos += nanos;
+                        maxNanos = Math.max(maxNanos, nanos);
+                    }
+                }
+                out.print("    \"" + phase + "\": {\"totalNanos\": " + totalNanos + ", \"maxNanos\": " + maxNanos + "}");
+                out.println(++phaseIndex < phases.size() ? "," : "");
+            }
+            out.println("  },");
+            out.println("  \"classesLoaded\": " + classesLoaded + ",");
+            out.println("  \"classesInstrumented\": " + classesInstrumented + ",");
+            out.println("  \"shadowDispatches\": " + shadowDispatches);
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    static class TestRecord {
+        private final String name;
+        private final Map<String, Long> phaseNanos = new LinkedHashMap<String, Long>();
+        private final AtomicLong classesLoaded = new AtomicLong();
+        private final AtomicLong classesInstrumented = new AtomicLong();
+        private final AtomicLong shadowDispatches = new AtomicLong();
+
+        TestRecord(String name) {
+            this.name = name;
+        }
+
+        synchronized void addPhase(String phase, long nanos) {
+            Long soFar = phaseNanos.get(phase);
+            phaseNanos.put(phase, soFar == null ? nanos : soFar + nanos);
+        }
+
+        synchronized Map<String, Long> getPhaseNanos() {
+            return new LinkedHashMap<String, Long>(phaseNanos);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.xtremelabs.robolectric.bytecode;
 
 import com.xtremelabs.robolectric.RobolectricConfig;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.util.I18nException;
 import com.xtremelabs.robolectric.util.Join;
 import javassist.CannotCompileException;
@@ -18,11 +19,14 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class ShadowWrangler implements ClassHandler {
+public class ShadowWrangler implements CallSiteAwareClassHandler {
     public static final String SHADOW_FIELD_NAME = "__shadow__";
 
     private static ShadowWrangler singleton;
@@ -31,8 +35,14 @@ public class ShadowWrangler implements ClassHandler {
     private boolean strictI18n = false;
     
     private final Map<Class, MetaShadow> metaShadowMap = new HashMap<Class, MetaShadow>();
-    private Map<String, String> shadowClassMap = new HashMap<String, String>();
-    private Map<Class, Field> shadowFieldMap = new HashMap<Class, Field>();
+    private final Map<Class, Field> shadowFieldMap = new ConcurrentHashMap<Class, Field>();
+    private ShadowBindings defaultBindings;
+    private volatile ShadowBindings bindings = ShadowBindings.NONE;
+    private final RobolectricContext.Slot<ShadowBindings> bindingsForContext = new RobolectricContext.Slot<ShadowBindings>() {
+        @Override protected ShadowBindings initialValue() {
+            return ShadowBindings.NONE;
+        }
+    };
     private boolean logMissingShadowMethods = false;
 
     // sorry! it really only makes sense to have one per ClassLoader anyway though [xw/hu]
@@ -70,41 +80,173 @@ public class ShadowWrangler implements ClassHandler {
     }
 
     @Override
-    public void beforeTest() {
-        shadowClassMap.clear();
+    public synchronized void beforeTest() {
+        setBindings(ShadowBindings.NONE);
     }
 
     @Override
     public void afterTest() {
     }
 
-    public void bindShadowClass(Class<?> realClass, Class<?> shadowClass) {
-        shadowClassMap.put(realClass.getName(), shadowClass.getName());
+    public synchronized void bindShadowClass(Class<?> realClass, Class<?> shadowClass) {
+        ShadowBindings bindings = getBindings();
+        if (!shadowClass.getName().equals(bindings.getShadowClassName(realClass.getName()))) {
+            setBindings(bindings.with(realClass.getName(), shadowClass.getName()));
+        }
         if (debug) System.out.println("shadow " + realClass + " with " + shadowClass);
     }
 
+    public synchronized boolean hasDefaultShadowClasses() {
+        return defaultBindings != null;
+    }
+
+    /**
+     * Sets the shadow classes bound by {@link #bindDefaultShadowClasses()}.
+     *
+     * @param shadowClassBindings real class names mapped to the names of their shadow classes
+     */
+    public synchronized void setDefaultShadowClasses(Map<String, String> shadowClassBindings) {
+        defaultBindings = new ShadowBindings(new HashMap<String, String>(shadowClassBindings), ShadowBindings.NO_CLASSES);
+    }
+
+    /**
+     * Binds the default shadow classes on top of whatever is bound now, replacing any other shadows bound to the same
+     * classes. When nothing else is bound, every test ends up with the very same bindings, so the invocation plans
+     * worked out for one test are still good for the next.
+     */
+    public synchronized void bindDefaultShadowClasses() {
+        if (defaultBindings == null) {
+            throw new IllegalStateException("no default shadow classes have been set");
+        }
+        setBindings(getBindings().withDefaults(defaultBindings));
+    }
+
+    /**
+     * @return the shadow bindings for the current test; there's one set per thread if
+     *         {@link RobolectricContext#isPerThread() each thread has its own state}
+     */
+    private ShadowBindings getBindings() {
+        return RobolectricContext.isPerThread() ? bindingsForContext.get() : bindings;
+    }
+
+    private void setBindings(ShadowBindings bindings) {
+        if (RobolectricContext.isPerThread()) {
+            bindingsForContext.set(bindings);
+        } else {
+            this.bindings = bindings;
+        }
+    }
+
     @Override
     public Object methodInvoked(Class clazz, String methodName, Object instance, String[] paramTypes, Object[] params) throws Throwable {
-        InvocationPlan invocationPlan = new InvocationPlan(clazz, methodName, instance, paramTypes);
-        if (!invocationPlan.prepare()) {
-            reportNoShadowMethodFound(clazz, methodName, paramTypes);
+        RunnerProfiler.shadowMethodInvoked();
+        return invoke(getInvocationPlan(clazz, methodName, paramTypes), instance, params);
+    }
+
+    @Override
+    public Object methodInvoked(MethodCallSite callSite, Object instance, Object[] params) throws Throwable {
+        RunnerProfiler.shadowMethodInvoked();
+        return invoke(getInvocationPlan(callSite), instance, params);
+    }
+
+    /*
+     * The fixed-arity overloads only build the parameter array once they know there's a shadow method to pass it to,
+     * so calls to methods without one, which are most of them, don't allocate it at all.
+     */
+
+    @Override
+    public Object methodInvoked(MethodCallSite callSite, Object instance, Object param1) throws Throwable {
+        RunnerProfiler.shadowMethodInvoked();
+        InvocationPlan invocationPlan = getInvocationPlan(callSite);
+        Object shadow = shadowForCall(invocationPlan, instance);
+        ShadowMethod shadowMethod = shadowMethodForCall(invocationPlan, instance, shadow);
+        return shadowMethod == null ? null : invoke(invocationPlan, shadowMethod, shadow, new Object[] {param1});
+    }
+
+    @Override
+    public Object methodInvoked(MethodCallSite callSite, Object instance, Object param1, Object param2) throws Throwable {
+        RunnerProfiler.shadowMethodInvoked();
+        InvocationPlan invocationPlan = getInvocationPlan(callSite);
+        Object shadow = shadowForCall(invocationPlan, instance);
+        ShadowMethod shadowMethod = shadowMethodForCall(invocationPlan, instance, shadow);
+        return shadowMethod == null ? null : invoke(invocationPlan, shadowMethod, shadow, new Object[] {param1, param2});
+    }
+
+    @Override
+    public Object methodInvoked(MethodCallSite callSite, Object instance, Object param1, Object param2, Object param3) throws Throwable {
+        RunnerProfiler.shadowMethodInvoked();
+        InvocationPlan invocationPlan = getInvocationPlan(callSite);
+        Object shadow = shadowForCall(invocationPlan, instance);
+        ShadowMethod shadowMethod = shadowMethodForCall(invocationPlan, instance, shadow);
+        return shadowMethod == null ? null : invoke(invocationPlan, shadowMethod, shadow, new Object[] {param1, param2, param3});
+    }
+
+    private InvocationPlan getInvocationPlan(MethodCallSite callSite) {
+        InvocationPlan invocationPlan = (InvocationPlan) callSite.getHandlerState();
+        if (invocationPlan == null || invocationPlan.bindings != getBindings()) {
+            invocationPlan = getInvocationPlan(callSite.getDeclaringClass(), callSite.getMethodName(), callSite.getParamTypes());
+            callSite.setHandlerState(invocationPlan);
+        }
+        return invocationPlan;
+    }
+
+    private Object invoke(InvocationPlan invocationPlan, Object instance, Object[] params) throws Throwable {
+        Object shadow = shadowForCall(invocationPlan, instance);
+        ShadowMethod shadowMethod = shadowMethodForCall(invocationPlan, instance, shadow);
+        return shadowMethod == null ? null : invoke(invocationPlan, shadowMethod, shadow, params);
+    }
+
+    private Object shadowForCall(InvocationPlan invocationPlan, Object instance) {
+        return instance == null || !invocationPlan.hasShadowClass() ? null : shadowFor(instance);
+    }
+
+    /**
+     * @return the shadow method to call, or null if there isn't one; either way, the call is counted
+     */
+    private ShadowMethod shadowMethodForCall(InvocationPlan invocationPlan, Object instance, Object shadow) {
+        ShadowMethod shadowMethod = invocationPlan.hasShadowClass() ? invocationPlan.getShadowMethod(instance, shadow) : null;
+        if (shadowMethod == null) {
+            invocationPlan.countCall(false);
+            invocationPlan.reportNoShadowMethodFound();
             return null;
         }
-        
-        if (strictI18n && !invocationPlan.isI18nSafe()) {
-        	throw new I18nException("Method " + methodName + " on class " + clazz.getName() + " is not i18n-safe.");
+        invocationPlan.countCall(true);
+        return shadowMethod;
+    }
+
+    private Object invoke(InvocationPlan invocationPlan, ShadowMethod shadowMethod, Object shadow, Object[] params) throws Throwable {
+        if (strictI18n && !shadowMethod.i18nSafe) {
+        	throw new I18nException("Method " + invocationPlan.methodName + " on class " + invocationPlan.clazz.getName() + " is not i18n-safe.");
         }
 
         try {
-            return invocationPlan.getMethod().invoke(invocationPlan.getShadow(), params);
+            return shadowMethod.method.invoke(shadow, params);
         } catch (IllegalArgumentException e) {
-            throw new RuntimeException(invocationPlan.getShadow().getClass().getName() + " is not assignable from " +
+            throw new RuntimeException(shadow.getClass().getName() + " is not assignable from " +
                     invocationPlan.getDeclaredShadowClass().getName(), e);
         } catch (InvocationTargetException e) {
             throw stripStackTrace(e.getCause());
         }
     }
 
+    /**
+     * Plans are kept with the bindings they were made for, so threads with different bindings each keep their own,
+     * and looking one up doesn't take a lock.
+     */
+    private InvocationPlan getInvocationPlan(Class clazz, String methodName, String[] paramTypes) {
+        ShadowBindings bindings = getBindings();
+        MethodSignature methodSignature = new MethodSignature(clazz, methodName, paramTypes);
+        InvocationPlan invocationPlan = bindings.invocationPlans.get(methodSignature);
+        if (invocationPlan == null) {
+            InvocationPlan newPlan = new InvocationPlan(bindings, clazz, methodName, paramTypes);
+            invocationPlan = bindings.invocationPlans.putIfAbsent(methodSignature, newPlan);
+            if (invocationPlan == null) {
+                invocationPlan = newPlan;
+            }
+        }
+        return invocationPlan;
+    }
+
     private <T extends Throwable> T stripStackTrace(T throwable) {
         List<StackTraceElement> stackTrace = new ArrayList<StackTraceElement>();
         for (StackTraceElement stackTraceElement : throwable.getStackTrace()) {
@@ -207,9 +349,13 @@ public class ShadowWrangler implements ClassHandler {
     }
 
     private String getShadowClassName(Class clazz) {
+        return getShadowClassName(clazz, getBindings());
+    }
+
+    private static String getShadowClassName(Class clazz, ShadowBindings bindings) {
         String shadowClassName = null;
         while (shadowClassName == null && clazz != null) {
-            shadowClassName = shadowClassMap.get(clazz.getName());
+            shadowClassName = bindings.getShadowClassName(clazz.getName());
             clazz = clazz.getSuperclass();
         }
         return shadowClassName;
@@ -275,90 +421,113 @@ public class ShadowWrangler implements ClassHandler {
         logMissingShadowMethods = false;
     }
 
+    /**
+     * Everything about a shadowed method call that can be worked out from its signature alone, resolved the first
+     * time the method is invoked and reused until the shadow bindings change.
+     */
     private class InvocationPlan {
-        private Class clazz;
-        private ClassLoader classLoader;
-        private String methodName;
-        private Object instance;
-        private String[] paramTypes;
-        private Class<?> declaredShadowClass;
-        private Method method;
-        private Object shadow;
-
-        public InvocationPlan(Class clazz, String methodName, Object instance, String... paramTypes) {
+        private final Class clazz;
+        private final ClassLoader classLoader;
+        private final String methodName;
+        private final String[] paramTypes;
+        private final Class<?>[] paramClasses;
+        private final Class<?> declaredShadowClass;
+        private final ShadowBindings bindings;
+        private final Map<Class<?>, ShadowMethod> shadowMethods = new HashMap<Class<?>, ShadowMethod>();
+        private final DispatchHistogram.Counts dispatchCounts;
+
+        public InvocationPlan(ShadowBindings bindings, Class clazz, String methodName, String... paramTypes) {
+            this.bindings = bindings;
             this.clazz = clazz;
             this.classLoader = clazz.getClassLoader();
             this.methodName = methodName;
-            this.instance = instance;
             this.paramTypes = paramTypes;
+            this.paramClasses = getParamClasses();
+
+            Class<?> originalClass = loadClass(clazz.getName(), classLoader);
+            this.declaredShadowClass = findDeclaredShadowClassForMethod(originalClass, methodName, paramClasses);
+            this.dispatchCounts = DispatchHistogram.countsFor(
+                    clazz.getName() + "." + methodName + "(" + Join.join(", ", (Object[]) paramTypes) + ")");
+        }
+
+        public void countCall(boolean wasShadowed) {
+            if (dispatchCounts != null) {
+                dispatchCounts.countCall(wasShadowed);
+            }
         }
 
         public Class<?> getDeclaredShadowClass() {
             return declaredShadowClass;
         }
 
-        public Method getMethod() {
-            return method;
+        public boolean hasShadowClass() {
+            return declaredShadowClass != null;
         }
 
-        public Object getShadow() {
-            return shadow;
-        }
-        
-        public boolean isI18nSafe() {
-        	// method is loaded by another class loader. So do everything reflectively.
-        	Annotation[] annos = method.getAnnotations();
-        	for (int i = 0; i < annos.length; i++) {
-        		String name = annos[i].annotationType().getName();
-        		if (name.equals("com.xtremelabs.robolectric.internal.Implementation")) {
-					try {
-						Method m = (annos[i]).getClass().getMethod("i18nSafe");
-	        			return (Boolean) m.invoke(annos[i]);
-					} catch (Exception e) {
-						return true;	// should probably throw some other exception
-					}
-        		}
-        	}
-        	
-        	return true;	
+        public void reportNoShadowMethodFound() {
+            ShadowWrangler.this.reportNoShadowMethodFound(clazz, methodName, paramTypes);
         }
 
-        public boolean prepare() {
-            Class<?>[] paramClasses = getParamClasses();
-
-            Class<?> originalClass = loadClass(clazz.getName(), classLoader);
-
-            declaredShadowClass = findDeclaredShadowClassForMethod(originalClass, methodName, paramClasses);
-            if (declaredShadowClass == null) {
-                return false;
+        /**
+         * Returns the shadow method to call on {@code shadow}, or null if the shadow class doesn't implement it.
+         */
+        public ShadowMethod getShadowMethod(Object instance, Object shadow) {
+            Class<?> shadowClass = shadow == null ? null : shadow.getClass();
+            synchronized (shadowMethods) {
+                if (shadowMethods.containsKey(shadowClass)) {
+                    return shadowMethods.get(shadowClass);
+                }
             }
 
-            if (methodName.equals("<init>")) {
-                methodName = "__constructor__";
+            ShadowMethod shadowMethod = findShadowMethod(instance, shadowClass);
+            synchronized (shadowMethods) {
+                shadowMethods.put(shadowClass, shadowMethod);
             }
+            return shadowMethod;
+        }
 
+        private ShadowMethod findShadowMethod(Object instance, Class<?> shadowClass) {
+            String shadowMethodName = methodName.equals("<init>") ? "__constructor__" : methodName;
+
+            Method method;
             if (instance != null) {
-                shadow = shadowFor(instance);
-                method = getMethod(shadow.getClass(), methodName, paramClasses);
+                method = getMethod(shadowClass, shadowMethodName, paramClasses);
             } else {
-                shadow = null;
-                method = getMethod(findShadowClass(clazz), methodName, paramClasses);
+                method = getMethod(findShadowClass(clazz), shadowMethodName, paramClasses);
             }
 
             if (method == null) {
                 if (debug) {
-                    System.out.println("No method found for " + clazz + "." + methodName + "(" + Arrays.asList(paramClasses) + ") on " + declaredShadowClass.getName());
+                    System.out.println("No method found for " + clazz + "." + shadowMethodName + "(" + Arrays.asList(paramClasses) + ") on " + declaredShadowClass.getName());
                 }
-                return false;
+                return null;
             }
 
             if ((instance == null) != Modifier.isStatic(method.getModifiers())) {
-                throw new RuntimeException("method staticness of " + clazz.getName() + "." + methodName + " and " + declaredShadowClass.getName() + "." + method.getName() + " don't match");
+                throw new RuntimeException("method staticness of " + clazz.getName() + "." + shadowMethodName + " and " + declaredShadowClass.getName() + "." + method.getName() + " don't match");
             }
 
             method.setAccessible(true);
 
-            return true;
+            return new ShadowMethod(method, isI18nSafe(method));
+        }
+
+        private boolean isI18nSafe(Method method) {
+        	// method is loaded by another class loader. So do everything reflectively.
+        	Annotation[] annos = method.getAnnotations();
+        	for (int i = 0; i < annos.length; i++) {
+        		String name = annos[i].annotationType().getName();
+        		if (name.equals("com.xtremelabs.robolectric.internal.Implementation")) {
+					try {
+						Method m = (annos[i]).getClass().getMethod("i18nSafe");
+	        			return (Boolean) m.invoke(annos[i]);
+					} catch (Exception e) {
+						return true;	// should probably throw some other exception
+					}
+        		}
+        	}
+        	
+        	return true;	
         }
 
         private Class<?> findDeclaredShadowClassForMethod(Class<?> originalClass, String methodName, Class<?>[] paramClasses) {
@@ -367,7 +536,7 @@ public class ShadowWrangler implements ClassHandler {
         }
 
         private Class<?> findShadowClass(Class<?> originalClass) {
-            String declaredShadowClassName = getShadowClassName(originalClass);
+            String declaredShadowClassName = getShadowClassName(originalClass, bindings);
             if (declaredShadowClassName == null) {
                 return null;
             }
@@ -376,7 +545,7 @@ public class ShadowWrangler implements ClassHandler {
 
         private Class<?> findDeclaringClassForMethod(String methodName, Class<?>[] paramClasses, Class<?> originalClass) {
             Class<?> declaringClass;
-            if (this.methodName.equals("<init>")) {
+            if (methodName.equals("<init>")) {
                 declaringClass = originalClass;
             } else {
                 Method originalMethod;
@@ -432,8 +601,92 @@ public class ShadowWrangler implements ClassHandler {
 
         @Override
         public String toString() {
-            return "delegating to " + declaredShadowClass.getName() + "." + method.getName()
-                    + "(" + Arrays.toString(method.getParameterTypes()) + ")";
+            return "delegating " + clazz.getName() + "." + methodName + "(" + Join.join(", ", (Object[]) paramTypes)
+                    + ") to " + (declaredShadowClass == null ? "nothing" : declaredShadowClass.getName());
+        }
+    }
+
+    /**
+     * An immutable set of shadow class bindings: the default bindings, shared by every test, with any bindings made by
+     * the current test layered on top. Binding another class makes a new set and leaves this one alone, so invocation
+     * plans can check they're still good just by comparing the set they were made with to the current one. Each set
+     * keeps the plans made for it.
+     */
+    private static class ShadowBindings {
+        static final Map<String, String> NO_CLASSES = Collections.emptyMap();
+        static final ShadowBindings NONE = new ShadowBindings(NO_CLASSES, NO_CLASSES);
+
+        private final Map<String, String> defaultShadowClassNames;
+        private final Map<String, String> customShadowClassNames;
+        final ConcurrentMap<MethodSignature, InvocationPlan> invocationPlans = new ConcurrentHashMap<MethodSignature, InvocationPlan>();
+
+        ShadowBindings(Map<String, String> defaultShadowClassNames, Map<String, String> customShadowClassNames) {
+            this.defaultShadowClassNames = defaultShadowClassNames;
+            this.customShadowClassNames = customShadowClassNames;
+        }
+
+        String getShadowClassName(String realClassName) {
+            String shadowClassName = customShadowClassNames.get(realClassName);
+            return shadowClassName != null ? shadowClassName : defaultShadowClassNames.get(realClassName);
+        }
+
+        ShadowBindings with(String realClassName, String shadowClassName) {
+            Map<String, String> newCustomShadowClassNames = new HashMap<String, String>(customShadowClassNames);
+            newCustomShadowClassNames.put(realClassName, shadowClassName);
+            return new ShadowBindings(defaultShadowClassNames, newCustomShadowClassNames);
+        }
+
+        ShadowBindings withDefaults(ShadowBindings defaults) {
+            if (customShadowClassNames.isEmpty() && defaultShadowClassNames.isEmpty()) {
+                return defaults;
+            }
+
+            // like binding each default in turn: the defaults win over this test's bindings for the same classes,
+            // and the rest of this test's bindings stay layered on top
+            Map<String, String> newCustomShadowClassNames = new HashMap<String, String>(defaultShadowClassNames);
+            newCustomShadowClassNames.putAll(customShadowClassNames);
+            newCustomShadowClassNames.keySet().removeAll(defaults.defaultShadowClassNames.keySet());
+            if (newCustomShadowClassNames.isEmpty()) {
+                return defaults;
+            }
+            return new ShadowBindings(defaults.defaultShadowClassNames, newCustomShadowClassNames);
+        }
+    }
+
+    private static class ShadowMethod {
+        final Method method;
+        final boolean i18nSafe;
+
+        ShadowMethod(Method method, boolean i18nSafe) {
+            this.method = method;
+            this.i18nSafe = i18nSafe;
+        }
+    }
+
+    private static class MethodSignature {
+        private final Class clazz;
+        private final String methodName;
+        private final String[] paramTypes;
+        private final int hashCode;
+
+        MethodSignature(Class clazz, String methodName, String[] paramTypes) {
+            this.clazz = clazz;
+            this.methodName = methodName;
+            this.paramTypes = paramTypes;
+            this.hashCode = 31 * (31 * clazz.hashCode() + methodName.hashCode()) + Arrays.hashCode(paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MethodSignature)) return false;
+            MethodSignature that = (MethodSignature) o;
+            return clazz == that.clazz && methodName.equals(that.methodName) && Arrays.equals(paramTypes, that.paramTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
     }
 
@@ -0,0 +1,119 @@
+package com.xtremelabs.robolectric.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the state Robolectric keeps for the test that's running, such as the application and the shadow bindings,
+ * so it can all be thrown away together before the next test.
+ * <p/>
+ * Normally there's one context, shared by every thread. If the {@value #PER_THREAD_PROPERTY} system property is
+ * true, each thread gets its own instead, and threads started by a test share that test's context. Tests in
+ * different threads then don't see each other's state, so JUnit can run Robolectric tests in parallel in one JVM,
+ * sharing one instrumenting class loader and one set of parsed resources.
+ * <p/>
+ * State is kept in {@link Slot}s, declared as static fields by the classes that own the state. That includes the
+ * shadows' state that {@link com.xtremelabs.robolectric.Robolectric#resetStaticState()} resets before each test, and
+ * the directories {@link com.xtremelabs.robolectric.shadows.ShadowContext} hands out, which are a test's own when each
+ * thread has a context. Settings still kept in plain static fields, such as
+ * {@link com.xtremelabs.robolectric.shadows.ShadowDrawable#setDefaultIntrinsicWidth(int)} and
+ * {@link com.xtremelabs.robolectric.util.DatabaseTemplates}, are shared by every test whichever way contexts are kept.
+ */
+public class RobolectricContext {
+    public static final String PER_THREAD_PROPERTY = "robolectric.perThreadState";
+
+    private static final Object NULL = new Object();
+
+    private static volatile boolean perThread = Boolean.getBoolean(PER_THREAD_PROPERTY);
+    private static final RobolectricContext shared = new RobolectricContext();
+    private static final ThreadLocal<RobolectricContext> contextForThread = new InheritableThreadLocal<RobolectricContext>() {
+        @Override protected RobolectricContext initialValue() {
+            return new RobolectricContext();
+        }
+    };
+
+    private final ConcurrentMap<Slot<?>, Object> values = new ConcurrentHashMap<Slot<?>, Object>();
+
+    /**
+     * @return the context for the current thread's test
+     */
+    public static RobolectricContext get() {
+        return perThread ? contextForThread.get() : shared;
+    }
+
+    public static boolean isPerThread() {
+        return perThread;
+    }
+
+    /**
+     * Switches between one context for every thread and one per thread. Only call this while no tests are running.
+     */
+    public static void setPerThread(boolean perThread) {
+        RobolectricContext.perThread = perThread;
+    }
+
+    /**
+     * Throws away the state of the last test to run on this thread, so slots go back to their initial values. With
+     * one context per thread, the thread gets a new context, and threads the last test left behind keep the old one.
+     */
+    public static void reset() {
+        if (perThread) {
+            contextForThread.set(new RobolectricContext());
+        } else {
+            shared.values.clear();
+        }
+    }
+
+    /**
+     * With one context per thread, makes {@code context} the current thread's, so work a test hands to a thread that
+     * was started before it, such as a pooled worker, runs against that test's state and not the state of whichever
+     * test started the thread.
+     *
+     * @return the context the thread had, to be installed again once the work is done
+     */
+    public static RobolectricContext install(RobolectricContext context) {
+        if (!perThread) {
+            return shared;
+        }
+        RobolectricContext previous = contextForThread.get();
+        contextForThread.set(context);
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getValue(Slot<T> slot) {
+        Object value = values.get(slot);
+        if (value == null) {
+            T initialValue = slot.initialValue();
+            value = values.putIfAbsent(slot, initialValue == null ? NULL : initialValue);
+            if (value == null) {
+                return initialValue;
+            }
+        }
+        return value == NULL ? null : (T) value;
+    }
+
+    private <T> void setValue(Slot<T> slot, T value) {
+        values.put(slot, value == null ? NULL : value);
+    }
+
+    /**
+     * A piece of state kept in the current {@link RobolectricContext}.
+     */
+    public static class Slot<T> {
+        /**
+         * @return the value of this slot in a context that hasn't set it; null unless overridden
+         */
+        protected T initialValue() {
+            return null;
+        }
+
+        public T get() {
+            return RobolectricContext.get().getValue(this);
+        }
+
+        public void set(T value) {
+            RobolectricContext.get().setValue(this, value);
+        }
+    }
+}
@@ -8,13 +8,17 @@ import org.w3c.dom.NodeList;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathFactory;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class AttrResourceLoader extends XmlLoader {
+public class AttrResourceLoader extends XmlLoader implements ValueElementLoader, SnapshotableLoader {
     Map<String, String> classAttrEnumToValue = new HashMap<String, String>();
     Set<String> knownClassAttrs = new HashSet<String>();
 
@@ -32,9 +36,48 @@ public class AttrResourceLoader extends XmlLoader {
             String enumName = node.getParentNode().getAttributes().getNamedItem("name").getNodeValue();
             String name = node.getAttributes().getNamedItem("name").getNodeValue();
             String value = node.getAttributes().getNamedItem("value").getNodeValue();
+            addEnum(viewName, enumName, name, value, isSystem);
+        }
+    }
+
+    @Override
+    public void processValueElements(File xmlFile, String rootName, List<ValueElement> elements, boolean isSystem) {
+        if (!"resources".equals(rootName)) {
+            return;
+        }
+        for (ValueElement declareStyleable : elements) {
+            if (!"declare-styleable".equals(declareStyleable.getName())) {
+                continue;
+            }
+            for (ValueElement attr : declareStyleable.getChildren("attr")) {
+                for (ValueElement enumElement : attr.getChildren("enum")) {
+                    addEnum(declareStyleable.getAttribute("name"), attr.getAttribute("name"),
+                            enumElement.getAttribute("name"), enumElement.getAttribute("value"), isSystem);
+                }
+            }
+        }
+    }
+
+    private void addEnum(String viewName, String enumName, String name, String value, boolean isSystem) {
+        classAttrEnumToValue.put(key(viewName, enumName, name, isSystem), value);
+        knownClassAttrs.add(key(viewName, enumName, isSystem));
+    }
+
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        ResourceSnapshot.writeStringMap(out, classAttrEnumToValue);
+        out.writeInt(knownClassAttrs.size());
+        for (String knownClassAttr : knownClassAttrs) {
+            ResourceSnapshot.writeString(out, knownClassAttr);
+        }
+    }
 
-            classAttrEnumToValue.put(key(viewName, enumName, name, isSystem), value);
-            knownClassAttrs.add(key(viewName, enumName, isSystem));
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        classAttrEnumToValue.putAll(ResourceSnapshot.readStringMap(in));
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            knownClassAttrs.add(ResourceSnapshot.readString(in));
         }
     }
 
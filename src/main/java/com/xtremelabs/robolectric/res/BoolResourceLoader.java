@@ -3,31 +3,30 @@
  */
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-
 public class BoolResourceLoader extends XTagXmlResourceLoader
 		implements ResourceValueConverter {
 
 	private static final String BOOL = "bool";
 	private final ResourceReferenceResolver<Boolean> boolResolver = 
-			new ResourceReferenceResolver<Boolean>(BOOL);
+			new ResourceReferenceResolver<Boolean>(BOOL, resourceExtractor);
 	
 	public BoolResourceLoader(ResourceExtractor resourceExtractor) {
 		super(resourceExtractor, BOOL);
 	}
 	
 	public boolean getValue(int resourceId) {
+        Boolean value = boolResolver.getValue(resourceId);
+        if (value != null) {
+            return value;
+        }
+
         final String resourceIdDebugString = String.valueOf(resourceId) + " (" + "0x" + Integer.toHexString(resourceId) + ")";
 		String resourceName = resourceExtractor.getResourceName(resourceId);
         if (resourceName == null) {
             throw new IllegalArgumentException("No such resource: " + resourceId);
         }
-        Boolean value = boolResolver.getValue(resourceName);
-        if (value == null) { // instead of auto-unboxing NPE
-            throw new IllegalArgumentException("Got resource name " + resourceName + " from id " + resourceIdDebugString
-                                                   + ", but found no resource by that name");
-        }
-        return value;
+        throw new IllegalArgumentException("Got resource name " + resourceName + " from id " + resourceIdDebugString
+                                               + ", but found no resource by that name");
 	}
 
 	public boolean getValue( String resourceName, boolean isSystem ) {
@@ -57,9 +56,9 @@ public class BoolResourceLoader extends XTagXmlResourceLoader
 	}
 
 	@Override
-	protected void processNode(Node node, String name, boolean isSystem) {
+	protected void processElement(ValueElement element, String name, boolean isSystem) {
 		boolResolver.processResource(
-				name, node.getTextContent(), this, isSystem);
+				name, element.getTextContent(), this, isSystem);
 	}
 
 }
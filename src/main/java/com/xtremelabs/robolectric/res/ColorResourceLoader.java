@@ -1,13 +1,14 @@
 package com.xtremelabs.robolectric.res;
 
 import android.graphics.Color;
-import org.w3c.dom.Node;
-
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-public class ColorResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
-    private ResourceReferenceResolver<Integer> colorResolver = new ResourceReferenceResolver<Integer>("color");
+public class ColorResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter, SnapshotableLoader {
+    private ResourceReferenceResolver<Integer> colorResolver = new ResourceReferenceResolver<Integer>("color", resourceExtractor);
     private static Map<String, Integer> androidColors = new HashMap<String, Integer>();
 
     static {
@@ -29,18 +30,13 @@ public class ColorResourceLoader extends XpathResourceXmlLoader implements Resou
     }
 
     public int getValue(int colorId) {
-        String resourceName = resourceExtractor.getResourceName(colorId);
-        if (resourceName == null) {
-            return -1;
-        }
-
-        Integer colorResolverValue = colorResolver.getValue(resourceName);
+        Integer colorResolverValue = colorResolver.getValue(colorId);
         return colorResolverValue == null ? -1 : colorResolverValue;
     }
 
     @Override
-    protected void processNode(Node node, String name, boolean isSystem) {
-        colorResolver.processResource(name, node.getTextContent(), this, isSystem);
+    protected void processElement(ValueElement element, String name, boolean isSystem) {
+        colorResolver.processResource(name, element.getTextContent(), this, isSystem);
     }
 
     @Override
@@ -53,4 +49,14 @@ public class ColorResourceLoader extends XpathResourceXmlLoader implements Resou
         }
         return null;
     }
+
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        colorResolver.writeSnapshot(out);
+    }
+
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        colorResolver.readSnapshot(in);
+    }
 }
@@ -1,18 +1,21 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-public class DimenResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class DimenResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter, SnapshotableLoader {
 
     private static final String[] UNITS = { "dp", "dip", "pt", "px", "sp" };
 	
-    private ResourceReferenceResolver<Float> dimenResolver = new ResourceReferenceResolver<Float>("dimen");
+    private ResourceReferenceResolver<Float> dimenResolver = new ResourceReferenceResolver<Float>("dimen", resourceExtractor);
 
     public DimenResourceLoader(ResourceExtractor resourceExtractor) {
         super(resourceExtractor, "/resources/dimen");
     }
 
     public float getValue(int resourceId) {
-        return dimenResolver.getValue(resourceExtractor.getResourceName(resourceId));
+        return dimenResolver.getValue(resourceId);
     }
 
     public float getValue(String resourceName, boolean isSystem) {
@@ -20,8 +23,8 @@ public class DimenResourceLoader extends XpathResourceXmlLoader implements Resou
     }
 
     @Override
-    protected void processNode(Node node, String name, boolean isSystem) {
-        dimenResolver.processResource(name, node.getTextContent(), this, isSystem);
+    protected void processElement(ValueElement element, String name, boolean isSystem) {
+        dimenResolver.processResource(name, element.getTextContent(), this, isSystem);
     }
 
     @Override
@@ -36,5 +39,14 @@ public class DimenResourceLoader extends XpathResourceXmlLoader implements Resou
     	
         return Float.parseFloat(rawValue.substring(0, end));
     }
-}
 
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        dimenResolver.writeSnapshot(out);
+    }
+
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        dimenResolver.readSnapshot(in);
+    }
+}
@@ -6,62 +6,140 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class DocumentLoader {
-    private final XmlLoader[] xmlLoaders;
-    private final DocumentBuilderFactory documentBuilderFactory;
-    private FileFilter xmlFileFilter = new FileFilter() {
+    private static final int PARSE_AHEAD = 2 * Runtime.getRuntime().availableProcessors();
+
+    static final ExecutorService PARSER_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "robolectric-xml-parser");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        @Override protected DocumentBuilder initialValue() {
+            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setNamespaceAware(true);
+            documentBuilderFactory.setIgnoringComments(true);
+            documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+            try {
+                return documentBuilderFactory.newDocumentBuilder();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private static final FileFilter XML_FILE_FILTER = new FileFilter() {
         @Override public boolean accept(File file) {
             return file.getName().endsWith(".xml");
         }
     };
 
+    private final XmlLoader[] xmlLoaders;
+
     public DocumentLoader(XmlLoader... xmlLoaders) {
         this.xmlLoaders = xmlLoaders;
-
-        documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setNamespaceAware(true);
-        documentBuilderFactory.setIgnoringComments(true);
-        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
     }
 
     public void loadResourceXmlDirs(File... resourceXmlDirs) throws Exception {
         loadResourceXmlDirs(false, resourceXmlDirs);
     }
 
-    public void loadResourceXmlDirs(boolean isSystem, File... resourceXmlDirs) throws Exception {
-        for (File resourceXmlDir : resourceXmlDirs) {
-            loadResourceXmlDir(resourceXmlDir, isSystem);
-        }
+    public void loadResourceXmlDirs(final boolean isSystem, File... resourceXmlDirs) throws Exception {
+        new InOrderParser<Document>() {
+            @Override Document parse(File file) throws Exception {
+                return DocumentLoader.parse(file);
+            }
+
+            @Override void load(File file, Document document) throws Exception {
+                for (XmlLoader xmlLoader : xmlLoaders) {
+                    xmlLoader.processResourceXml(file, document, isSystem);
+                }
+            }
+        }.parseAndLoad(listXmlFiles(resourceXmlDirs));
     }
 
     public void loadResourceXmlDir(File resourceXmlDir) throws Exception {
-        loadResourceXmlDir(resourceXmlDir, false);
+        loadResourceXmlDirs(false, resourceXmlDir);
     }
 
     public void loadSystemResourceXmlDir(File resourceXmlDir) throws Exception {
-        loadResourceXmlDir(resourceXmlDir, true);
+        loadResourceXmlDirs(true, resourceXmlDir);
     }
 
-    private void loadResourceXmlDir(File resourceXmlDir, boolean isSystem) throws Exception {
-        if (!resourceXmlDir.exists()) {
-            throw new RuntimeException("no such directory " + resourceXmlDir);
-        }
+    static Document parse(File file) throws Exception {
+        return DOCUMENT_BUILDER.get().parse(file);
+    }
 
-        for (File file : resourceXmlDir.listFiles(xmlFileFilter)) {
-            loadResourceXmlFile(file, isSystem);
+    /**
+     * @return the XML files in the given directories, in the order they should be loaded
+     */
+    static List<File> listXmlFiles(File... resourceXmlDirs) {
+        List<File> files = new ArrayList<File>();
+        for (File resourceXmlDir : resourceXmlDirs) {
+            if (!resourceXmlDir.exists()) {
+                throw new RuntimeException("no such directory " + resourceXmlDir);
+            }
+            files.addAll(Arrays.asList(resourceXmlDir.listFiles(XML_FILE_FILTER)));
         }
+        return files;
     }
 
-    private void loadResourceXmlFile(File file, boolean isSystem) throws Exception {
-        for (XmlLoader xmlLoader : xmlLoaders) {
-            xmlLoader.processResourceXml(file, parse(file), isSystem);
+    /**
+     * Parses files on {@link #PARSER_POOL} no more than {@link #PARSE_AHEAD} files ahead of the one being loaded, and
+     * hands each one to {@link #load} on the calling thread, in order, as soon as it's ready. Only that window of parsed
+     * files is held at once; each is dropped as soon as it's been loaded.
+     */
+    abstract static class InOrderParser<T> {
+        abstract T parse(File file) throws Exception;
+
+        abstract void load(File file, T parsed) throws Exception;
+
+        void parseAndLoad(List<File> files) throws Exception {
+            LinkedList<Future<T>> parsing = new LinkedList<Future<T>>();
+            int nextToParse = 0;
+            try {
+                for (File file : files) {
+                    while (nextToParse < files.size() && parsing.size() < PARSE_AHEAD) {
+                        final File fileToParse = files.get(nextToParse++);
+                        parsing.add(PARSER_POOL.submit(new Callable<T>() {
+                            @Override public T call() throws Exception {
+                                return parse(fileToParse);
+                            }
+                        }));
+                    }
+                    load(file, get(parsing.removeFirst()));
+                }
+            } finally {
+                for (Future<T> future : parsing) {
+                    future.cancel(false);
+                }
+            }
         }
-    }
 
-    private Document parse(File xmlFile) throws Exception {
-        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        return documentBuilder.parse(xmlFile);
+        private T get(Future<T> future) throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
     }
-
 }
@@ -1,12 +1,5 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -32,14 +25,10 @@ public class IntegerArrayResourceLoader extends XpathResourceXmlLoader {
         return results;
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
+    @Override protected void processElement(ValueElement element, String name, boolean isSystem) {
         List<Integer> arrayValues = new ArrayList<Integer>();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-
-            String value = childNode.getTextContent();
+        for (ValueElement item : element.getChildren("item")) {
+            String value = item.getTextContent();
             if (value.startsWith("@")) {
                 value = value.substring(1);
                 arrayValues.add(integerResourceLoader.getValue(value , isSystem));
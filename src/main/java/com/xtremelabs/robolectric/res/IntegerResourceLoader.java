@@ -1,27 +1,30 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
-public class IntegerResourceLoader extends XTagXmlResourceLoader implements ResourceValueConverter {
+public class IntegerResourceLoader extends XTagXmlResourceLoader implements ResourceValueConverter, SnapshotableLoader {
 
-	private final ResourceReferenceResolver< Integer > integerResolver = new ResourceReferenceResolver< Integer >( "integer" );
+	private final ResourceReferenceResolver< Integer > integerResolver = new ResourceReferenceResolver< Integer >( "integer", resourceExtractor );
 
 	public IntegerResourceLoader( ResourceExtractor resourceExtractor ) {
 		super( resourceExtractor, "integer" );
 	}
 
 	public int getValue( int resourceId ) {
+        Integer value = integerResolver.getValue(resourceId);
+        if (value != null) {
+            return value;
+        }
+
         final String resourceIdDebugString = String.valueOf(resourceId) + " (" + "0x" + Integer.toHexString(resourceId) + ")";
 		String resourceName = resourceExtractor.getResourceName(resourceId);
         if (resourceName == null) {
             throw new IllegalArgumentException("No such resource: " + resourceId);
         }
-        Integer value = integerResolver.getValue(resourceName);
-        if (value == null) { // instead of auto-unboxing NPE
-            throw new IllegalArgumentException("Got resource name " + resourceName + " from id " + resourceIdDebugString
-                                                   + ", but found no resource by that name");
-        }
-        return value;
+        throw new IllegalArgumentException("Got resource name " + resourceName + " from id " + resourceIdDebugString
+                                               + ", but found no resource by that name");
 	}
 
 	public int getValue( String resourceName, boolean isSystem ) {
@@ -45,8 +48,17 @@ public class IntegerResourceLoader extends XTagXmlResourceLoader implements Reso
 	}
 
 	@Override
-	protected void processNode( Node node, String name, boolean isSystem ) {
-		integerResolver.processResource( name, node.getTextContent(), this, isSystem );
+	protected void processElement( ValueElement element, String name, boolean isSystem ) {
+		integerResolver.processResource( name, element.getTextContent(), this, isSystem );
+	}
+
+	@Override
+	public void writeSnapshot(DataOutputStream out) throws IOException {
+		integerResolver.writeSnapshot(out);
 	}
 
+	@Override
+	public void readSnapshot(DataInputStream in) throws IOException {
+		integerResolver.readSnapshot(in);
+	}
 }
@@ -1,6 +1,9 @@
 package com.xtremelabs.robolectric.res;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,7 +23,7 @@ import android.view.SubMenu;
 import com.xtremelabs.robolectric.tester.android.util.TestAttributeSet;
 import com.xtremelabs.robolectric.util.I18nException;
 
-public class MenuLoader extends XmlLoader {
+public class MenuLoader extends XmlLoader implements SnapshotableLoader {
     private Map<String, MenuNode> menuNodesByMenuName = new HashMap<String, MenuNode>();
     private AttrResourceLoader attrResourceLoader;
 
@@ -98,6 +101,41 @@ public class MenuLoader extends XmlLoader {
         inflateMenu(context, key, null, root);
     }
 
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(menuNodesByMenuName.size());
+        for (Map.Entry<String, MenuNode> entry : menuNodesByMenuName.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            writeMenuNode(out, entry.getValue());
+        }
+    }
+
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            menuNodesByMenuName.put(ResourceSnapshot.readString(in), readMenuNode(in));
+        }
+    }
+
+    private void writeMenuNode(DataOutputStream out, MenuNode menuNode) throws IOException {
+        ResourceSnapshot.writeString(out, menuNode.name);
+        ResourceSnapshot.writeStringMap(out, menuNode.attributeMap);
+        out.writeInt(menuNode.children.size());
+        for (MenuNode child : menuNode.children) {
+            writeMenuNode(out, child);
+        }
+    }
+
+    private MenuNode readMenuNode(DataInputStream in) throws IOException {
+        MenuNode menuNode = new MenuNode(ResourceSnapshot.readString(in), ResourceSnapshot.readStringMap(in));
+        int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            menuNode.addChild(readMenuNode(in));
+        }
+        return menuNode;
+    }
+
     public void inflateMenu(Context context, int resourceId, Menu root) {
         inflateMenu(context, resourceExtractor.getResourceName(resourceId),
                 root);
@@ -128,12 +166,14 @@ public class MenuLoader extends XmlLoader {
 
     public class MenuNode {
         private String name;
+        private final Map<String, String> attributeMap;
         private final TestAttributeSet attributes;
 
         private List<MenuNode> children = new ArrayList<MenuNode>();
 
         public MenuNode(String name, Map<String, String> attributes) {
             this.name = name;
+            this.attributeMap = attributes;
             this.attributes = new TestAttributeSet(attributes,
                     resourceExtractor, attrResourceLoader, null, false);
         }
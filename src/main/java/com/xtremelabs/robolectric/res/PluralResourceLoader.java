@@ -1,18 +1,14 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class PluralResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
+public class PluralResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter, SnapshotableLoader {
     Map<String, PluralRules> plurals = new HashMap<String, PluralRules>();
     private StringResourceLoader stringResourceLoader;
 
@@ -33,14 +29,11 @@ public class PluralResourceLoader extends XpathResourceXmlLoader implements Reso
         return null;
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
+    @Override protected void processElement(ValueElement element, String name, boolean isSystem) {
         PluralRules rules = new PluralRules();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-            String value = childNode.getTextContent();
-            String quantity = childNode.getAttributes().getNamedItem("quantity").getTextContent();
+        for (ValueElement item : element.getChildren("item")) {
+            String value = item.getTextContent();
+            String quantity = item.getAttribute("quantity");
             if (value.startsWith("@")) {
                 value = value.substring(1);
                 rules.add(new Plural(quantity, stringResourceLoader.getValue(value, isSystem)));
@@ -55,6 +48,31 @@ public class PluralResourceLoader extends XpathResourceXmlLoader implements Reso
         return rawValue;
     }
 
+    @Override public void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(plurals.size());
+        for (Map.Entry<String, PluralRules> entry : plurals.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().plurals.size());
+            for (Plural plural : entry.getValue().plurals) {
+                ResourceSnapshot.writeString(out, plural.quantity);
+                ResourceSnapshot.writeString(out, plural.string);
+            }
+        }
+    }
+
+    @Override public void readSnapshot(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String name = ResourceSnapshot.readString(in);
+            PluralRules rules = new PluralRules();
+            int pluralCount = in.readInt();
+            for (int j = 0; j < pluralCount; j++) {
+                rules.add(new Plural(ResourceSnapshot.readString(in), ResourceSnapshot.readString(in)));
+            }
+            plurals.put(name, rules);
+        }
+    }
+
     static class PluralRules {
         List<Plural> plurals = new ArrayList<Plural>();
 
@@ -1,6 +1,9 @@
 package com.xtremelabs.robolectric.res;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,7 +25,7 @@ import android.preference.PreferenceGroup;
 import android.preference.PreferenceScreen;
 import android.util.AttributeSet;
 
-public class PreferenceLoader extends XmlLoader {
+public class PreferenceLoader extends XmlLoader implements SnapshotableLoader {
 	
     private Map<String, PreferenceNode> prefNodesByResourceName = new HashMap<String, PreferenceNode>();
 
@@ -80,6 +83,41 @@ public class PreferenceLoader extends XmlLoader {
         }
 	}
 
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(prefNodesByResourceName.size());
+        for (Map.Entry<String, PreferenceNode> entry : prefNodesByResourceName.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            writePreferenceNode(out, entry.getValue());
+        }
+    }
+
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            prefNodesByResourceName.put(ResourceSnapshot.readString(in), readPreferenceNode(in));
+        }
+    }
+
+    private void writePreferenceNode(DataOutputStream out, PreferenceNode prefNode) throws IOException {
+        ResourceSnapshot.writeString(out, prefNode.name);
+        ResourceSnapshot.writeStringMap(out, prefNode.attributes);
+        out.writeInt(prefNode.children.size());
+        for (PreferenceNode child : prefNode.children) {
+            writePreferenceNode(out, child);
+        }
+    }
+
+    private PreferenceNode readPreferenceNode(DataInputStream in) throws IOException {
+        PreferenceNode prefNode = new PreferenceNode(ResourceSnapshot.readString(in), ResourceSnapshot.readStringMap(in));
+        int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            prefNode.addChild(readPreferenceNode(in));
+        }
+        return prefNode;
+    }
+
     public class PreferenceNode {
         private String name;
         private final Map<String, String> attributes;
@@ -9,6 +9,8 @@ public class ResourceExtractor {
     private Map<String, Integer> localResourceStringToId = new HashMap<String, Integer>();
     private Map<String, Integer> systemResourceStringToId = new HashMap<String, Integer>();
     private Map<Integer, String> resourceIdToString = new HashMap<Integer, String>();
+    private volatile ResourceIdTable<String> resourceNamesById;
+    private volatile int rClassCount;
 
     public void addLocalRClass(Class rClass) throws Exception {
         addRClass(rClass, false);
@@ -18,7 +20,7 @@ public class ResourceExtractor {
         addRClass(rClass, true);
     }
 
-    private void addRClass(Class rClass, boolean isSystemRClass) throws Exception {
+    private synchronized void addRClass(Class rClass, boolean isSystemRClass) throws Exception {
         for (Class innerClass : rClass.getClasses()) {
             for (Field field : innerClass.getDeclaredFields()) {
                 if (field.getType().equals(Integer.TYPE) && Modifier.isStatic(field.getModifiers())) {
@@ -45,6 +47,8 @@ public class ResourceExtractor {
                 }
             }
         }
+        resourceNamesById = null;
+        rClassCount++;
     }
 
     public Integer getResourceId(String resourceName) {
@@ -84,6 +88,24 @@ public class ResourceExtractor {
     }
 
     public String getResourceName(int resourceId) {
-        return resourceIdToString.get(resourceId);
+        ResourceIdTable<String> resourceNamesById = this.resourceNamesById;
+        if (resourceNamesById == null) {
+            resourceNamesById = buildResourceNamesById();
+        }
+        return resourceNamesById.get(resourceId);
+    }
+
+    private synchronized ResourceIdTable<String> buildResourceNamesById() {
+        if (resourceNamesById == null) {
+            resourceNamesById = new ResourceIdTable<String>(resourceIdToString);
+        }
+        return resourceNamesById;
+    }
+
+    /**
+     * @return how many R classes have been added, so tables keyed by resource id can tell when they need rebuilding
+     */
+    int getRClassCount() {
+        return rClassCount;
     }
 }
\ No newline at end of file
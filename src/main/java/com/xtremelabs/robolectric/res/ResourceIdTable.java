@@ -0,0 +1,37 @@
+package com.xtremelabs.robolectric.res;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable table from resource id to value, kept as a sorted {@code int[]} so lookups are a binary search that
+ * neither boxes the id nor hashes a resource name.
+ */
+class ResourceIdTable<T> {
+    private final int[] resourceIds;
+    private final Object[] values;
+
+    ResourceIdTable(Map<Integer, T> valuesByResourceId) {
+        resourceIds = new int[valuesByResourceId.size()];
+        int i = 0;
+        for (Integer resourceId : valuesByResourceId.keySet()) {
+            resourceIds[i++] = resourceId;
+        }
+        Arrays.sort(resourceIds);
+
+        values = new Object[resourceIds.length];
+        for (i = 0; i < resourceIds.length; i++) {
+            values[i] = valuesByResourceId.get(resourceIds[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int resourceId) {
+        int index = Arrays.binarySearch(resourceIds, resourceId);
+        return index < 0 ? null : (T) values[index];
+    }
+
+    int size() {
+        return resourceIds.length;
+    }
+}
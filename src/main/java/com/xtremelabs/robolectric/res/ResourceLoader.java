@@ -4,7 +4,10 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
 import java.io.*;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
@@ -45,6 +48,7 @@ public class ResourceLoader {
 	};
 
 	private File resourceDir;
+	private File systemResourceDir;
 	private File assetsDir;
 	private int sdkVersion;
 	private Class rClass;
@@ -65,6 +69,11 @@ public class ResourceLoader {
 	private final IntegerResourceLoader integerResourceLoader;
 	private final BoolResourceLoader boolResourceLoader;
 	private boolean isInitialized = false;
+	private boolean layoutsLoaded = false;
+	private boolean menusLoaded = false;
+	private boolean drawablesLoaded = false;
+	private boolean preferencesLoaded = false;
+	private boolean xmlFilesLoaded = false;
 	private boolean strictI18n = false;
 	
 	private final Set<Integer> ninePatchDrawableIds = new HashSet<Integer>();
@@ -112,7 +121,7 @@ public class ResourceLoader {
 		return strictI18n;
 	}
 
-	private void init() {
+	private synchronized void init() {
 		if ( isInitialized ) {
 			return;
 		}
@@ -129,22 +138,18 @@ public class ResourceLoader {
 				preferenceLoader.setStrictI18n( strictI18n );
 				xmlFileLoader.setStrictI18n( strictI18n );
 
-				File systemResourceDir = getSystemResourceDir( getPathToAndroidResources() );
+				systemResourceDir = getSystemResourceDir( getPathToAndroidResources() );
 				File localValueResourceDir = getValueResourceDir( resourceDir, null, true );
 				File systemValueResourceDir = getValueResourceDir( systemResourceDir, null, false );
-				File preferenceDir = getPreferenceResourceDir( resourceDir );
-
-				loadStringResources( localValueResourceDir, systemValueResourceDir );
-				loadPluralsResources( localValueResourceDir, systemValueResourceDir );
-				loadValueResources( localValueResourceDir, systemValueResourceDir );
-				loadDimenResources( localValueResourceDir, systemValueResourceDir );
-				loadIntegerResource( localValueResourceDir, systemValueResourceDir );
-				loadViewResources( systemResourceDir, resourceDir );
-				loadMenuResources( resourceDir );
-				loadDrawableResources( resourceDir );
-				loadPreferenceResources( preferenceDir );
-				loadXmlFileResources( preferenceDir );
-				
+
+				File snapshotFile = ResourceSnapshot.getSnapshotFile( resourceDir, systemResourceDir );
+				if ( snapshotFile != null ) {
+					loadResourcesFromSnapshot( snapshotFile, localValueResourceDir, systemValueResourceDir );
+				} else {
+					// layouts, menus, drawables and xml files are only loaded once something asks for them
+					loadAllValueResources( localValueResourceDir, systemValueResourceDir );
+				}
+
 				listNinePatchResources(ninePatchDrawableIds, resourceDir);
 			} else {
 				viewLoader = null;
@@ -165,21 +170,20 @@ public class ResourceLoader {
 	 *
 	 * @param locale
 	 */
-	public void reloadValuesResouces( String qualifiers ) {
+	public synchronized void reloadValuesResouces( String qualifiers ) {
 		
 		File systemResourceDir = getSystemResourceDir( getPathToAndroidResources() );
 		File localValueResourceDir = getValueResourceDir( resourceDir, qualifiers, true );
 		File systemValueResourceDir = getValueResourceDir( systemResourceDir, null, false );
-		File preferenceDir = getPreferenceResourceDir( resourceDir );
 		
 		try {
-			loadStringResources( localValueResourceDir, systemValueResourceDir );
-			loadPluralsResources( localValueResourceDir, systemValueResourceDir );
-			loadValueResources( localValueResourceDir, systemValueResourceDir );
-			loadDimenResources( localValueResourceDir, systemValueResourceDir );
-			loadIntegerResource( localValueResourceDir, systemValueResourceDir );
-			loadMenuResources( resourceDir );
-			loadPreferenceResources( preferenceDir );
+			loadAllValueResources( localValueResourceDir, systemValueResourceDir );
+			if ( menusLoaded ) {
+				loadMenuResources( resourceDir );
+			}
+			if ( preferencesLoaded ) {
+				loadPreferenceResources( getPreferenceResourceDir( resourceDir ) );
+			}
 		} catch ( Exception e ) {
 			throw new RuntimeException( e );
 		} 
@@ -189,30 +193,126 @@ public class ResourceLoader {
 		return pathToAndroidResources != null ? new File( pathToAndroidResources ) : null;
 	}
 
-	private void loadStringResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader stringResourceDocumentLoader = new DocumentLoader( this.stringResourceLoader );
-		loadValueResourcesFromDirs( stringResourceDocumentLoader, localResourceDir, systemValueResourceDir );
+	/**
+	 * Streams each values file once and feeds it to every value loader. Plurals and string arrays look up the strings
+	 * they refer to while they're loaded, so their elements are set aside and loaded after everything else.
+	 */
+	private void loadAllValueResources( File localValueResourceDir, File systemValueResourceDir ) throws Exception {
+		ValueResourceParser.DeferredLoader deferredPlurals = new ValueResourceParser.DeferredLoader( pluralResourceLoader );
+		ValueResourceParser.DeferredLoader deferredStringArrays = new ValueResourceParser.DeferredLoader( stringArrayResourceLoader );
+		ValueResourceParser valueResourceParser = new ValueResourceParser( stringResourceLoader, deferredPlurals,
+				deferredStringArrays, colorResourceLoader, attrResourceLoader, dimenResourceLoader, integerResourceLoader );
+		if ( localValueResourceDir != null ) {
+			valueResourceParser.loadResourceXmlDirs( false, localValueResourceDir );
+		}
+		if ( systemValueResourceDir != null ) {
+			valueResourceParser.loadResourceXmlDirs( true, systemValueResourceDir );
+		}
+		deferredPlurals.loadDeferred();
+		deferredStringArrays.loadDeferred();
+	}
+
+	/**
+	 * Restores the value, layout, menu and preference tables from a snapshot if none of the files they came from have
+	 * changed; otherwise loads them all from XML and saves a new snapshot for the next run.
+	 */
+	private void loadResourcesFromSnapshot( File snapshotFile, File localValueResourceDir, File systemValueResourceDir )
+			throws Exception {
+		List<File> sourceDirs = new ArrayList<File>();
+		sourceDirs.add( resourceDir );
+		sourceDirs.add( systemValueResourceDir );
+		if ( systemResourceDir != null && systemResourceDir.listFiles( LAYOUT_DIR_FILE_FILTER ) != null ) {
+			sourceDirs.addAll( Arrays.asList( systemResourceDir.listFiles( LAYOUT_DIR_FILE_FILTER ) ) );
+		}
+		ResourceSnapshot snapshot = new ResourceSnapshot( snapshotFile, sourceDirs );
+
+		List<SnapshotableLoader> snapshotableLoaders = Arrays.<SnapshotableLoader>asList( stringResourceLoader,
+				pluralResourceLoader, stringArrayResourceLoader, colorResourceLoader, attrResourceLoader,
+				dimenResourceLoader, integerResourceLoader, viewLoader, menuLoader, preferenceLoader );
+		if ( snapshot.restore( snapshotableLoaders ) ) {
+			layoutsLoaded = true;
+			menusLoaded = true;
+			preferencesLoaded = true;
+		} else {
+			loadAllValueResources( localValueResourceDir, systemValueResourceDir );
+			loadLayoutResourcesIfNeeded();
+			loadMenuResourcesIfNeeded();
+			loadXmlResourcesIfNeeded();
+			snapshot.save( snapshotableLoaders );
+		}
+	}
+
+	private synchronized void ensureLayoutsLoaded() {
+		init();
+		try {
+			loadLayoutResourcesIfNeeded();
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private synchronized void ensureMenusLoaded() {
+		init();
+		try {
+			loadMenuResourcesIfNeeded();
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private synchronized void ensureDrawablesLoaded() {
+		init();
+		try {
+			if ( !drawablesLoaded && resourceDir != null ) {
+				loadDrawableResources( resourceDir );
+			}
+			drawablesLoaded = true;
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
 	}
 
-	private void loadPluralsResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader stringResourceDocumentLoader = new DocumentLoader( this.pluralResourceLoader );
-		loadValueResourcesFromDirs( stringResourceDocumentLoader, localResourceDir, systemValueResourceDir );
+	private synchronized void ensureXmlResourcesLoaded() {
+		init();
+		try {
+			loadXmlResourcesIfNeeded();
+		} catch ( Exception e ) {
+			throw new RuntimeException( e );
+		}
 	}
 
-	private void loadValueResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader valueResourceLoader = new DocumentLoader( stringArrayResourceLoader, colorResourceLoader,
-				attrResourceLoader );
-		loadValueResourcesFromDirs( valueResourceLoader, localResourceDir, systemValueResourceDir );
+	private void loadLayoutResourcesIfNeeded() throws Exception {
+		if ( !layoutsLoaded && viewLoader != null ) {
+			loadViewResources( systemResourceDir, resourceDir );
+		}
+		layoutsLoaded = true;
 	}
 
-	private void loadDimenResources( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader dimenResourceDocumentLoader = new DocumentLoader( this.dimenResourceLoader );
-		loadValueResourcesFromDirs( dimenResourceDocumentLoader, localResourceDir, systemValueResourceDir );
+	private void loadMenuResourcesIfNeeded() throws Exception {
+		if ( !menusLoaded && menuLoader != null ) {
+			loadMenuResources( resourceDir );
+		}
+		menusLoaded = true;
 	}
 
-	private void loadIntegerResource( File localResourceDir, File systemValueResourceDir ) throws Exception {
-		DocumentLoader integerResourceDocumentLoader = new DocumentLoader( this.integerResourceLoader );
-		loadValueResourcesFromDirs( integerResourceDocumentLoader, localResourceDir, systemValueResourceDir );
+	/**
+	 * Preferences and other xml files live in the same directory, so whichever of them hasn't been loaded yet share
+	 * one parse.
+	 */
+	private void loadXmlResourcesIfNeeded() throws Exception {
+		File xmlResourceDir = getPreferenceResourceDir( resourceDir );
+		if ( xmlResourceDir != null && xmlResourceDir.exists() && !( preferencesLoaded && xmlFilesLoaded ) ) {
+			List<XmlLoader> xmlLoaders = new ArrayList<XmlLoader>();
+			if ( !preferencesLoaded ) {
+				xmlLoaders.add( preferenceLoader );
+			}
+			if ( !xmlFilesLoaded ) {
+				xmlLoaders.add( xmlFileLoader );
+			}
+			new DocumentLoader( xmlLoaders.toArray( new XmlLoader[xmlLoaders.size()] ) ).loadResourceXmlDir( xmlResourceDir );
+		}
+		preferencesLoaded = true;
+		xmlFilesLoaded = true;
 	}
 
 	private void loadViewResources( File systemResourceDir, File xmlResourceDir ) throws Exception {
@@ -238,17 +338,6 @@ public class ResourceLoader {
 		}
 	}
 	
-	/**
-	 * All the Xml files should be loaded. 
-	 */
-	private void loadXmlFileResources( File xmlResourceDir ) throws Exception {
-		if ( xmlResourceDir.exists() ) {
-			DocumentLoader xmlFileDocumentLoader = 
-					new DocumentLoader( xmlFileLoader );
-			xmlFileDocumentLoader.loadResourceXmlDir( xmlResourceDir );
-		}
-	}
-
 	private void loadLayoutResourceXmlSubDirs( DocumentLoader layoutDocumentLoader, File xmlResourceDir, boolean isSystem )
 			throws Exception {
 		if ( xmlResourceDir != null ) {
@@ -268,24 +357,6 @@ public class ResourceLoader {
 		}
 	}
 
-	private void loadValueResourcesFromDirs( DocumentLoader documentLoader, File localValueResourceDir,
-			File systemValueResourceDir ) throws Exception {
-		loadValueResourcesFromDir( documentLoader, localValueResourceDir );
-		loadSystemResourceXmlDir( documentLoader, systemValueResourceDir );
-	}
-
-	private void loadValueResourcesFromDir( DocumentLoader documentloader, File xmlResourceDir ) throws Exception {
-		if ( xmlResourceDir != null ) {
-			documentloader.loadResourceXmlDir( xmlResourceDir );
-		}
-	}
-
-	private void loadSystemResourceXmlDir( DocumentLoader documentLoader, File stringResourceDir ) throws Exception {
-		if ( stringResourceDir != null ) {
-			documentLoader.loadSystemResourceXmlDir( stringResourceDir );
-		}
-	}
-
 	private File getValueResourceDir( File xmlResourceDir, String qualifiers, boolean isLocal ) {
 		String valuesDir = "values";
 		if( qualifiers != null && !qualifiers.isEmpty() && isLocal ){
@@ -428,7 +499,7 @@ public class ResourceLoader {
 	}
 
 	public View inflateView( Context context, int resource, ViewGroup viewGroup ) {
-		init();
+		ensureLayoutsLoaded();
 		return viewLoader.inflateView( context, resource, viewGroup );
 	}
 
@@ -463,26 +534,27 @@ public class ResourceLoader {
 	}
 	
 	public XmlResourceParser getXml( int id ) {
-		init();
+		ensureXmlResourcesLoaded();
 		return xmlFileLoader.getXml( id );
 	}
 
 	public boolean isDrawableXml( int resourceId ) {
-		init();
+		ensureDrawablesLoaded();
 		return drawableResourceLoader.isXml( resourceId );
 	}
 
     public boolean isAnimatableXml( int resourceId ) {
-        init();
+        ensureDrawablesLoaded();
         return drawableResourceLoader.isAnimationDrawable( resourceId );
     }
 
 	public int[] getDrawableIds( int resourceId ) {
-		init();
+		ensureDrawablesLoaded();
 		return drawableResourceLoader.getDrawableIds( resourceId );
 	}
 
 	public Drawable getXmlDrawable( int resourceId ) {
+		ensureDrawablesLoaded();
 		return drawableResourceLoader.getXmlDrawable( resourceId );
 	}
 
@@ -496,7 +568,7 @@ public class ResourceLoader {
 
 	@SuppressWarnings("rawtypes")
 	private Drawable getInnerRClassDrawable( int drawableResourceId, String suffix, Class returnClass ) {
-		ShadowContextWrapper shadowApp = Robolectric.shadowOf( Robolectric.application );
+		ShadowContextWrapper shadowApp = Robolectric.shadowOf( Robolectric.getApplication() );
 		Class rClass = shadowApp.getResourceLoader().getLocalRClass();
 
 		// Check to make sure there is actually an R Class, if not
@@ -565,12 +637,12 @@ public class ResourceLoader {
 	}
 
 	public void inflateMenu( Context context, int resource, Menu root ) {
-		init();
+		ensureMenusLoaded();
 		menuLoader.inflateMenu( context, resource, root );
 	}
 
 	public PreferenceScreen inflatePreferences( Context context, int resourceId ) {
-		init();
+		ensureXmlResourcesLoaded();
 		return preferenceLoader.inflatePreferences( context, resourceId );
 	}
 
@@ -592,11 +664,21 @@ public class ResourceLoader {
 	}
 
 	public ViewLoader.ViewNode getLayoutViewNode( String layoutName ) {
+		ensureLayoutsLoaded();
 		return viewLoader.viewNodesByLayoutName.get( layoutName );
 	}
 
+	/**
+	 * Only records the search path; layouts are still parsed the first time one is looked up.
+	 */
 	public void setLayoutQualifierSearchPath( String... locations ) {
 		init();
-		viewLoader.setLayoutQualifierSearchPath( locations );
+		if ( viewLoader != null ) {
+			viewLoader.setLayoutQualifierSearchPath( locations );
+		}
+	}
+
+	public synchronized boolean hasLoadedLayouts() {
+		return layoutsLoaded;
 	}
 }
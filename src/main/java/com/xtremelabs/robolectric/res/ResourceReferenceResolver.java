@@ -1,5 +1,8 @@
 package com.xtremelabs.robolectric.res;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -9,15 +12,45 @@ class ResourceReferenceResolver<T> {
     private Map<String, T> attributeNamesToValues = new HashMap<String, T>();
     private Map<String, List<String>> unresolvedReferences = new HashMap<String, List<String>>();
     private String prefix;
+    private final ResourceExtractor resourceExtractor;
+    private volatile ValuesByResourceId<T> valuesByResourceId;
 
-    ResourceReferenceResolver(String prefix) {
+    ResourceReferenceResolver(String prefix, ResourceExtractor resourceExtractor) {
         this.prefix = prefix;
+        this.resourceExtractor = resourceExtractor;
     }
 
     public T getValue(String resourceName) {
         return attributeNamesToValues.get(resourceName);
     }
 
+    /**
+     * Looks a value up by resource id in a table built from the resolved values the first time it's needed, and built
+     * again only if more values or R classes are added afterwards.
+     */
+    public T getValue(int resourceId) {
+        ValuesByResourceId<T> valuesByResourceId = this.valuesByResourceId;
+        if (valuesByResourceId == null || valuesByResourceId.rClassCount != resourceExtractor.getRClassCount()) {
+            valuesByResourceId = buildValuesByResourceId();
+        }
+        return valuesByResourceId.table.get(resourceId);
+    }
+
+    private synchronized ValuesByResourceId<T> buildValuesByResourceId() {
+        int rClassCount = resourceExtractor.getRClassCount();
+        if (valuesByResourceId == null || valuesByResourceId.rClassCount != rClassCount) {
+            Map<Integer, T> values = new HashMap<Integer, T>();
+            for (Map.Entry<String, T> entry : attributeNamesToValues.entrySet()) {
+                Integer resourceId = resourceExtractor.getResourceId(entry.getKey());
+                if (resourceId != null) {
+                    values.put(resourceId, entry.getValue());
+                }
+            }
+            valuesByResourceId = new ValuesByResourceId<T>(new ResourceIdTable<T>(values), rClassCount);
+        }
+        return valuesByResourceId;
+    }
+
     public void processResource(String name, String rawValue, ResourceValueConverter loader, boolean isSystem) {
         String valuePointer = prefix + "/" + name;
         if (rawValue.startsWith("@" + prefix) || rawValue.startsWith("@android:" + prefix)) {
@@ -31,6 +64,7 @@ class ResourceReferenceResolver<T> {
     }
 
     public void addAttribute(String valuePointer, T value) {
+        valuesByResourceId = null;
         attributeNamesToValues.put(valuePointer, value);
         resolveUnresolvedReferences(valuePointer, value);
     }
@@ -54,13 +88,94 @@ class ResourceReferenceResolver<T> {
         references.add(valuePointer);
     }
 
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(attributeNamesToValues.size());
+        for (Map.Entry<String, T> entry : attributeNamesToValues.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+        out.writeInt(unresolvedReferences.size());
+        for (Map.Entry<String, List<String>> entry : unresolvedReferences.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String reference : entry.getValue()) {
+                ResourceSnapshot.writeString(out, reference);
+            }
+        }
+    }
+
+    void readSnapshot(DataInputStream in) throws IOException {
+        valuesByResourceId = null;
+        int valueCount = in.readInt();
+        for (int i = 0; i < valueCount; i++) {
+            attributeNamesToValues.put(ResourceSnapshot.readString(in), (T) readValue(in));
+        }
+        int unresolvedCount = in.readInt();
+        for (int i = 0; i < unresolvedCount; i++) {
+            String attributeName = ResourceSnapshot.readString(in);
+            int referenceCount = in.readInt();
+            List<String> references = new ArrayList<String>(referenceCount);
+            for (int j = 0; j < referenceCount; j++) {
+                references.add(ResourceSnapshot.readString(in));
+            }
+            unresolvedReferences.put(attributeName, references);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte('N');
+        } else if (value instanceof String) {
+            out.writeByte('S');
+            ResourceSnapshot.writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt((Integer) value);
+        } else if (value instanceof Float) {
+            out.writeByte('F');
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte('B');
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new IOException("can't snapshot resource value of " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case 'N': return null;
+            case 'S': return ResourceSnapshot.readString(in);
+            case 'I': return in.readInt();
+            case 'F': return in.readFloat();
+            case 'B': return in.readBoolean();
+            default: throw new IOException("unknown resource value type " + type);
+        }
+    }
+
     private void addAttributeReference(String rawValue, String valuePointer) {
         String attributeName = rawValue.substring(1);
         T value = attributeNamesToValues.get(attributeName);
         if (value == null) {
             addUnresolvedReference(valuePointer, attributeName);
         } else {
+            valuesByResourceId = null;
             attributeNamesToValues.put(valuePointer, value);
         }
     }
+
+    /**
+     * A table along with the number of R classes there were when it was built, published together so a thread
+     * looking a value up never pairs one table with another's count.
+     */
+    private static class ValuesByResourceId<T> {
+        final ResourceIdTable<T> table;
+        final int rClassCount;
+
+        ValuesByResourceId(ResourceIdTable<T> table, int rClassCount) {
+            this.table = table;
+            this.rClassCount = rClassCount;
+        }
+    }
 }
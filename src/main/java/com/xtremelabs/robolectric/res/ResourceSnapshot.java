@@ -0,0 +1,241 @@
+package com.xtremelabs.robolectric.res;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the tables built by a set of {@link SnapshotableLoader}s to a file, so a later JVM working on unchanged
+ * resources can read them back instead of parsing the resource XML again.
+ * <p/>
+ * A snapshot is only used if its key matches: the key covers the path, size and modification time of every XML file
+ * the tables were built from, so editing, adding or removing a resource file makes the snapshot stale. Set the
+ * {@link #DIRECTORY_PROPERTY} system property to turn snapshots on.
+ */
+public class ResourceSnapshot {
+    public static final String DIRECTORY_PROPERTY = "robolectric.resourceSnapshotDir";
+
+    /**
+     * IMPORTANT -- increment this number when the snapshot format or anything a loader writes into it changes.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x52525331;
+    private static final FileFilter XML_FILE_FILTER = new FileFilter() {
+        @Override public boolean accept(File file) {
+            return file.isDirectory() || file.getName().endsWith(".xml");
+        }
+    };
+
+    private final File file;
+    private final String key;
+
+    ResourceSnapshot(File file, List<File> sourceDirs) {
+        this.file = file;
+        this.key = keyFor(sourceDirs);
+    }
+
+    /**
+     * @return the snapshot file to use for resources from {@code resourceDir} and {@code systemResourceDir}, or null if
+     *         snapshots are turned off
+     */
+    static File getSnapshotFile(File resourceDir, File systemResourceDir) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.trim().length() == 0) {
+            return null;
+        }
+        String location = resourceDir.getAbsolutePath() + File.pathSeparator
+                + (systemResourceDir == null ? "" : systemResourceDir.getAbsolutePath());
+        return new File(directory.trim(), "resources-" + toHex(sha1(location)).substring(0, 16) + ".snapshot");
+    }
+
+    /**
+     * Fills {@code loaders} from the snapshot, if there is one and it was built from the same files.
+     *
+     * @return false if the loaders were left untouched and need to be loaded from XML
+     */
+    boolean restore(List<? extends SnapshotableLoader> loaders) {
+        if (!file.exists()) {
+            return false;
+        }
+
+        try {
+            byte[] body = readBody();
+            if (body == null) {
+                return false;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            for (SnapshotableLoader loader : loaders) {
+                loader.readSnapshot(in);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("WARNING: couldn't read resource snapshot " + file + ": " + e);
+            return false;
+        }
+    }
+
+    void save(List<? extends SnapshotableLoader> loaders) {
+        try {
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+            for (SnapshotableLoader loader : loaders) {
+                loader.writeSnapshot(body);
+            }
+            body.flush();
+
+            CRC32 crc = new CRC32();
+            crc.update(bodyBytes.toByteArray());
+
+            file.getParentFile().mkdirs();
+            File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, key);
+                out.writeInt(bodyBytes.size());
+                bodyBytes.writeTo(out);
+                out.writeLong(crc.getValue());
+            } finally {
+                out.close();
+            }
+
+            // rename is atomic, so other JVMs see either the old snapshot or the whole new one
+            if (!tempFile.renameTo(file)) {
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    tempFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("WARNING: couldn't write resource snapshot " + file + ": " + e);
+        }
+    }
+
+    private byte[] readBody() throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(readString(in))) {
+                return null;
+            }
+
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return crc.getValue() == in.readLong() ? body : null;
+        } finally {
+            in.close();
+        }
+    }
+
+    static String keyFor(List<File> sourceDirs) {
+        List<File> xmlFiles = new ArrayList<File>();
+        for (File sourceDir : sourceDirs) {
+            if (sourceDir != null) {
+                collectXmlFiles(sourceDir, xmlFiles);
+            }
+        }
+        File[] sortedXmlFiles = xmlFiles.toArray(new File[xmlFiles.size()]);
+        Arrays.sort(sortedXmlFiles, new Comparator<File>() {
+            @Override public int compare(File file1, File file2) {
+                return file1.getPath().compareTo(file2.getPath());
+            }
+        });
+
+        StringBuilder key = new StringBuilder();
+        key.append(FORMAT_VERSION);
+        for (File xmlFile : sortedXmlFiles) {
+            key.append('\n').append(xmlFile.getAbsolutePath())
+                    .append(':').append(xmlFile.length())
+                    .append(':').append(xmlFile.lastModified());
+        }
+        return toHex(sha1(key.toString()));
+    }
+
+    private static void collectXmlFiles(File dir, List<File> xmlFiles) {
+        File[] files = dir.listFiles(XML_FILE_FILTER);
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectXmlFiles(file, xmlFiles);
+            } else {
+                xmlFiles.add(file);
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    static void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    static Map<String, String> readStringMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readString(in));
+        }
+        return map;
+    }
+
+    private static byte[] sha1(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.xtremelabs.robolectric.res;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A loader whose fully resolved tables can be saved into a {@link ResourceSnapshot} and read back on a later run
+ * without parsing the XML they came from.
+ */
+interface SnapshotableLoader {
+    void writeSnapshot(DataOutputStream out) throws IOException;
+
+    void readSnapshot(DataInputStream in) throws IOException;
+}
@@ -1,18 +1,14 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class StringArrayResourceLoader extends XpathResourceXmlLoader {
+public class StringArrayResourceLoader extends XpathResourceXmlLoader implements SnapshotableLoader {
     Map<String, String[]> stringArrayValues = new HashMap<String, String[]>();
     private StringResourceLoader stringResourceLoader;
 
@@ -26,14 +22,10 @@ public class StringArrayResourceLoader extends XpathResourceXmlLoader {
         return stringArrayValues.get(resourceName);
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
+    @Override protected void processElement(ValueElement element, String name, boolean isSystem) {
         List<String> arrayValues = new ArrayList<String>();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-
-            String value = childNode.getTextContent();
+        for (ValueElement item : element.getChildren("item")) {
+            String value = item.getTextContent();
             if (value.startsWith("@")) {
                 value = value.substring(1);
                 arrayValues.add(stringResourceLoader.getValue(value , isSystem));
@@ -44,4 +36,27 @@ public class StringArrayResourceLoader extends XpathResourceXmlLoader {
         String valuePointer = (isSystem ? "android:" : "") + "array/" + name;
         stringArrayValues.put(valuePointer, arrayValues.toArray(new String[arrayValues.size()]));
     }
+
+    @Override public void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(stringArrayValues.size());
+        for (Map.Entry<String, String[]> entry : stringArrayValues.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().length);
+            for (String value : entry.getValue()) {
+                ResourceSnapshot.writeString(out, value);
+            }
+        }
+    }
+
+    @Override public void readSnapshot(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String name = ResourceSnapshot.readString(in);
+            String[] values = new String[in.readInt()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = ResourceSnapshot.readString(in);
+            }
+            stringArrayValues.put(name, values);
+        }
+    }
 }
@@ -1,27 +1,39 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
-public class StringResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
-    private ResourceReferenceResolver<String> stringResolver = new ResourceReferenceResolver<String>("string");
+public class StringResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter, SnapshotableLoader {
+    private ResourceReferenceResolver<String> stringResolver = new ResourceReferenceResolver<String>("string", resourceExtractor);
 
     public StringResourceLoader(ResourceExtractor resourceExtractor) {
         super(resourceExtractor, "/resources/string");
     }
 
     public String getValue(int resourceId) {
-        return stringResolver.getValue(resourceExtractor.getResourceName(resourceId));
+        return stringResolver.getValue(resourceId);
     }
 
     public String getValue(String resourceName, boolean isSystem) {
         return getValue(resourceExtractor.getResourceId(resourceName, isSystem));
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) {
-        stringResolver.processResource(name, node.getTextContent(), this, isSystem);
+    @Override protected void processElement(ValueElement element, String name, boolean isSystem) {
+        stringResolver.processResource(name, element.getTextContent(), this, isSystem);
     }
 
     @Override public Object convertRawValue(String rawValue) {
         return rawValue;
     }
+
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        stringResolver.writeSnapshot(out);
+    }
+
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        stringResolver.readSnapshot(in);
+    }
 }
@@ -0,0 +1,89 @@
+package com.xtremelabs.robolectric.res;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An element from a values resource file, with its attributes, text and child elements. Value loaders read these
+ * instead of DOM nodes so values files can be streamed through them without building a document.
+ */
+public class ValueElement {
+    private final String name;
+    private final Map<String, String> attributes;
+    private final StringBuilder text = new StringBuilder();
+    private List<ValueElement> children = Collections.emptyList();
+
+    public ValueElement(String name, Map<String, String> attributes) {
+        this.name = name;
+        this.attributes = attributes;
+    }
+
+    public static ValueElement fromNode(Node node) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        NamedNodeMap nodeAttributes = node.getAttributes();
+        if (nodeAttributes != null) {
+            for (int i = 0; i < nodeAttributes.getLength(); i++) {
+                Node attribute = nodeAttributes.item(i);
+                attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+            }
+        }
+
+        ValueElement element = new ValueElement(node.getNodeName(), attributes);
+        element.appendText(node.getTextContent());
+        NodeList childNodes = node.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            Node childNode = childNodes.item(i);
+            if (childNode.getNodeType() == Node.ELEMENT_NODE) {
+                element.addChild(fromNode(childNode));
+            }
+        }
+        return element;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAttribute(String attributeName) {
+        return attributes.get(attributeName);
+    }
+
+    /**
+     * @return all text inside this element, including the text of its descendants, like {@link Node#getTextContent()}
+     */
+    public String getTextContent() {
+        return text.toString();
+    }
+
+    public List<ValueElement> getChildren() {
+        return children;
+    }
+
+    public List<ValueElement> getChildren(String childName) {
+        List<ValueElement> namedChildren = new ArrayList<ValueElement>();
+        for (ValueElement child : children) {
+            if (child.name.equals(childName)) {
+                namedChildren.add(child);
+            }
+        }
+        return namedChildren;
+    }
+
+    void appendText(String moreText) {
+        text.append(moreText);
+    }
+
+    void addChild(ValueElement child) {
+        if (children.isEmpty()) {
+            children = new ArrayList<ValueElement>();
+        }
+        children.add(child);
+    }
+}
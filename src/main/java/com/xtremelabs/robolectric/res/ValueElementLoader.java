@@ -0,0 +1,15 @@
+package com.xtremelabs.robolectric.res;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A loader that can be fed the elements of a values file as they are streamed by a {@link ValueResourceParser}.
+ */
+interface ValueElementLoader {
+    /**
+     * @param rootName the name of the file's root element, usually "resources"
+     * @param elements the children of the root element
+     */
+    void processValueElements(File xmlFile, String rootName, List<ValueElement> elements, boolean isSystem) throws Exception;
+}
@@ -0,0 +1,175 @@
+package com.xtremelabs.robolectric.res;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads values resource files with StAX, handing each loader the top-level elements of each file as small
+ * {@link ValueElement} trees. Unlike {@link DocumentLoader} it never builds a DOM, which matters for the large values
+ * files in the SDK.
+ */
+class ValueResourceParser {
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override protected XMLInputFactory initialValue() {
+            XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            return xmlInputFactory;
+        }
+    };
+
+    private static final FileFilter XML_FILE_FILTER = new FileFilter() {
+        @Override public boolean accept(File file) {
+            return file.getName().endsWith(".xml");
+        }
+    };
+
+    private final ValueElementLoader[] valueElementLoaders;
+
+    ValueResourceParser(ValueElementLoader... valueElementLoaders) {
+        this.valueElementLoaders = valueElementLoaders;
+    }
+
+    /**
+     * Streams the XML files in the given directories through every loader, parsing them on the same pool of parser
+     * threads {@link DocumentLoader} uses. Only a few files' elements are held at once.
+     */
+    void loadResourceXmlDirs(final boolean isSystem, File... resourceXmlDirs) throws Exception {
+        new DocumentLoader.InOrderParser<ParsedValueFile>() {
+            @Override ParsedValueFile parse(File file) throws Exception {
+                return ValueResourceParser.parse(file, isSystem);
+            }
+
+            @Override void load(File file, ParsedValueFile parsedValueFile) throws Exception {
+                loadParsedValueFile(parsedValueFile);
+            }
+        }.parseAndLoad(DocumentLoader.listXmlFiles(resourceXmlDirs));
+    }
+
+    void loadParsedValueFile(ParsedValueFile parsedValueFile) throws Exception {
+        for (ValueElementLoader valueElementLoader : valueElementLoaders) {
+            valueElementLoader.processValueElements(parsedValueFile.file, parsedValueFile.rootName,
+                    parsedValueFile.elements, parsedValueFile.isSystem);
+        }
+    }
+
+    static ParsedValueFile parse(File file, boolean isSystem) throws Exception {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                return parse(file, reader, isSystem);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ParsedValueFile parse(File file, XMLStreamReader reader, boolean isSystem) throws Exception {
+        String rootName = null;
+        List<ValueElement> elements = new ArrayList<ValueElement>();
+        LinkedList<ValueElement> openElements = new LinkedList<ValueElement>();
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (rootName == null) {
+                        rootName = qualifiedName(reader.getPrefix(), reader.getLocalName());
+                        break;
+                    }
+
+                    Map<String, String> attributes = new HashMap<String, String>();
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        attributes.put(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                                reader.getAttributeValue(i));
+                    }
+                    ValueElement element = new ValueElement(qualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+                    if (openElements.isEmpty()) {
+                        elements.add(element);
+                    } else {
+                        openElements.getLast().addChild(element);
+                    }
+                    openElements.addLast(element);
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    if (!openElements.isEmpty()) {
+                        openElements.removeLast();
+                    }
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!openElements.isEmpty()) {
+                        // like Node.getTextContent(), an element's text includes the text of everything inside it
+                        String text = reader.getText();
+                        for (ValueElement openElement : openElements) {
+                            openElement.appendText(text);
+                        }
+                    }
+                    break;
+            }
+        }
+        return new ParsedValueFile(file, rootName, elements, isSystem);
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Holds on to just the elements a loader would process, and hands them to it once {@link #loadDeferred()} is
+     * called. Plurals and string arrays look up the strings they refer to while they're loaded, so they're deferred
+     * until every file's strings have been streamed through.
+     */
+    static class DeferredLoader implements ValueElementLoader {
+        private final XpathResourceXmlLoader loader;
+        private final List<ParsedValueFile> deferredFiles = new ArrayList<ParsedValueFile>();
+
+        DeferredLoader(XpathResourceXmlLoader loader) {
+            this.loader = loader;
+        }
+
+        @Override public void processValueElements(File xmlFile, String rootName, List<ValueElement> elements, boolean isSystem) {
+            List<ValueElement> matchingElements = loader.matchingElements(rootName, elements);
+            if (!matchingElements.isEmpty()) {
+                deferredFiles.add(new ParsedValueFile(xmlFile, rootName, matchingElements, isSystem));
+            }
+        }
+
+        void loadDeferred() throws Exception {
+            for (ParsedValueFile deferredFile : deferredFiles) {
+                loader.processValueElements(deferredFile.file, deferredFile.rootName, deferredFile.elements, deferredFile.isSystem);
+            }
+            deferredFiles.clear();
+        }
+    }
+
+    static class ParsedValueFile {
+        private final File file;
+        private final String rootName;
+        private final List<ValueElement> elements;
+        private final boolean isSystem;
+
+        private ParsedValueFile(File file, String rootName, List<ValueElement> elements, boolean isSystem) {
+            this.file = file;
+            this.rootName = rootName;
+            this.elements = elements;
+            this.isSystem = isSystem;
+        }
+    }
+}
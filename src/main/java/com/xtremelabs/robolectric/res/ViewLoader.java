@@ -15,15 +15,21 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
-public class ViewLoader extends XmlLoader {
+public class ViewLoader extends XmlLoader implements SnapshotableLoader {
+    private static final Method ON_FINISH_INFLATE = findOnFinishInflate();
+
     protected Map<String, ViewNode> viewNodesByLayoutName = new HashMap<String, ViewNode>();
     private AttrResourceLoader attrResourceLoader;
     private List<String> qualifierSearchPath = new ArrayList<String>();
@@ -92,14 +98,7 @@ public class ViewLoader extends XmlLoader {
             throw new RuntimeException("Could not find layout " + layoutName);
         }
         try {
-            if (attributes != null) {
-                for (Map.Entry<String, String> entry : attributes.entrySet()) {
-                    if (!entry.getKey().equals("layout")) {
-                        viewNode.attributes.put(entry.getKey(), entry.getValue());
-                    }
-                }
-            }
-            return viewNode.inflate(context, parent);
+            return viewNode.getTemplate(attributes).inflate(context, parent);
         } catch (I18nException e) {
             throw e;
         } catch (Exception e) {
@@ -124,6 +123,44 @@ public class ViewLoader extends XmlLoader {
         qualifierSearchPath = Arrays.asList(locations);
     }
 
+    @Override
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(viewNodesByLayoutName.size());
+        for (Map.Entry<String, ViewNode> entry : viewNodesByLayoutName.entrySet()) {
+            ResourceSnapshot.writeString(out, entry.getKey());
+            writeViewNode(out, entry.getValue());
+        }
+    }
+
+    @Override
+    public void readSnapshot(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            viewNodesByLayoutName.put(ResourceSnapshot.readString(in), readViewNode(in));
+        }
+    }
+
+    private void writeViewNode(DataOutputStream out, ViewNode viewNode) throws IOException {
+        ResourceSnapshot.writeString(out, viewNode.name);
+        ResourceSnapshot.writeStringMap(out, viewNode.attributes);
+        out.writeBoolean(viewNode.isSystem);
+        out.writeBoolean(viewNode.requestFocusOverride);
+        out.writeInt(viewNode.children.size());
+        for (ViewNode child : viewNode.children) {
+            writeViewNode(out, child);
+        }
+    }
+
+    private ViewNode readViewNode(DataInputStream in) throws IOException {
+        ViewNode viewNode = new ViewNode(ResourceSnapshot.readString(in), ResourceSnapshot.readStringMap(in), in.readBoolean());
+        viewNode.requestFocusOverride = in.readBoolean();
+        int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            viewNode.addChild(readViewNode(in));
+        }
+        return viewNode;
+    }
+
     public class ViewNode {
         private String name;
         private final Map<String, String> attributes;
@@ -132,6 +169,10 @@ public class ViewLoader extends XmlLoader {
         boolean requestFocusOverride = false;
         boolean isSystem = false;
 
+        private volatile ViewTemplate template;
+        private final ConcurrentMap<Map<String, String>, ViewTemplate> templatesByOverrides =
+                new ConcurrentHashMap<Map<String, String>, ViewTemplate>();
+
         public ViewNode(String name, Map<String, String> attributes, boolean isSystem) {
             this.name = name;
             this.attributes = attributes;
@@ -144,95 +185,42 @@ public class ViewLoader extends XmlLoader {
 
         public void addChild(ViewNode viewNode) {
             children.add(viewNode);
+            template = null;
+            templatesByOverrides.clear();
         }
 
         public View inflate(Context context, View parent) throws Exception {
-            View view = create(context, (ViewGroup) parent);
-
-            for (ViewNode child : children) {
-                child.inflate(context, view);
-            }
-
-            invokeOnFinishInflate(view);
-            return view;
-        }
-
-        private void invokeOnFinishInflate(View view) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-            Method onFinishInflate = View.class.getDeclaredMethod("onFinishInflate");
-            onFinishInflate.setAccessible(true);
-            onFinishInflate.invoke(view);
+            return getTemplate().inflate(context, parent);
         }
 
-        private View create(Context context, ViewGroup parent) throws Exception {
-            if (name.equals("include")) {
-                String layout = attributes.get("layout");
-                View view = inflateView(context, layout.substring(1), attributes, parent);
-                return view;
-            } else if (name.equals("merge")) {
-                return parent;
-            } else if (name.equals("fragment")) {
-                View fragment = constructFragment(context);
-                addToParent(parent, fragment);
-                return fragment;
-            } else {
-                applyFocusOverride(parent);
-                View view = constructView(context);
-                addToParent(parent, view);
-                shadowOf(view).applyFocus();
-                return view;
+        /**
+         * @return this node compiled for inflation, which is done the first time it's asked for
+         */
+        public ViewTemplate getTemplate() throws Exception {
+            ViewTemplate template = this.template;
+            if (template == null) {
+                template = new ViewTemplate(this, attributes);
+                this.template = template;
             }
+            return template;
         }
 
-        private FrameLayout constructFragment(Context context) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-            TestAttributeSet attributeSet = new TestAttributeSet(attributes, resourceExtractor, attrResourceLoader, View.class, isSystem);
-            if (strictI18n) {
-                attributeSet.validateStrictI18n();
+        /**
+         * @param overrides attributes an {@code <include>} sets on this node, or null
+         * @return this node, with those attributes in place of its own, compiled for inflation
+         */
+        ViewTemplate getTemplate(Map<String, String> overrides) throws Exception {
+            if (overrides == null || overrides.isEmpty()) {
+                return getTemplate();
             }
-
-            Class<? extends Fragment> clazz = loadFragmentClass(attributes.get("android:name"));
-            Fragment fragment = ((Constructor<? extends Fragment>) clazz.getConstructor()).newInstance();
-            if (!(context instanceof FragmentActivity)) {
-                throw new RuntimeException("Cannot inflate a fragment unless the activity is a FragmentActivity");
-            }
-
-            FragmentActivity activity = (FragmentActivity) context;
-
-            String tag = attributeSet.getAttributeValue("android", "tag");
-            int id = attributeSet.getAttributeResourceValue("android", "id", 0);
-            // TODO: this should probably be changed to call TestFragmentManager.addFragment so that the
-            // inflated fragments don't get started twice (once in the commit, and once in ShadowFragmentActivity's
-            // onStart()
-            activity.getSupportFragmentManager().beginTransaction().add(id, fragment, tag).commit();
-
-            View view = fragment.getView();
-
-            FrameLayout container = new FrameLayout(context);
-            container.setId(id);
-            container.addView(view);
-            return container;
-        }
-
-        private void addToParent(ViewGroup parent, View view) {
-            if (parent != null && parent != view) {
-                parent.addView(view);
-            }
-        }
-
-        private View constructView(Context context) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-            Class<? extends View> clazz = pickViewClass();
-            try {
-                TestAttributeSet attributeSet = new TestAttributeSet(attributes, resourceExtractor, attrResourceLoader, clazz, isSystem);
-                if (strictI18n) {
-                    attributeSet.validateStrictI18n();
-                }
-                return ((Constructor<? extends View>) clazz.getConstructor(Context.class, AttributeSet.class)).newInstance(context, attributeSet);
-            } catch (NoSuchMethodException e) {
-                try {
-                    return ((Constructor<? extends View>) clazz.getConstructor(Context.class)).newInstance(context);
-                } catch (NoSuchMethodException e1) {
-                    return ((Constructor<? extends View>) clazz.getConstructor(Context.class, String.class)).newInstance(context, "");
-                }
+            ViewTemplate template = templatesByOverrides.get(overrides);
+            if (template == null) {
+                Map<String, String> mergedAttributes = new HashMap<String, String>(attributes);
+                mergedAttributes.putAll(overrides);
+                template = new ViewTemplate(this, mergedAttributes);
+                templatesByOverrides.put(overrides, template);
             }
+            return template;
         }
 
         private Class<? extends View> pickViewClass() {
@@ -284,4 +272,170 @@ public class ViewLoader extends XmlLoader {
             }
         }
     }
+
+    /**
+     * A {@link ViewNode} compiled for inflation. The view or fragment class, its constructor and its attribute set, with
+     * each attribute's value and the resource it refers to already resolved, are looked up once, when the template is
+     * made, so inflating it only has to call constructors. Templates don't
+     * change once made, so one can be inflated any number of times, from any thread.
+     */
+    public class ViewTemplate {
+        private final ViewNode viewNode;
+        private final List<ViewTemplate> children;
+
+        private final String includedLayoutName;
+        private final Map<String, String> includeOverrides;
+
+        private final Constructor<?> constructor;
+        private final ConstructorSignature constructorSignature;
+        private final TestAttributeSet attributeSet;
+
+        private final int fragmentId;
+        private final String fragmentTag;
+
+        ViewTemplate(ViewNode viewNode, Map<String, String> attributes) throws Exception {
+            this.viewNode = viewNode;
+            Map<String, String> immutableAttributes = Collections.unmodifiableMap(new HashMap<String, String>(attributes));
+
+            List<ViewTemplate> children = new ArrayList<ViewTemplate>(viewNode.children.size());
+            for (ViewNode child : viewNode.children) {
+                children.add(child.getTemplate());
+            }
+            this.children = Collections.unmodifiableList(children);
+
+            String includedLayoutName = null;
+            Map<String, String> includeOverrides = null;
+            Constructor<?> constructor = null;
+            ConstructorSignature constructorSignature = null;
+            TestAttributeSet attributeSet = null;
+            int fragmentId = 0;
+            String fragmentTag = null;
+
+            if (viewNode.name.equals("include")) {
+                includedLayoutName = attributes.get("layout").substring(1);
+                includeOverrides = new HashMap<String, String>(attributes);
+                includeOverrides.remove("layout");
+                includeOverrides = Collections.unmodifiableMap(includeOverrides);
+            } else if (viewNode.name.equals("fragment")) {
+                attributeSet = new TestAttributeSet(immutableAttributes, resourceExtractor, attrResourceLoader, View.class, viewNode.isSystem)
+                        .resolveValues();
+                constructor = viewNode.loadFragmentClass(attributes.get("android:name")).getConstructor();
+                fragmentTag = attributeSet.getAttributeValue("android", "tag");
+                fragmentId = attributeSet.getAttributeResourceValue("android", "id", 0);
+            } else if (!viewNode.name.equals("merge")) {
+                Class<? extends View> clazz = viewNode.pickViewClass();
+                attributeSet = new TestAttributeSet(immutableAttributes, resourceExtractor, attrResourceLoader, clazz, viewNode.isSystem)
+                        .resolveValues();
+                try {
+                    constructor = clazz.getConstructor(Context.class, AttributeSet.class);
+                    constructorSignature = ConstructorSignature.CONTEXT_ATTRIBUTE_SET;
+                } catch (NoSuchMethodException e) {
+                    try {
+                        constructor = clazz.getConstructor(Context.class);
+                        constructorSignature = ConstructorSignature.CONTEXT;
+                    } catch (NoSuchMethodException e1) {
+                        constructor = clazz.getConstructor(Context.class, String.class);
+                        constructorSignature = ConstructorSignature.CONTEXT_STRING;
+                    }
+                }
+            }
+
+            this.includedLayoutName = includedLayoutName;
+            this.includeOverrides = includeOverrides;
+            this.constructor = constructor;
+            this.constructorSignature = constructorSignature;
+            this.attributeSet = attributeSet;
+            this.fragmentId = fragmentId;
+            this.fragmentTag = fragmentTag;
+        }
+
+        public View inflate(Context context, View parent) throws Exception {
+            View view = create(context, (ViewGroup) parent);
+
+            for (ViewTemplate child : children) {
+                child.inflate(context, view);
+            }
+
+            ON_FINISH_INFLATE.invoke(view);
+            return view;
+        }
+
+        private View create(Context context, ViewGroup parent) throws Exception {
+            if (includedLayoutName != null) {
+                return inflateView(context, includedLayoutName, includeOverrides, parent);
+            } else if (constructorSignature != null) {
+                viewNode.applyFocusOverride(parent);
+                View view = constructView(context);
+                addToParent(parent, view);
+                shadowOf(view).applyFocus();
+                return view;
+            } else if (attributeSet != null) {
+                View fragment = constructFragment(context);
+                addToParent(parent, fragment);
+                return fragment;
+            } else {
+                // a <merge>
+                return parent;
+            }
+        }
+
+        private void addToParent(ViewGroup parent, View view) {
+            if (parent != null && parent != view) {
+                parent.addView(view);
+            }
+        }
+
+        private FrameLayout constructFragment(Context context) throws Exception {
+            if (strictI18n) {
+                attributeSet.validateStrictI18n();
+            }
+
+            Fragment fragment = (Fragment) constructor.newInstance();
+            if (!(context instanceof FragmentActivity)) {
+                throw new RuntimeException("Cannot inflate a fragment unless the activity is a FragmentActivity");
+            }
+
+            FragmentActivity activity = (FragmentActivity) context;
+
+            // TODO: this should probably be changed to call TestFragmentManager.addFragment so that the
+            // inflated fragments don't get started twice (once in the commit, and once in ShadowFragmentActivity's
+            // onStart()
+            activity.getSupportFragmentManager().beginTransaction().add(fragmentId, fragment, fragmentTag).commit();
+
+            View view = fragment.getView();
+
+            FrameLayout container = new FrameLayout(context);
+            container.setId(fragmentId);
+            container.addView(view);
+            return container;
+        }
+
+        private View constructView(Context context) throws Exception {
+            if (strictI18n) {
+                attributeSet.validateStrictI18n();
+            }
+            switch (constructorSignature) {
+                case CONTEXT_ATTRIBUTE_SET:
+                    return (View) constructor.newInstance(context, attributeSet);
+                case CONTEXT:
+                    return (View) constructor.newInstance(context);
+                default:
+                    return (View) constructor.newInstance(context, "");
+            }
+        }
+    }
+
+    private enum ConstructorSignature {
+        CONTEXT_ATTRIBUTE_SET, CONTEXT, CONTEXT_STRING
+    }
+
+    private static Method findOnFinishInflate() {
+        try {
+            Method onFinishInflate = View.class.getDeclaredMethod("onFinishInflate");
+            onFinishInflate.setAccessible(true);
+            return onFinishInflate;
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
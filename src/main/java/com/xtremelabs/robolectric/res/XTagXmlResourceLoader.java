@@ -11,13 +11,17 @@ import org.w3c.dom.NodeList;
 
 /**
  * 
- * XTagXmlResourceLoader is dedicated for mixed tags xml files.
+ * XTagXmlResourceLoader is dedicated for mixed tags xml files. A subclass that still overrides
+ * {@link #processNode(Node, String, boolean)} is fed a DOM of each file instead of streamed elements. Subclasses
+ * have to override one of the two; the constructor throws if they override neither.
  * 
  */
-public abstract class XTagXmlResourceLoader extends XmlLoader {
+public abstract class XTagXmlResourceLoader extends XmlLoader implements ValueElementLoader {
 
 	private String tag;
 
+	private final boolean overridesProcessNode;
+
 	private static List< String > xPathXmlFiles = new ArrayList< String >( 6 );
 
 	static {
@@ -32,6 +36,14 @@ public abstract class XTagXmlResourceLoader extends XmlLoader {
 	public XTagXmlResourceLoader( ResourceExtractor resourceExtractor, String tag ) {
 		super( resourceExtractor );
 		this.tag = tag;
+		overridesProcessNode = overrides( getClass(), XTagXmlResourceLoader.class, "processNode", Node.class, String.class,
+				boolean.class );
+		if ( !overridesProcessNode
+				&& !overrides( getClass(), XTagXmlResourceLoader.class, "processElement", ValueElement.class, String.class,
+						boolean.class ) ) {
+			throw new IllegalStateException( getClass().getName()
+					+ " must override processElement(ValueElement, String, boolean)" );
+		}
 	}
 
 	@Override
@@ -44,10 +56,42 @@ public abstract class XTagXmlResourceLoader extends XmlLoader {
 		NodeList items = document.getElementsByTagName( tag );
 		for ( int i = 0; i < items.getLength(); i++ ) {
 			Node node = items.item( i );
-			String name = node.getAttributes().getNamedItem( "name" ).getNodeValue();
-			processNode( node, name, isSystem );
+			if ( overridesProcessNode ) {
+				Node nameAttribute = node.getAttributes().getNamedItem( "name" );
+				processNode( node, nameAttribute == null ? null : nameAttribute.getNodeValue(), isSystem );
+			} else {
+				ValueElement element = ValueElement.fromNode( node );
+				processElement( element, element.getAttribute( "name" ), isSystem );
+			}
+		}
+
+	}
+
+	@Override
+	public void processValueElements( File xmlFile, String rootName, List< ValueElement > elements, boolean isSystem )
+			throws Exception {
+
+		String resourceName = toResourceName( xmlFile );
+		if ( xPathXmlFiles.contains( resourceName ) )
+			return;
+
+		if ( overridesProcessNode ) {
+			processResourceXml( xmlFile, DocumentLoader.parse( xmlFile ), isSystem );
+			return;
 		}
+		processMatchingElements( elements, isSystem );
+	}
 
+	/**
+	 * Finds tagged elements at any depth, in document order, like {@link Document#getElementsByTagName(String)}.
+	 */
+	private void processMatchingElements( List< ValueElement > elements, boolean isSystem ) {
+		for ( ValueElement element : elements ) {
+			if ( tag.equals( element.getName() ) ) {
+				processElement( element, element.getAttribute( "name" ), isSystem );
+			}
+			processMatchingElements( element.getChildren(), isSystem );
+		}
 	}
 
 	/**
@@ -66,6 +110,21 @@ public abstract class XTagXmlResourceLoader extends XmlLoader {
 		}
 	}
 
-	protected abstract void processNode( Node node, String name, boolean isSystem );
+	/**
+	 * @deprecated override {@link #processElement(ValueElement, String, boolean)} instead, so values files can be
+	 *             streamed through this loader rather than parsed into a DOM.
+	 */
+	@Deprecated
+	protected void processNode( Node node, String name, boolean isSystem ) {
+		processElement( ValueElement.fromNode( node ), name, isSystem );
+	}
+
+	/**
+	 * Called for each tagged element, unless the subclass overrides {@link #processNode(Node, String, boolean)} instead,
+	 * in which case this is never called.
+	 */
+	protected void processElement( ValueElement element, String name, boolean isSystem ) {
+		throw new UnsupportedOperationException( getClass().getName() + " overrides processNode(), not processElement()" );
+	}
 
 }
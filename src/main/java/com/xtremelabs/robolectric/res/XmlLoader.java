@@ -17,4 +17,20 @@ public abstract class XmlLoader {
     public void setStrictI18n(boolean strict) {
     	this.strictI18n = strict;
     }
+
+    /**
+     * @return whether {@code loaderClass}, or one of its superclasses below {@code baseClass}, declares the method
+     */
+    static boolean overrides(Class<?> loaderClass, Class<?> baseClass, String methodName, Class<?>... parameterTypes) {
+        for (Class<?> declaringClass = loaderClass; declaringClass != null && declaringClass != baseClass;
+             declaringClass = declaringClass.getSuperclass()) {
+            try {
+                declaringClass.getDeclaredMethod(methodName, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // keep looking
+            }
+        }
+        return false;
+    }
 }
@@ -6,27 +6,104 @@ import org.w3c.dom.NodeList;
 
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
-public abstract class XpathResourceXmlLoader extends XmlLoader {
+/**
+ * Loads the elements matching an XPath expression. Simple "/root/element" expressions are matched directly against
+ * the elements of a streamed values file; anything else, or a subclass that still overrides
+ * {@link #processNode(Node, String, boolean)}, falls back to evaluating the expression against a DOM of the file.
+ * Subclasses have to override one of the two; the constructor throws if they override neither.
+ */
+public abstract class XpathResourceXmlLoader extends XmlLoader implements ValueElementLoader {
     private String expression;
+    private final String rootName;
+    private final String elementName;
+    private final boolean overridesProcessNode;
+    private XPathExpression compiledExpression;
 
     public XpathResourceXmlLoader(ResourceExtractor resourceExtractor, String expression) {
         super(resourceExtractor);
         this.expression = expression;
+
+        String[] expressionParts = expression.split("/");
+        boolean isSimple = expressionParts.length == 3 && expressionParts[0].length() == 0
+                && isName(expressionParts[1]) && isName(expressionParts[2]);
+        rootName = isSimple ? expressionParts[1] : null;
+        elementName = isSimple ? expressionParts[2] : null;
+        overridesProcessNode = overrides(getClass(), XpathResourceXmlLoader.class, "processNode", Node.class, String.class, boolean.class);
+        boolean overridesProcessElement = overrides(getClass(), XpathResourceXmlLoader.class, "processElement",
+                ValueElement.class, String.class, boolean.class);
+        if (!overridesProcessNode && !overridesProcessElement) {
+            throw new IllegalStateException(getClass().getName() + " must override processElement(ValueElement, String, boolean)");
+        }
     }
 
     @Override protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
-        XPathExpression stringsXPath = XPathFactory.newInstance().newXPath().compile(expression);
-        NodeList nodes = (NodeList) stringsXPath.evaluate(document, XPathConstants.NODESET);
+        if (compiledExpression == null) {
+            compiledExpression = XPathFactory.newInstance().newXPath().compile(expression);
+        }
+        NodeList nodes = (NodeList) compiledExpression.evaluate(document, XPathConstants.NODESET);
         for (int i = 0; i < nodes.getLength(); i++) {
             Node node = nodes.item(i);
-            String name = node.getAttributes().getNamedItem("name").getNodeValue();
-            processNode(node, name, isSystem);
+            if (overridesProcessNode) {
+                Node nameAttribute = node.getAttributes().getNamedItem("name");
+                processNode(node, nameAttribute == null ? null : nameAttribute.getNodeValue(), isSystem);
+            } else {
+                ValueElement element = ValueElement.fromNode(node);
+                processElement(element, element.getAttribute("name"), isSystem);
+            }
+        }
+    }
+
+    @Override public void processValueElements(File xmlFile, String rootName, List<ValueElement> elements, boolean isSystem) throws Exception {
+        if (this.rootName == null || overridesProcessNode) {
+            processResourceXml(xmlFile, DocumentLoader.parse(xmlFile), isSystem);
+            return;
+        }
+        for (ValueElement element : matchingElements(rootName, elements)) {
+            processElement(element, element.getAttribute("name"), isSystem);
+        }
+    }
+
+    /**
+     * @return the elements this loader would process, or all of them if it can only tell by evaluating its expression
+     */
+    List<ValueElement> matchingElements(String rootName, List<ValueElement> elements) {
+        if (this.rootName == null || overridesProcessNode) {
+            return elements;
         }
+        List<ValueElement> matchingElements = new ArrayList<ValueElement>();
+        if (this.rootName.equals(rootName)) {
+            for (ValueElement element : elements) {
+                if (elementName.equals(element.getName())) {
+                    matchingElements.add(element);
+                }
+            }
+        }
+        return matchingElements;
+    }
+
+    /**
+     * @deprecated override {@link #processElement(ValueElement, String, boolean)} instead, so values files can be
+     *             streamed through this loader rather than parsed into a DOM.
+     */
+    @Deprecated
+    protected void processNode(Node node, String name, boolean isSystem) throws Exception {
+        processElement(ValueElement.fromNode(node), name, isSystem);
+    }
+
+    /**
+     * Called for each matching element, unless the subclass overrides {@link #processNode(Node, String, boolean)}
+     * instead, in which case this is never called.
+     */
+    protected void processElement(ValueElement element, String name, boolean isSystem) throws Exception {
+        throw new UnsupportedOperationException(getClass().getName() + " overrides processNode(), not processElement()");
     }
 
-    protected abstract void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException;
+    private static boolean isName(String expressionPart) {
+        return expressionPart.matches("[\\w:.-]+");
+    }
 }
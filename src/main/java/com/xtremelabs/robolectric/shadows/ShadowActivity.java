@@ -144,7 +144,7 @@ public class ShadowActivity extends ShadowContextWrapper {
 
     @Implementation
     public final Application getApplication() {
-        return Robolectric.application;
+        return Robolectric.getApplication();
     }
 
     @Override
@@ -341,7 +341,7 @@ public class ShadowActivity extends ShadowContextWrapper {
 
     @Implementation
     public WindowManager getWindowManager() {
-        return (WindowManager) Robolectric.application.getSystemService(Context.WINDOW_SERVICE);
+        return (WindowManager) Robolectric.getApplication().getSystemService(Context.WINDOW_SERVICE);
     }
 
     @Implementation
@@ -10,10 +10,18 @@ import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
+/**
+ * Shadow for {@code AdapterView}. By default, asks the adapter for a view for every one of its items whenever the
+ * adapter is set or changes. Call {@link #setMaterializedWindowSize(int)} to only keep views for a window of items
+ * instead, which {@link #scrollWindowTo(int)} moves, and which reuses the views that scroll out of it as
+ * {@code convertView}s the way a real {@code ListView} does. That keeps tests of very long lists fast.
+ */
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(AdapterView.class)
 public class ShadowAdapterView extends ShadowViewGroup {
@@ -33,10 +41,21 @@ public class ShadowAdapterView extends ShadowViewGroup {
     private int itemCount = 0;
 
     private List<Object> previousItems = new ArrayList<Object>();
+    private int previousItemsStart = 0;
+    private int previousItemCount = 0;
+
+    private int windowSize = 0;
+    private int firstVisiblePosition = 0;
+    private List<View> itemViews = new ArrayList<View>();
+    private List<Integer> itemViewTypes = new ArrayList<Integer>();
+    private Map<Integer, List<View>> scrapViews = new HashMap<Integer, List<View>>();
 
     @Implementation
     public void setAdapter(Adapter adapter) {
         this.adapter = adapter;
+        firstVisiblePosition = 0;
+        itemViews.clear();
+        itemViewTypes.clear();
 
         if (null != adapter) {
             adapter.registerDataSetObserver(new AdapterViewDataSetObserver());
@@ -60,13 +79,84 @@ public class ShadowAdapterView extends ShadowViewGroup {
 
         for (int i = 0; i < getChildCount(); i++) {
             if (view == getChildAt(i)) {
-                return i;
+                return getPositionOfChildAt(i);
             }
         }
 
         return AdapterView.INVALID_POSITION;
     }
 
+    @Implementation
+    public int getFirstVisiblePosition() {
+        return firstVisiblePosition;
+    }
+
+    @Implementation
+    public int getLastVisiblePosition() {
+        return firstVisiblePosition + itemViews.size() - 1;
+    }
+
+    /**
+     * Only keep views for {@code windowSize} of the adapter's items at a time, starting at
+     * {@link #getFirstVisiblePosition()}, and pass the views of items that leave the window back to the adapter as
+     * {@code convertView}s for the items that enter it.
+     *
+     * @param windowSize how many items to keep views for, or 0 to keep views for all of them, which is the default
+     * @see #scrollWindowTo(int)
+     */
+    public void setMaterializedWindowSize(int windowSize) {
+        if (windowSize < 0) {
+            throw new IllegalArgumentException("window size can't be negative: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        if (adapter != null) {
+            updateNow();
+        }
+    }
+
+    public int getMaterializedWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Moves the window of items that have views so it starts at {@code firstPosition}, or as close to it as the
+     * adapter's item count allows, and updates the views at once.
+     *
+     * @see #setMaterializedWindowSize(int)
+     */
+    public void scrollWindowTo(int firstPosition) {
+        firstVisiblePosition = firstPosition;
+        updateNow();
+    }
+
+    /**
+     * @param positions how many items to move the window of items that have views down by, or up by if negative
+     * @see #scrollWindowTo(int)
+     */
+    public void scrollWindowBy(int positions) {
+        scrollWindowTo(firstVisiblePosition + positions);
+    }
+
+    private boolean isWindowed() {
+        return windowSize > 0;
+    }
+
+    private View getViewForPosition(int position) {
+        if (!isWindowed()) {
+            return position < 0 ? null : getChildAt(position);
+        }
+        int index = position - firstVisiblePosition;
+        return index < 0 || index >= itemViews.size() ? null : itemViews.get(index);
+    }
+
+    private int getPositionOfChildAt(int index) {
+        if (!isWindowed()) {
+            return index;
+        }
+        int itemIndex = itemViews.indexOf(getChildAt(index));
+        return itemIndex == -1 ? AdapterView.INVALID_POSITION : firstVisiblePosition + itemIndex;
+    }
+
     private void invalidateAndScheduleUpdate() {
         valid = false;
         itemCount = adapter == null ? 0 : adapter.getCount();
@@ -232,7 +322,7 @@ public class ShadowAdapterView extends ShadowViewGroup {
                 @Override
                 public void run() {
                     if (hasOnItemSelectedListener()) {
-                        onItemSelectedListener.onItemSelected(realAdapterView, getChildAt(position), position, getAdapter().getItemId(position));
+                        onItemSelectedListener.onItemSelected(realAdapterView, getViewForPosition(position), position, getAdapter().getItemId(position));
                     }
                 }
             });
@@ -257,7 +347,7 @@ public class ShadowAdapterView extends ShadowViewGroup {
     }
 
     public boolean performItemClick(int position) {
-        return realAdapterView.performItemClick(realAdapterView.getChildAt(position),
+        return realAdapterView.performItemClick(getViewForPosition(position),
                 position, realAdapterView.getItemIdAtPosition(position));
     }
 
@@ -266,7 +356,10 @@ public class ShadowAdapterView extends ShadowViewGroup {
             View childView = realAdapterView.getChildAt(i);
             String innerText = shadowOf(childView).innerText();
             if (innerText.contains(targetText)) {
-                return i;
+                int position = getPositionOfChildAt(i);
+                if (position != AdapterView.INVALID_POSITION) {
+                    return position;
+                }
             }
         }
         return -1;
@@ -277,7 +370,7 @@ public class ShadowAdapterView extends ShadowViewGroup {
         if (itemIndex == -1) {
             return null;
         }
-        return realAdapterView.getChildAt(itemIndex);
+        return getViewForPosition(itemIndex);
     }
 
     public void clickFirstItemContainingText(String targetText) {
@@ -298,31 +391,81 @@ public class ShadowAdapterView extends ShadowViewGroup {
             return;
         }
 
+        if (isWindowed()) {
+            scrapItemViews();
+        }
         super.removeAllViews();
         addViews();
     }
 
+    private void updateNow() {
+        update();
+        valid = true;
+    }
+
+    private void scrapItemViews() {
+        for (int i = 0; i < itemViews.size(); i++) {
+            View view = itemViews.get(i);
+            int viewType = itemViewTypes.get(i);
+            if (view != null && viewType != Adapter.IGNORE_ITEM_VIEW_TYPE) {
+                List<View> scrap = scrapViews.get(viewType);
+                if (scrap == null) {
+                    scrap = new ArrayList<View>();
+                    scrapViews.put(viewType, scrap);
+                }
+                scrap.add(view);
+            }
+        }
+    }
+
+    private View takeScrapView(int viewType) {
+        List<View> scrap = scrapViews.get(viewType);
+        return scrap == null || scrap.isEmpty() ? null : scrap.remove(scrap.size() - 1);
+    }
+
     protected void addViews() {
         Adapter adapter = getAdapter();
         if (adapter != null) {
-            if (valid && (previousItems.size() - ignoreRowsAtEndOfList != adapter.getCount() - ignoreRowsAtEndOfList)) {
-                throw new ArrayIndexOutOfBoundsException("view is valid but adapter.getCount() has changed from " + previousItems.size() + " to " + adapter.getCount());
+            if (valid && (previousItemCount - ignoreRowsAtEndOfList != adapter.getCount() - ignoreRowsAtEndOfList)) {
+                throw new ArrayIndexOutOfBoundsException("view is valid but adapter.getCount() has changed from " + previousItemCount + " to " + adapter.getCount());
+            }
+
+            int start = 0;
+            int end = adapter.getCount() - ignoreRowsAtEndOfList;
+            if (isWindowed()) {
+                firstVisiblePosition = Math.max(0, Math.min(firstVisiblePosition, end - windowSize));
+                start = firstVisiblePosition;
+                end = Math.min(end, start + windowSize);
             }
 
             List<Object> newItems = new ArrayList<Object>();
-            for (int i = 0; i < adapter.getCount() - ignoreRowsAtEndOfList; i++) {
-                View view = adapter.getView(i, null, realAdapterView);
+            itemViews.clear();
+            itemViewTypes.clear();
+            for (int i = start; i < end; i++) {
+                View convertView = null;
+                int viewType = Adapter.IGNORE_ITEM_VIEW_TYPE;
+                if (isWindowed()) {
+                    viewType = adapter.getItemViewType(i);
+                    convertView = takeScrapView(viewType);
+                }
+                View view = adapter.getView(i, convertView, realAdapterView);
                 // don't add null views
                 if (view != null) {
                     addView(view);
                 }
+                itemViews.add(view);
+                itemViewTypes.add(viewType);
                 newItems.add(adapter.getItem(i));
             }
+            scrapViews.clear();
 
-            if (valid && !newItems.equals(previousItems)) {
+            // a window that has scrolled holds different items, so only compare windows that start in the same place
+            if (valid && start == previousItemsStart && !newItems.equals(previousItems)) {
                 throw new RuntimeException("view is valid but current items <" + newItems + "> don't match previous items <" + previousItems + ">");
             }
             previousItems = newItems;
+            previousItemsStart = start;
+            previousItemCount = adapter.getCount() - ignoreRowsAtEndOfList;
         }
     }
 
@@ -28,6 +28,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static com.xtremelabs.robolectric.Robolectric.newInstanceOf;
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
@@ -38,7 +39,9 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(Application.class)
 public class ShadowApplication extends ShadowContextWrapper {
+    public static final String BACKGROUND_THREADS_PROPERTY = "robolectric.backgroundThreads";
     private static final Map<String, String> SYSTEM_SERVICE_MAP = new HashMap<String, String>();
+    private static Executor workerPool;
 
     static {
         // note that these are different!
@@ -81,7 +84,7 @@ public class ShadowApplication extends ShadowContextWrapper {
     private Map<String, Intent> stickyIntents = new HashMap<String, Intent>();
     private FakeHttpLayer fakeHttpLayer = new FakeHttpLayer();
     private Looper mainLooper = ShadowLooper.myLooper();
-    private Scheduler backgroundScheduler = new Scheduler();
+    private Scheduler backgroundScheduler = newBackgroundScheduler();
     private Map<String, Map<String, Object>> sharedPreferenceMap = new HashMap<String, Map<String, Object>>();
     private ArrayList<Toast> shownToasts = new ArrayList<Toast>();
     private PowerManager.WakeLock latestWakeLock;
@@ -122,6 +125,24 @@ public class ShadowApplication extends ShadowContextWrapper {
         return backgroundScheduler;
     }
 
+    /**
+     * Background work runs on the thread that posts or runs it, unless the {@value #BACKGROUND_THREADS_PROPERTY}
+     * system property asks for that many worker threads, in which case it runs on them as it comes due. Every
+     * application shares one pool of workers, sized by the property when it's first needed; the test runner waits for
+     * them to go idle after each test.
+     */
+    private static Scheduler newBackgroundScheduler() {
+        int backgroundThreads = Integer.getInteger(BACKGROUND_THREADS_PROPERTY, 0);
+        return backgroundThreads > 0 ? new Scheduler(getWorkerPool(backgroundThreads)) : new Scheduler();
+    }
+
+    private static synchronized Executor getWorkerPool(int backgroundThreads) {
+        if (workerPool == null) {
+            workerPool = Scheduler.newWorkerPool(backgroundThreads);
+        }
+        return workerPool;
+    }
+
     @Override
     @Implementation
     public Context getApplicationContext() {
@@ -150,7 +150,7 @@ public class ShadowArrayAdapter<T> extends ShadowBaseAdapter {
     }
 
     private ResourceLoader getResourceLoader() {
-        return shadowOf(Robolectric.application).getResourceLoader();
+        return shadowOf(Robolectric.getApplication()).getResourceLoader();
     }
 
     @Implementation
@@ -9,6 +9,7 @@ import android.net.Uri;
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.util.Join;
 
 import java.io.InputStream;
@@ -24,7 +25,11 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(BitmapFactory.class)
 public class ShadowBitmapFactory {
-    private static Map<String, Point> widthAndHeightMap = new HashMap<String, Point>();
+    private static final RobolectricContext.Slot<Map<String, Point>> widthAndHeightMap = new RobolectricContext.Slot<Map<String, Point>>() {
+        @Override protected Map<String, Point> initialValue() {
+            return new HashMap<String, Point>();
+        }
+    };
 
     @Implementation
     public static Bitmap decodeResource(Resources res, int id) {
@@ -41,7 +46,7 @@ public class ShadowBitmapFactory {
     }
 
     private static String getResourceName(int id) {
-        return shadowOf(Robolectric.application).getResourceLoader().getNameForId(id);
+        return shadowOf(Robolectric.getApplication()).getResourceLoader().getNameForId(id);
     }
 
     @Implementation
@@ -91,7 +96,7 @@ public class ShadowBitmapFactory {
             shadowBitmap.appendDescription(optionsString);
         }
 
-        Point widthAndHeight = widthAndHeightMap.get(name);
+        Point widthAndHeight = widthAndHeightMap.get().get(name);
         if (widthAndHeight == null) {
             widthAndHeight = new Point(100, 100);
         }
@@ -115,15 +120,15 @@ public class ShadowBitmapFactory {
     }
 
     public static void provideWidthAndHeightHints(Uri uri, int width, int height) {
-        widthAndHeightMap.put(uri.toString(), new Point(width, height));
+        widthAndHeightMap.get().put(uri.toString(), new Point(width, height));
     }
 
     public static void provideWidthAndHeightHints(int resourceId, int width, int height) {
-        widthAndHeightMap.put("resource:" + getResourceName(resourceId), new Point(width, height));
+        widthAndHeightMap.get().put("resource:" + getResourceName(resourceId), new Point(width, height));
     }
 
     public static void provideWidthAndHeightHints(String file, int width, int height) {
-        widthAndHeightMap.put("file:" + file, new Point(width, height));
+        widthAndHeightMap.get().put("file:" + file, new Point(width, height));
     }
 
     private static String stringify(BitmapFactory.Options options) {
@@ -137,6 +142,6 @@ public class ShadowBitmapFactory {
     }
 
     public static void reset() {
-        widthAndHeightMap.clear();
+        widthAndHeightMap.get().clear();
     }
 }
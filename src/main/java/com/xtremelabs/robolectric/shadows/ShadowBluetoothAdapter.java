@@ -21,7 +21,7 @@ public class ShadowBluetoothAdapter {
 
     @Implementation
     public static BluetoothAdapter getDefaultAdapter() {
-        return (BluetoothAdapter) shadowOf(Robolectric.application).getBluetoothAdapter();
+        return (BluetoothAdapter) shadowOf(Robolectric.getApplication()).getBluetoothAdapter();
     }
 
     @Implementation
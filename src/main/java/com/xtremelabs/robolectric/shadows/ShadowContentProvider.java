@@ -12,7 +12,7 @@ public class ShadowContentProvider {
 
 	@Implementation
 	public final Context getContext() {
-		return Robolectric.application;
+		return Robolectric.getApplication();
 	}
 
 }
@@ -8,6 +8,7 @@ import android.net.Uri;
 import android.os.Bundle;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.tester.android.database.TestCursor;
 
 import java.io.IOException;
@@ -32,15 +33,28 @@ public class ShadowContentResolver {
 
     private final Map<Uri, ContentObserver> contentObservers = new HashMap<Uri,ContentObserver>();
     
-    private static final Map<String, Map<Account, Status>>  syncableAccounts =
-            new HashMap<String, Map<Account, Status>>();
-    private static final Map<String, ContentProvider> providers = new HashMap<String, ContentProvider>();
-    private static boolean masterSyncAutomatically;
+    private static final RobolectricContext.Slot<Map<String, Map<Account, Status>>> syncableAccounts =
+            new RobolectricContext.Slot<Map<String, Map<Account, Status>>>() {
+                @Override protected Map<String, Map<Account, Status>> initialValue() {
+                    return new HashMap<String, Map<Account, Status>>();
+                }
+            };
+    private static final RobolectricContext.Slot<Map<String, ContentProvider>> providers =
+            new RobolectricContext.Slot<Map<String, ContentProvider>>() {
+                @Override protected Map<String, ContentProvider> initialValue() {
+                    return new HashMap<String, ContentProvider>();
+                }
+            };
+    private static final RobolectricContext.Slot<Boolean> masterSyncAutomatically = new RobolectricContext.Slot<Boolean>() {
+        @Override protected Boolean initialValue() {
+            return false;
+        }
+    };
     
     public static void reset() {
-        syncableAccounts.clear();
-        providers.clear();
-        masterSyncAutomatically = false;
+        syncableAccounts.get().clear();
+        providers.get().clear();
+        masterSyncAutomatically.set(false);
     }
 
     public static class NotifiedUri {
@@ -249,13 +263,13 @@ public class ShadowContentResolver {
 
     @Implementation
     public static void setMasterSyncAutomatically(boolean sync) {
-        masterSyncAutomatically = sync;
+        masterSyncAutomatically.set(sync);
 
     }
 
     @Implementation
     public static boolean getMasterSyncAutomatically() {
-        return masterSyncAutomatically;
+        return masterSyncAutomatically.get();
     }
 
 
@@ -265,12 +279,12 @@ public class ShadowContentResolver {
         } else if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
             return null;
         } else {
-            return providers.get(uri.getAuthority());
+            return providers.get().get(uri.getAuthority());
         }
     }
 
     public static void registerProvider(String authority, ContentProvider provider) {
-        providers.put(authority, provider);
+        providers.get().put(authority, provider);
     }
 
     public static Status getStatus(Account account, String authority) {
@@ -278,10 +292,10 @@ public class ShadowContentResolver {
     }
 
     public static Status getStatus(Account account, String authority, boolean create) {
-        Map<Account, Status> map = syncableAccounts.get(authority);
+        Map<Account, Status> map = syncableAccounts.get().get(authority);
         if (map == null) {
             map = new HashMap<Account, Status>();
-            syncableAccounts.put(authority, map);
+            syncableAccounts.get().put(authority, map);
         }
         Status status = map.get(account);
         if (status == null && create) {
@@ -9,6 +9,7 @@ import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.res.ResourceLoader;
 
 import java.io.File;
@@ -16,6 +17,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.UUID;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
@@ -31,12 +33,18 @@ abstract public class ShadowContext {
     public static final File EXTERNAL_FILES_DIR = createTempDir("android-external-files");
     public static final File DATABASE_DIR = createTempDir("android-database");
 
+    private static final RobolectricContext.Slot<Directories> directoriesForContext = new RobolectricContext.Slot<Directories>() {
+        @Override protected Directories initialValue() {
+            return RobolectricContext.isPerThread() ? Directories.underNewRoot() : Directories.SHARED;
+        }
+    };
+
     @RealObject private Context realContext;
 
     @Implementation
     public File getDir(String name, int mode) {
         // TODO: honor operating mode.
-        File file = new File(FILES_DIR, name);
+        File file = new File(getFilesDirectory(), name);
         if (!file.exists()) {
             file.mkdir();
         }
@@ -98,14 +106,12 @@ abstract public class ShadowContext {
 
     @Implementation
     public File getCacheDir() {
-        CACHE_DIR.mkdirs();
-        return CACHE_DIR;
+        return getCacheDirectory();
     }
 
     @Implementation
     public File getFilesDir() {
-        FILES_DIR.mkdirs();
-        return FILES_DIR;
+        return getFilesDirectory();
     }
 
 	@Implementation
@@ -115,19 +121,17 @@ abstract public class ShadowContext {
 
     @Implementation
     public File getDatabasePath(String name) {
-        DATABASE_DIR.mkdirs();
-        return new File(DATABASE_DIR, name);
+        return new File(getDatabaseDirectory(), name);
     }
     
     @Implementation
     public File getExternalCacheDir() {
-        EXTERNAL_CACHE_DIR.mkdir();
-        return EXTERNAL_CACHE_DIR;
+        return getExternalCacheDirectory();
     }
 
     @Implementation
     public File getExternalFilesDir(String type) {
-    	File f = (type == null) ? EXTERNAL_FILES_DIR : new File( EXTERNAL_FILES_DIR, type );
+    	File f = (type == null) ? getExternalFilesDirectory() : new File( getExternalFilesDirectory(), type );
         f.mkdirs();
         return f;
     }
@@ -164,12 +168,42 @@ abstract public class ShadowContext {
         return shadowOf((Application) realContext.getApplicationContext()).getResourceLoader();
     }
 
+    /*
+     * Non-Android accessors for the current test's directories, each created if it doesn't exist. They're the
+     * *_DIR constants, unless each thread has its own RobolectricContext, in which case each test gets directories of
+     * its own, so tests running at the same time don't write over or clear each other's files.
+     */
+
+    public static File getCacheDirectory() {
+        return mkdirs(directoriesForContext.get().cache);
+    }
+
+    public static File getExternalCacheDirectory() {
+        return mkdirs(directoriesForContext.get().externalCache);
+    }
+
+    public static File getFilesDirectory() {
+        return mkdirs(directoriesForContext.get().files);
+    }
+
+    public static File getExternalFilesDirectory() {
+        return mkdirs(directoriesForContext.get().externalFiles);
+    }
+
+    public static File getDatabaseDirectory() {
+        return mkdirs(directoriesForContext.get().database);
+    }
+
+    /**
+     * Empties the current test's directories.
+     */
     public static void clearFilesAndCache() {
-        clearFiles(FILES_DIR);
-        clearFiles(CACHE_DIR);
-        clearFiles(EXTERNAL_CACHE_DIR);
-        clearFiles(EXTERNAL_FILES_DIR);
-        clearFiles(DATABASE_DIR);
+        Directories directories = directoriesForContext.get();
+        clearFiles(directories.files);
+        clearFiles(directories.cache);
+        clearFiles(directories.externalCache);
+        clearFiles(directories.externalFiles);
+        clearFiles(directories.database);
     }
 
     public static void clearFiles(File dir) {
@@ -186,6 +220,11 @@ abstract public class ShadowContext {
         }
     }
 
+    private static File mkdirs(File dir) {
+        dir.mkdirs();
+        return dir;
+    }
+
     private static File createTempDir(String name) {
         try {
             File tmp = File.createTempFile(name, "robolectric");
@@ -198,4 +237,38 @@ abstract public class ShadowContext {
             throw new RuntimeException(e);
         }
     }
+
+    private static class Directories {
+        static final Directories SHARED = new Directories(CACHE_DIR, EXTERNAL_CACHE_DIR, FILES_DIR, EXTERNAL_FILES_DIR, DATABASE_DIR);
+
+        final File cache;
+        final File externalCache;
+        final File files;
+        final File externalFiles;
+        final File database;
+
+        Directories(File cache, File externalCache, File files, File externalFiles, File database) {
+            this.cache = cache;
+            this.externalCache = externalCache;
+            this.files = files;
+            this.externalFiles = externalFiles;
+            this.database = database;
+        }
+
+        /**
+         * Directories under a root of their own, none of them created until they're used.
+         */
+        static Directories underNewRoot() {
+            File root = new File(System.getProperty("java.io.tmpdir"), "android-context-" + UUID.randomUUID());
+            root.deleteOnExit();
+            Directories directories = new Directories(new File(root, "cache"), new File(root, "external-cache"),
+                    new File(root, "files"), new File(root, "external-files"), new File(root, "databases"));
+            directories.cache.deleteOnExit();
+            directories.externalCache.deleteOnExit();
+            directories.files.deleteOnExit();
+            directories.externalFiles.deleteOnExit();
+            directories.database.deleteOnExit();
+            return directories;
+        }
+    }
 }
@@ -13,6 +13,7 @@ import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.tester.android.view.TestWindow;
 
 import java.lang.reflect.Method;
@@ -40,12 +41,16 @@ public class ShadowDialog {
     private Activity ownerActivity;
     private boolean isCancelable = true;
     private boolean hasShownBefore;
-    private static final ArrayList<Dialog> shownDialogs = new ArrayList<Dialog>();
+    private static final RobolectricContext.Slot<List<Dialog>> shownDialogs = new RobolectricContext.Slot<List<Dialog>>() {
+        @Override protected List<Dialog> initialValue() {
+            return new ArrayList<Dialog>();
+        }
+    };
     private boolean isCancelableOnTouchOutside;
 
     public static void reset() {
         setLatestDialog(null);
-        shownDialogs.clear();
+        shownDialogs.get().clear();
     }
 
     public static Dialog getLatestDialog() {
@@ -109,7 +114,7 @@ public class ShadowDialog {
     @Implementation
     public void show() {
         setLatestDialog(this);
-        shownDialogs.add(realDialog);
+        shownDialogs.get().add(realDialog);
         isShowing = true;
         try {
             if (!hasShownBefore) {
@@ -261,6 +266,6 @@ public class ShadowDialog {
     }
 
     public static List<Dialog> getShownDialogs() {
-        return shownDialogs;
+        return shownDialogs.get();
     }
 }
@@ -8,9 +8,11 @@ import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.List;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
@@ -19,7 +21,11 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 public class ShadowDrawable {
     private static int defaultIntrinsicWidth = -1;
     private static int defaultIntrinsicHeight = -1;
-    static ArrayList<String> corruptStreamSources = new ArrayList<String>();
+    static final RobolectricContext.Slot<List<String>> corruptStreamSources = new RobolectricContext.Slot<List<String>>() {
+        @Override protected List<String> initialValue() {
+            return new ArrayList<String>();
+        }
+    };
 
     @RealObject Drawable realObject;
 
@@ -34,7 +40,7 @@ public class ShadowDrawable {
 
     @Implementation
     public static Drawable createFromStream(InputStream is, String srcName) {
-        if (corruptStreamSources.contains(srcName)) {
+        if (corruptStreamSources.get().contains(srcName)) {
             return null;
         }
         BitmapDrawable drawable = new BitmapDrawable(Robolectric.newInstanceOf(Bitmap.class));
@@ -95,7 +101,7 @@ public class ShadowDrawable {
     }
 
     public static void addCorruptStreamSource(String src) {
-        corruptStreamSources.add(src);
+        corruptStreamSources.get().add(src);
     }
 
     public static void setDefaultIntrinsicWidth(int defaultIntrinsicWidth) {
@@ -173,7 +179,7 @@ public class ShadowDrawable {
     }
 
     public static void reset() {
-        corruptStreamSources.clear();
+        corruptStreamSources.get().clear();
     }
 
     public int getLoadedFromResourceId() {
@@ -24,13 +24,12 @@ public class ShadowEnvironment {
     
     @Implementation
     public static File getExternalStorageDirectory() {
-    	ShadowContext.EXTERNAL_CACHE_DIR.mkdirs();
-		return ShadowContext.EXTERNAL_CACHE_DIR;
+		return ShadowContext.getExternalCacheDirectory();
     }
     
     @Implementation
     public static File getExternalStoragePublicDirectory(String type) {
-		File f = (type == null) ? ShadowContext.EXTERNAL_FILES_DIR : new File( ShadowContext.EXTERNAL_FILES_DIR, type );
+		File f = (type == null) ? ShadowContext.getExternalFilesDirectory() : new File( ShadowContext.getExternalFilesDirectory(), type );
         f.mkdirs();
         return f;
     }
@@ -62,7 +62,7 @@ public class ShadowImageView extends ShadowView {
      */
     protected Drawable buildDrawable(int resourceId) {
         if (isDrawableXml(resourceId)) {
-            ResourceLoader resourceLoader = shadowOf(Robolectric.application).getResourceLoader();
+            ResourceLoader resourceLoader = shadowOf(Robolectric.getApplication()).getResourceLoader();
             int[] resourceIds = resourceLoader.getDrawableIds(resourceId);
             Drawable[] drawables = new Drawable[resourceIds.length];
 
@@ -93,7 +93,7 @@ public class ShadowImageView extends ShadowView {
      * @return Boolean
      */
     private boolean isDrawableXml(int resourceId) {
-        return shadowOf(Robolectric.application).getResourceLoader()
+        return shadowOf(Robolectric.getApplication()).getResourceLoader()
                 .isDrawableXml(resourceId);
     }
 
@@ -13,6 +13,7 @@ import android.util.Log;
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,8 +24,11 @@ import java.util.Set;
 @Implements(LocalBroadcastManager.class)
 public class ShadowLocalBroadcastManager {
 
-    private static LocalBroadcastManager publicInstance;
-    private static HiddenLocalBroadcastManager localInstance;
+    private static final RobolectricContext.Slot<Instances> instances = new RobolectricContext.Slot<Instances>() {
+        @Override protected Instances initialValue() {
+            return new Instances();
+        }
+    };
     private final static Object lock = new Object();
 
     // TODO there's some probability that the receivers field has to be synchronized on each access inside this class
@@ -33,42 +37,43 @@ public class ShadowLocalBroadcastManager {
 
     public static void reset() {
         Robolectric.Reflection.setFinalStaticField(LocalBroadcastManager.class, "mInstance", null);
-        publicInstance = null;
+        instances.set(new Instances());
     }
 
     @Implementation
     public static LocalBroadcastManager getInstance(Context context) {
+        Instances current = instances.get();
         synchronized (lock) {
-            if (publicInstance == null) {
-                publicInstance = Robolectric.newInstance(LocalBroadcastManager.class, new Class[] {Context.class}, new Object[] {context});
-                localInstance = HiddenLocalBroadcastManager.getInstance(new Activity());
+            if (current.publicInstance == null) {
+                current.publicInstance = Robolectric.newInstance(LocalBroadcastManager.class, new Class[] {Context.class}, new Object[] {context});
+                current.localInstance = new HiddenLocalBroadcastManager(new Activity().getApplicationContext());
             }
         }
-        return publicInstance;
+        return current.publicInstance;
     }
 
     @Implementation
     public void registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
         receivers.add(receiver);
-        localInstance.registerReceiver(receiver, filter);
+        localInstance().registerReceiver(receiver, filter);
     }
 
     @Implementation
     public void unregisterReceiver(BroadcastReceiver receiver) {
         receivers.remove(receiver);
-        localInstance.unregisterReceiver(receiver);
+        localInstance().unregisterReceiver(receiver);
     }
 
     @Implementation
     public boolean sendBroadcast(Intent intent) {
         broadcastIntents.add(intent);
-        return localInstance.sendBroadcast(intent);
+        return localInstance().sendBroadcast(intent);
     }
 
     @Implementation
     public void sendBroadcastSync(Intent intent) {
         broadcastIntents.add(intent);
-        localInstance.sendBroadcastSync(intent);
+        localInstance().sendBroadcastSync(intent);
     }
 
     public List<Intent> getBroadcastIntents() {
@@ -95,6 +100,21 @@ public class ShadowLocalBroadcastManager {
         broadcastIntents.clear();
     }
 
+    private static HiddenLocalBroadcastManager localInstance() {
+        synchronized (lock) {
+            return instances.get().localInstance;
+        }
+    }
+
+    /**
+     * The managers handed out to the current test, kept in its {@link RobolectricContext} so tests on other threads
+     * get their own.
+     */
+    private static class Instances {
+        LocalBroadcastManager publicInstance;
+        HiddenLocalBroadcastManager localInstance;
+    }
+
     // Copied from original Android sources.
     // Do we have a better way to simulate the real behaviour inside the shadow?
     private static class HiddenLocalBroadcastManager {
@@ -147,18 +167,6 @@ public class ShadowLocalBroadcastManager {
 
         private final Handler mHandler;
 
-        private static final Object mLock = new Object();
-        private static HiddenLocalBroadcastManager mInstance;
-
-        public static HiddenLocalBroadcastManager getInstance(Context context) {
-            synchronized (mLock) {
-                if (mInstance == null) {
-                    mInstance = new HiddenLocalBroadcastManager(context.getApplicationContext());
-                }
-                return mInstance;
-            }
-        }
-
         private HiddenLocalBroadcastManager(Context context) {
             mAppContext = context;
             mHandler = new Handler(context.getMainLooper()) {
@@ -3,14 +3,18 @@ package com.xtremelabs.robolectric.shadows;
 import android.util.Log;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 
 import java.io.PrintStream;
 import java.util.*;
 
 @Implements(Log.class)
 public class ShadowLog {
-    private static Map<String,List<LogItem>> logsByTag = new HashMap<String,List<LogItem>>();
-    private static List<LogItem> logs = new ArrayList<LogItem>();
+    private static final RobolectricContext.Slot<Logs> logsForContext = new RobolectricContext.Slot<Logs>() {
+        @Override protected Logs initialValue() {
+            return new Logs();
+        }
+    };
     public static PrintStream stream;
 
     @Implementation
@@ -91,16 +95,17 @@ public class ShadowLog {
         
         LogItem item = new LogItem(level, tag, msg, throwable);
         List<LogItem> itemList = null;
+        Logs logs = logsForContext.get();
         
-        if (!logsByTag.containsKey(tag)) {
+        if (!logs.logsByTag.containsKey(tag)) {
         	itemList = new ArrayList<LogItem>();
-        	logsByTag.put(tag, itemList);
+        	logs.logsByTag.put(tag, itemList);
         } else {
-        	itemList = logsByTag.get(tag);
+        	itemList = logs.logsByTag.get(tag);
         }
         
         itemList.add(item);
-        logs.add(item);
+        logs.logs.add(item);
     }
 
     private static void logToStream(PrintStream ps, int level, String tag, String msg, Throwable throwable) {
@@ -125,7 +130,7 @@ public class ShadowLog {
      * @return
      */
     public static List<LogItem> getLogs() {
-    	return logs;
+    	return logsForContext.get().logs;
     }
     
     /**
@@ -135,12 +140,18 @@ public class ShadowLog {
      * @return
      */
     public static List<LogItem> getLogsForTag( String tag ) {
-    	return logsByTag.get(tag);
+    	return logsForContext.get().logsByTag.get(tag);
     }
 
     public static void reset() {
-        logs.clear();
-        logsByTag.clear();
+        Logs logs = logsForContext.get();
+        logs.logs.clear();
+        logs.logsByTag.clear();
+    }
+
+    private static class Logs {
+        private final Map<String,List<LogItem>> logsByTag = new HashMap<String,List<LogItem>>();
+        private final List<LogItem> logs = new ArrayList<LogItem>();
     }
 
     public static class LogItem {
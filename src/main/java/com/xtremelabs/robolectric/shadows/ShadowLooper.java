@@ -4,6 +4,7 @@ import android.os.Looper;
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.util.Scheduler;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
@@ -17,7 +18,11 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(Looper.class)
 public class ShadowLooper {
-    private static ThreadLocal<Looper> looperForThread = makeThreadLocalLoopers();
+    private static final RobolectricContext.Slot<ThreadLocal<Looper>> looperForThread = new RobolectricContext.Slot<ThreadLocal<Looper>>() {
+        @Override protected ThreadLocal<Looper> initialValue() {
+            return makeThreadLocalLoopers();
+        }
+    };
     private Scheduler scheduler = new Scheduler();
     private Thread myThread = Thread.currentThread();
 
@@ -33,7 +38,7 @@ public class ShadowLooper {
     }
 
     public static void resetThreadLoopers() {
-        looperForThread = makeThreadLocalLoopers();
+        looperForThread.set(makeThreadLocalLoopers());
     }
 
     @Implementation
@@ -58,7 +63,7 @@ public class ShadowLooper {
 
     @Implementation
     public static synchronized Looper myLooper() {
-        return looperForThread.get();
+        return looperForThread.get().get();
     }
 
     @Implementation
@@ -23,6 +23,10 @@ public class ShadowMediaStore {
         }
     }
 
+    /**
+     * Sets the content URI constants, which every test shares. They're set to the same values every time, so a test
+     * resetting them on another thread doesn't change what this one sees.
+     */
     public static void reset() {
         Robolectric.Reflection.setFinalStaticField(MediaStore.Images.Media.class, "EXTERNAL_CONTENT_URI",
                 Uri.parse("content://media/external/images/media"));
@@ -4,6 +4,7 @@ import android.webkit.MimeTypeMap;
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -19,20 +20,15 @@ public class ShadowMimeTypeMap {
     Map<String, String> extensionToMimeTypeMap = new HashMap<String, String>();
     Map<String, String> mimeTypeToExtensionMap = new HashMap<String, String>();
 
-    static MimeTypeMap sSingleton = null;
-    static Object sSingletonLock = new Object();
+    private static final RobolectricContext.Slot<MimeTypeMap> sSingleton = new RobolectricContext.Slot<MimeTypeMap>() {
+        @Override protected MimeTypeMap initialValue() {
+            return Robolectric.newInstanceOf(MimeTypeMap.class);
+        }
+    };
 
     @Implementation
     public static MimeTypeMap getSingleton() {
-        if (sSingleton == null) {
-            synchronized (sSingletonLock) {
-                if (sSingleton == null) {
-                    sSingleton = Robolectric.newInstanceOf(MimeTypeMap.class);
-                }
-            }
-        }
-
-        return sSingleton;
+        return sSingleton.get();
     }
 
     public static void reset() {
@@ -154,7 +154,7 @@ public class ShadowResources {
     @Implementation
     public Drawable getDrawable(int drawableResourceId) throws Resources.NotFoundException {
 
-        ResourceLoader resLoader = Robolectric.shadowOf(Robolectric.application).getResourceLoader();
+        ResourceLoader resLoader = Robolectric.shadowOf(Robolectric.getApplication()).getResourceLoader();
 
         Drawable xmlDrawable = resLoader.getXmlDrawable(drawableResourceId);
         if (xmlDrawable != null) {
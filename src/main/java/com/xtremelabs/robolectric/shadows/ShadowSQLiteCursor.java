@@ -5,21 +5,37 @@ import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 
 import java.sql.Clob;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
- * Simulates an Android Cursor object, by wrapping a JDBC ResultSet.
+ * Simulates an Android Cursor object, by wrapping a JDBC ResultSet. Rows are read from the result set as the cursor
+ * moves to them, {@value #WINDOW_SIZE} at a time, and kept so the cursor can move back; asking for the count reads
+ * them all.
+ * <p/>
+ * A cursor from a {@code SQLiteDatabase} query reads each window under the database's shared lock, and reads all the
+ * rows it hasn't yet before anything writes to the database, so it sees a snapshot of the rows as they were when it
+ * was queried, however the table changes while it's being iterated.
  */
 @Implements(SQLiteCursor.class)
 public class ShadowSQLiteCursor extends ShadowAbstractCursor {
+    static final int WINDOW_SIZE = 128;
 
     private ResultSet resultSet;
+    private List<RowWindow> windows = new ArrayList<RowWindow>();
+    private boolean allRowsRead = true;
+    private RowWindow currentWindow;
+    private int currentField;
+    private ShadowSQLiteDatabase database;
+    private Set<ShadowSQLiteCursor> cursorsWithUnreadRows;
+    // guarded by this, since they're read ahead by whichever thread writes to the database
+    private boolean resultSetExhausted = true;
+    private List<RowWindow> windowsReadAhead = new ArrayList<RowWindow>();
     
     
     /**
@@ -67,6 +83,13 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
         return columnIndex;
     }
 
+    @Implementation
+    @Override
+    public int getCount() {
+        readAllRows();
+        return rowCount;
+    }
+
     @Implementation
     @Override
     public final boolean moveToLast() {
@@ -76,129 +99,178 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
     @Implementation
     @Override
     public final boolean moveToFirst() {
-        return super.moveToFirst();
+        boolean hasRows = readUpTo(0);
+        setPosition(0);
+        return hasRows;
     }
 
     @Implementation
     @Override
     public boolean moveToNext() {
-        return super.moveToNext();
+        if (!readUpTo(currentRowNumber + 1)) {
+            setPosition(rowCount);
+            return false;
+        }
+        setPosition(currentRowNumber + 1);
+        return true;
     }
     
     @Implementation
     @Override
     public boolean moveToPrevious() {
-        return super.moveToPrevious();
+        if (currentRowNumber < 0 || !readUpTo(0)) {
+            return false;
+        }
+        setPosition(currentRowNumber - 1);
+        return true;
     }
     
     @Implementation
     @Override
     public boolean moveToPosition(int pos) {
-    	return super.moveToPosition(pos);
+        if (pos >= 0 && !readUpTo(pos)) {
+            return false;
+        }
+        setPosition(pos);
+        return true;
+    }
+
+    @Override
+    protected void setPosition(int pos) {
+        currentRowNumber = pos;
+        if (pos < 0 || pos >= rowCount) {
+            currentWindow = null;
+        } else {
+            currentWindow = windows.get(pos / WINDOW_SIZE);
+            currentField = (pos % WINDOW_SIZE) * columnNameArray.length;
+        }
     }
 
     @Implementation
     public byte[] getBlob(int columnIndex) {
-    	checkPosition();
-        return (byte[]) this.currentRow.get(getColumnNames()[columnIndex]);
+        return (byte[]) currentWindow.objects[fieldFor(columnIndex)];
     }
 
     @Implementation
     public String getString(int columnIndex) {
-        checkPosition();
-        Object value = this.currentRow.get(getColumnNames()[columnIndex]);
-        if (value instanceof Clob) {
-            try {
-                return ((Clob) value).getSubString(1, (int)((Clob) value).length());
-            } catch (SQLException x) {
-                throw new RuntimeException(x);
-            }
-        } else {
-            return (String)value;
+        int field = fieldFor(columnIndex);
+        switch (currentWindow.types[field]) {
+            case RowWindow.NULL:
+                return null;
+            case RowWindow.INTEGER:
+                return String.valueOf(currentWindow.longs[field]);
+            case RowWindow.FLOAT:
+                return String.valueOf(currentWindow.doubles[field]);
+            default:
+                return (String) currentWindow.objects[field];
         }
     }
 	
 	@Implementation
 	public short getShort(int columnIndex) {
-		checkPosition();
-		Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Short(o.toString());
+		int field = fieldFor(columnIndex);
+		if (currentWindow.types[field] == RowWindow.OBJECT) {
+			return Short.parseShort(currentWindow.objects[field].toString());
+		}
+		return (short) getLong(columnIndex);
 	}
 	
     @Implementation
     public int getInt(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Integer(o.toString());
+    	int field = fieldFor(columnIndex);
+    	if (currentWindow.types[field] == RowWindow.OBJECT) {
+    		return Integer.parseInt(currentWindow.objects[field].toString());
+    	}
+        return (int) getLong(columnIndex);
     }
 
     @Implementation
     public long getLong(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Long(o.toString());
+    	int field = fieldFor(columnIndex);
+    	switch (currentWindow.types[field]) {
+    	    case RowWindow.NULL:
+    	        return 0;
+    	    case RowWindow.INTEGER:
+    	        return currentWindow.longs[field];
+    	    case RowWindow.FLOAT:
+    	        return (long) currentWindow.doubles[field];
+    	    default:
+    	        return Long.parseLong(currentWindow.objects[field].toString());
+    	}
     }
 
     @Implementation
     public float getFloat(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Float(o.toString());
-        
+    	int field = fieldFor(columnIndex);
+    	if (currentWindow.types[field] == RowWindow.OBJECT) {
+    		return Float.parseFloat(currentWindow.objects[field].toString());
+    	}
+        return (float) getDouble(columnIndex);
     }
 
     @Implementation
     public double getDouble(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-    	return new Double(o.toString());
+    	int field = fieldFor(columnIndex);
+    	switch (currentWindow.types[field]) {
+    	    case RowWindow.NULL:
+    	        return 0;
+    	    case RowWindow.INTEGER:
+    	        return currentWindow.longs[field];
+    	    case RowWindow.FLOAT:
+    	        return currentWindow.doubles[field];
+    	    default:
+    	        return Double.parseDouble(currentWindow.objects[field].toString());
+    	}
     }
     
-    private void checkPosition() {
-        if (-1 == currentRowNumber || getCount() == currentRowNumber) {      
+    private int fieldFor(int columnIndex) {
+        if (currentWindow == null) {
             throw new IndexOutOfBoundsException(currentRowNumber + " " + getCount());
         }
+        if (columnIndex < 0 || columnIndex >= columnNameArray.length) {
+            throw new IndexOutOfBoundsException("column " + columnIndex + " of " + columnNameArray.length);
+        }
+        return currentField + columnIndex;
     }
 
     @Implementation
     public void close() {
-        if (resultSet == null) {
-            return;
-        }
+        synchronized (this) {
+            if (resultSet == null) {
+                return;
+            }
 
-        try {
-            resultSet.close();
-            resultSet = null;
-            rows = null;
-            currentRow = null;
-        } catch (SQLException e) {
-            throw new RuntimeException("SQL exception in close", e);
+            try {
+                resultSet.close();
+                resultSet = null;
+                resultSetExhausted = true;
+                windowsReadAhead.clear();
+            } catch (SQLException e) {
+                throw new RuntimeException("SQL exception in close", e);
+            }
         }
+        windows = null;
+        currentWindow = null;
+        stopTrackingUnreadRows();
     }
 
     @Implementation
-    public boolean isClosed() {
+    public synchronized boolean isClosed() {
         return (resultSet == null);
     }
 
     @Implementation
     public boolean isNull(int columnIndex) {
-        Object o = this.currentRow.get(getColumnNames()[columnIndex]);
-        return o == null;
+        return currentWindow.types[fieldFor(columnIndex)] == RowWindow.NULL;
     }
 
     /**
      * Allows test cases access to the underlying JDBC ResultSet, for use in
-     * assertions.
+     * assertions. The cursor reads its rows from it as it needs them.
      *
      * @return the result set
      */
-    public ResultSet getResultSet() {
+    public synchronized ResultSet getResultSet() {
         return resultSet;
     }
     
@@ -211,52 +283,168 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
     public ResultSet getResultSetMetaData() {
         return resultSet;
     }    
-    
+
     /**
-     * loads a row's values
-     * @param rs
-     * @return
-     * @throws SQLException
+     * Makes sure the rows up to and including {@code position} have been read from the result set, if it has that
+     * many.
+     *
+     * @return true if there's a row at {@code position}
      */
-    private Map<String,Object> fillRowValues(ResultSet rs) throws SQLException {
-    	Map<String,Object> row = new HashMap<String,Object>();
-    	for (String s : getColumnNames()) {
-			  row.put(s, rs.getObject(s));
-    	}
-    	return row;
+    private boolean readUpTo(int position) {
+        while (position >= rowCount && !allRowsRead) {
+            readWindow();
+        }
+        return position < rowCount;
     }
-    private void fillRows(String sql, Connection connection) throws SQLException {
-    	//ResultSets in SQLite\Android are only TYPE_FORWARD_ONLY. Android caches results in the WindowedCursor to allow moveToPrevious() to function.
-    	//Robolectric will have to cache the results too. In the rows map.
-    	Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-        ResultSet rs = statement.executeQuery(sql);
-        int count = 0;
-        if (rs.next()) {  
-        	     do {
-        	    	Map<String,Object> row = fillRowValues(rs);
-         	    	rows.put(count, row);
-        	    	count++;
-        	     } while (rs.next());  
-        	 } else {  
-        		 rs.close(); 
-        	 } 
-        
-        rowCount = count;
-        
+
+    private void readAllRows() {
+        while (!allRowsRead) {
+            readWindow();
+        }
     }
-    
+
+    private void readWindow() {
+        Lock lock = database == null ? null : database.acquireLock(false);
+        try {
+            RowWindow window;
+            synchronized (this) {
+                window = windowsReadAhead.isEmpty() ? readWindowFromResultSet() : windowsReadAhead.remove(0);
+                allRowsRead = resultSetExhausted && windowsReadAhead.isEmpty();
+            }
+            if (window.rowCount > 0) {
+                windows.add(window);
+                rowCount += window.rowCount;
+            }
+        } finally {
+            ShadowSQLiteDatabase.releaseLock(lock);
+        }
+    }
+
+    /**
+     * Reads the rest of the rows from the result set, for the cursor to move to later, so writes to the database
+     * don't change what it sees. Called by the database before a write, from whichever thread is writing.
+     */
+    void readRemainingRows() {
+        synchronized (this) {
+            while (!resultSetExhausted) {
+                RowWindow window = readWindowFromResultSet();
+                if (window.rowCount > 0) {
+                    windowsReadAhead.add(window);
+                }
+            }
+        }
+        stopTrackingUnreadRows();
+    }
+
+    private synchronized RowWindow readWindowFromResultSet() {
+        RowWindow window = new RowWindow(columnNameArray.length);
+        if (resultSetExhausted) {
+            return window;
+        }
+        try {
+            while (window.rowCount < WINDOW_SIZE && resultSet.next()) {
+                window.readRow(resultSet);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception reading rows", e);
+        }
+        if (window.rowCount < WINDOW_SIZE) {
+            resultSetExhausted = true;
+            stopTrackingUnreadRows();
+        }
+        return window;
+    }
+
+    /**
+     * Has the cursor read its rows under {@code database}'s shared lock, and keeps it in {@code cursorsWithUnreadRows}
+     * until it has read them all, so the database can have it read the rest before a write.
+     */
+    void readRowsUnder(ShadowSQLiteDatabase database, Set<ShadowSQLiteCursor> cursorsWithUnreadRows) {
+        this.database = database;
+        this.cursorsWithUnreadRows = cursorsWithUnreadRows;
+        synchronized (this) {
+            if (!resultSetExhausted) {
+                cursorsWithUnreadRows.add(this);
+            }
+        }
+    }
+
+    private void stopTrackingUnreadRows() {
+        Set<ShadowSQLiteCursor> tracking = cursorsWithUnreadRows;
+        if (tracking != null) {
+            tracking.remove(this);
+        }
+    }
+
+    /**
+     * @param result the query's results, which the cursor reads as it needs them, and closes when it's closed
+     * @param sql    the query, which isn't run again
+     */
     public void setResultSet(ResultSet result, String sql) {
-        this.resultSet = result;
+        synchronized (this) {
+            this.resultSet = result;
+            resultSetExhausted = result == null;
+            windowsReadAhead = new ArrayList<RowWindow>();
+        }
+        stopTrackingUnreadRows();
+        database = null;
+        cursorsWithUnreadRows = null;
         rowCount = 0;
+        windows = new ArrayList<RowWindow>();
+        allRowsRead = result == null;
 
-        //Cache all rows.  Caching rows should be thought of as a simple replacement for ShadowCursorWindow
         if (resultSet != null) {
         	cacheColumnNames(resultSet);
-        	try {
-        		fillRows(sql, result.getStatement().getConnection());
-			} catch (SQLException e) {
-			    throw new RuntimeException("SQL exception in setResultSet", e);
-			}
+        }
+    }
+
+    /**
+     * A block of consecutive rows, kept like Android's {@code CursorWindow}: one array entry per field, in row order,
+     * with numbers kept as primitives, so reading them doesn't need to box, format or parse anything.
+     */
+    private static class RowWindow {
+        static final byte NULL = 0;
+        static final byte INTEGER = 1;
+        static final byte FLOAT = 2;
+        static final byte OBJECT = 3;
+
+        final int columnCount;
+        final byte[] types;
+        final long[] longs;
+        final double[] doubles;
+        final Object[] objects;
+        int rowCount;
+
+        RowWindow(int columnCount) {
+            this.columnCount = columnCount;
+            int fieldCount = WINDOW_SIZE * columnCount;
+            types = new byte[fieldCount];
+            longs = new long[fieldCount];
+            doubles = new double[fieldCount];
+            objects = new Object[fieldCount];
+        }
+
+        void readRow(ResultSet resultSet) throws SQLException {
+            int field = rowCount * columnCount;
+            for (int columnIndex = 1; columnIndex <= columnCount; columnIndex++, field++) {
+                Object value = resultSet.getObject(columnIndex);
+                if (value == null) {
+                    types[field] = NULL;
+                } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    types[field] = INTEGER;
+                    longs[field] = ((Number) value).longValue();
+                } else if (value instanceof Double || value instanceof Float) {
+                    types[field] = FLOAT;
+                    doubles[field] = ((Number) value).doubleValue();
+                } else if (value instanceof Clob) {
+                    types[field] = OBJECT;
+                    objects[field] = ((Clob) value).getSubString(1, (int) ((Clob) value).length());
+                } else {
+                    types[field] = OBJECT;
+                    objects[field] = value;
+                }
+            }
+            rowCount++;
         }
     }
 }
@@ -8,12 +8,21 @@ import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.util.DatabaseConfig;
+import com.xtremelabs.robolectric.util.DatabaseTemplates;
+import com.xtremelabs.robolectric.util.PreparedStatementCache;
 import com.xtremelabs.robolectric.util.SQLite.*;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.xtremelabs.robolectric.Robolectric.newInstanceOf;
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
@@ -23,16 +32,44 @@ import static com.xtremelabs.robolectric.util.SQLite.*;
  * Shadow for {@code SQLiteDatabase} that simulates the movement of a {@code Cursor} through database tables.
  * Implemented as a wrapper around an embedded SQL database, accessed via JDBC.  The JDBC connection is
  * made available to test cases for use in fixture setup and assertions.
+ * <p/>
+ * Each path opened in a test gets its own database. Every {@code SQLiteDatabase} open on the same path shares its
+ * connection, so they see each other's changes, until the last of them is closed; {@code null} and
+ * {@value #MEMORY_PATH} always open a database of their own.
+ * <p/>
+ * Databases are kept in memory, unless the {@link DatabaseConfig.DatabaseMap} in use is a
+ * {@link DatabaseConfig.FileDatabaseMap}, which keeps a database opened at a path in a file, under
+ * {@link ShadowContext#getDatabaseDirectory()} if the path is relative. Such a database can start as a copy of a
+ * fixture; see {@link #setFixture(String, File)}.
+ * <p/>
+ * Unless {@link #setLockingEnabled(boolean)} turns locking off, queries hold the path's lock shared, so several
+ * threads can read at once, while changes and transactions hold it exclusively.
+ * <p/>
+ * The statements {@code insert}, {@code update} and {@code delete} generate are prepared once and kept in a
+ * {@link PreparedStatementCache}, which is closed with the database.
  */
 @Implements(SQLiteDatabase.class)
 public class ShadowSQLiteDatabase {
+    public static final String MEMORY_PATH = ":memory:";
+
     @RealObject SQLiteDatabase realSQLiteDatabase;
-    private static Connection connection;
-    private final ReentrantLock mLock = new ReentrantLock(true);
+    private static final RobolectricContext.Slot<Map<String, OpenDatabase>> openDatabasesForContext = new RobolectricContext.Slot<Map<String, OpenDatabase>>() {
+        @Override protected Map<String, OpenDatabase> initialValue() {
+            return new HashMap<String, OpenDatabase>();
+        }
+    };
+    private static final RobolectricContext.Slot<Map<String, File>> fixturesForContext = new RobolectricContext.Slot<Map<String, File>>() {
+        @Override protected Map<String, File> initialValue() {
+            return new HashMap<String, File>();
+        }
+    };
+    private String path;
+    private OpenDatabase openDatabase;
     private boolean mLockingEnabled = true;
     private WeakHashMap<SQLiteClosable, Object> mPrograms;
     private boolean inTransaction = false;
     private boolean transactionSuccess = false;
+    private Lock transactionLock;
     private boolean throwOnInsert;
     private Set<Cursor> cursors = new HashSet<Cursor>();
     private List<String> querySql = new ArrayList<String>();
@@ -43,13 +80,15 @@ public class ShadowSQLiteDatabase {
     }
 
     public void lock() {
-        if (!mLockingEnabled) return;
-        mLock.lock();
+        OpenDatabase database = openDatabase;
+        if (!mLockingEnabled || database == null) return;
+        database.lock.writeLock().lock();
     }
 
     public void unlock() {
-        if (!mLockingEnabled) return;
-        mLock.unlock();
+        OpenDatabase database = openDatabase;
+        if (database == null || !database.lock.isWriteLockedByCurrentThread()) return;
+        database.lock.writeLock().unlock();
     }
 
     public void setThrowOnInsert(boolean throwOnInsert) {
@@ -58,8 +97,94 @@ public class ShadowSQLiteDatabase {
 
     @Implementation
     public static SQLiteDatabase openDatabase(String path, SQLiteDatabase.CursorFactory factory, int flags) {
-        connection = DatabaseConfig.getMemoryConnection();
-        return newInstanceOf(SQLiteDatabase.class);
+        SQLiteDatabase database = newInstanceOf(SQLiteDatabase.class);
+        ShadowSQLiteDatabase shadowDatabase = shadowOf(database);
+        shadowDatabase.path = path;
+        shadowDatabase.openDatabase = acquire(path);
+        return database;
+    }
+
+    /**
+     * Makes the database file at {@code path} start as a copy of {@code fixture}, if it doesn't exist when it's next
+     * opened in the current test. The fixture itself is never written to. Only a
+     * {@link DatabaseConfig.FileDatabaseMap} keeps databases in files, so other maps ignore fixtures.
+     */
+    public static void setFixture(String path, File fixture) {
+        Map<String, File> fixtures = fixturesForContext.get();
+        synchronized (fixtures) {
+            fixtures.put(databaseFile(path).getAbsolutePath(), fixture);
+        }
+    }
+
+    /**
+     * Opens a new database of its own holding a copy of a template saved by {@link #saveTemplate(String)}, in this
+     * or an earlier test.
+     *
+     * @return the database, or null if there's no template called {@code templateName}
+     */
+    public static SQLiteDatabase openDatabaseFromTemplate(String templateName) {
+        if (!DatabaseTemplates.contains(templateName)) {
+            return null;
+        }
+        SQLiteDatabase database = openDatabase(MEMORY_PATH, null, 0);
+        shadowOf(database).restoreTemplate(templateName);
+        return database;
+    }
+
+    /**
+     * Saves a copy of this database, as it is now, as the template called {@code templateName}, which later tests
+     * can start from with {@link #openDatabaseFromTemplate(String)}. Include anything the database's contents depend
+     * on, such as its schema version, in the name.
+     */
+    public void saveTemplate(String templateName) {
+        DatabaseTemplates.save(templateName, getConnection());
+    }
+
+    /**
+     * Copies the template called {@code templateName} into this database, which should be empty.
+     *
+     * @return false if there's no such template
+     */
+    public boolean restoreTemplate(String templateName) {
+        return DatabaseTemplates.restore(templateName, getConnection());
+    }
+
+    @Implementation
+    public String getPath() {
+        return path;
+    }
+
+    @Implementation
+    public int getVersion() {
+        OpenDatabase database = openDatabase;
+        if (database == null) {
+            return 0;
+        }
+        if (database.fileMap == null) {
+            return database.version;
+        }
+        try {
+            return database.fileMap.getVersion(database.connection);
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception in getVersion", e);
+        }
+    }
+
+    @Implementation
+    public void setVersion(int version) {
+        OpenDatabase database = openDatabase;
+        if (database == null) {
+            return;
+        }
+        if (database.fileMap == null) {
+            database.version = version;
+            return;
+        }
+        try {
+            database.fileMap.setVersion(database.connection, version);
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception in setVersion", e);
+        }
     }
 
     @Implementation
@@ -96,24 +221,29 @@ public class ShadowSQLiteDatabase {
     public long insertWithOnConflict(String table, String nullColumnHack,
                                      ContentValues initialValues, int conflictAlgorithm) throws android.database.SQLException {
 
+        Lock lock = acquireLock(true);
         try {
             SQLStringAndBindings sqlInsertString = buildInsertString(table, initialValues, conflictAlgorithm);
-            PreparedStatement insert = connection.prepareStatement(sqlInsertString.sql, Statement.RETURN_GENERATED_KEYS);
-            Iterator<Object> columns = sqlInsertString.columnValues.iterator();
-            int i = 1;
-            long result = -1;
-            while (columns.hasNext()) {
-                insert.setObject(i++, columns.next());
-            }
-            insert.executeUpdate();
-            ResultSet resultSet = insert.getGeneratedKeys();
-            if (resultSet.next()) {
-                result = resultSet.getLong(1);
+            PreparedStatement insert = getStatementCache().prepare(sqlInsertString.sql);
+            synchronized (insert) {
+                Iterator<Object> columns = sqlInsertString.columnValues.iterator();
+                int i = 1;
+                long result = -1;
+                while (columns.hasNext()) {
+                    insert.setObject(i++, columns.next());
+                }
+                insert.executeUpdate();
+                ResultSet resultSet = insert.getGeneratedKeys();
+                if (resultSet.next()) {
+                    result = resultSet.getLong(1);
+                }
+                resultSet.close();
+                return result;
             }
-            resultSet.close();
-            return result;
         } catch (SQLException e) {
             throw new android.database.SQLException(e.getLocalizedMessage());
+        } finally {
+            releaseLock(lock);
         }
     }
 
@@ -131,16 +261,19 @@ public class ShadowSQLiteDatabase {
                 columns, where, groupBy, having, orderBy, limit);
         querySql.add(sql);
 
-        ResultSet resultSet;
+        SQLiteCursor cursor = new SQLiteCursor(null, null, null, null);
+        Lock lock = acquireLock(false);
         try {
-            Statement statement = connection.createStatement(DatabaseConfig.getResultSetType(), ResultSet.CONCUR_READ_ONLY);
-            resultSet = statement.executeQuery(sql);
+            Statement statement = getConnection().createStatement(DatabaseConfig.getResultSetType(), ResultSet.CONCUR_READ_ONLY);
+            // tracked before the lock is released, so a write can't get in before the cursor reads its rows
+            shadowOf(cursor).setResultSet(statement.executeQuery(sql), sql);
+            trackUnreadRows(cursor);
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in query", e);
+        } finally {
+            releaseLock(lock);
         }
 
-        SQLiteCursor cursor = new SQLiteCursor(null, null, null, null);
-        shadowOf(cursor).setResultSet(resultSet, sql);
         cursors.add(cursor);
         return cursor;
     }
@@ -163,17 +296,22 @@ public class ShadowSQLiteDatabase {
     public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
         SQLStringAndBindings sqlUpdateString = buildUpdateString(table, values, whereClause, whereArgs);
 
+        Lock lock = acquireLock(true);
         try {
-            PreparedStatement statement = connection.prepareStatement(sqlUpdateString.sql);
-            Iterator<Object> columns = sqlUpdateString.columnValues.iterator();
-            int i = 1;
-            while (columns.hasNext()) {
-                statement.setObject(i++, columns.next());
-            }
+            PreparedStatement statement = getStatementCache().prepare(sqlUpdateString.sql);
+            synchronized (statement) {
+                Iterator<Object> columns = sqlUpdateString.columnValues.iterator();
+                int i = 1;
+                while (columns.hasNext()) {
+                    statement.setObject(i++, columns.next());
+                }
 
-            return statement.executeUpdate();
+                return statement.executeUpdate();
+            }
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in update", e);
+        } finally {
+            releaseLock(lock);
         }
     }
 
@@ -181,10 +319,16 @@ public class ShadowSQLiteDatabase {
     public int delete(String table, String whereClause, String[] whereArgs) {
         String sql = buildDeleteString(table, whereClause, whereArgs);
 
+        Lock lock = acquireLock(true);
         try {
-            return connection.prepareStatement(sql).executeUpdate();
+            PreparedStatement statement = getStatementCache().prepare(sql);
+            synchronized (statement) {
+                return statement.executeUpdate();
+            }
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in delete", e);
+        } finally {
+            releaseLock(lock);
         }
     }
 
@@ -194,13 +338,16 @@ public class ShadowSQLiteDatabase {
             throw new IllegalStateException("database not open");
         }
 
+        Lock lock = acquireLock(true);
         try {
             String scrubbedSql = DatabaseConfig.getScrubSQL(sql);
-            connection.createStatement().execute(scrubbedSql);
+            getConnection().createStatement().execute(scrubbedSql);
         } catch (java.sql.SQLException e) {
             android.database.SQLException ase = new android.database.SQLException();
             ase.initCause(e);
             throw ase;
+        } finally {
+            releaseLock(lock);
         }
     }
 
@@ -213,6 +360,7 @@ public class ShadowSQLiteDatabase {
 
 
         SQLiteStatement statement = null;
+        Lock lock = acquireLock(true);
         try {
             statement = compileStatement(scrubbedSql);
             if (bindArgs != null) {
@@ -228,6 +376,7 @@ public class ShadowSQLiteDatabase {
             if (statement != null) {
                 statement.close();
             }
+            releaseLock(lock);
         }
     }
 
@@ -251,7 +400,8 @@ public class ShadowSQLiteDatabase {
             sqlBody = buildWhereClause(sql, selectionArgs);
         }
 
-        ResultSet resultSet;
+        SQLiteCursor cursor = (SQLiteCursor) cursorFactory.newCursor(null, null, null, null);
+        Lock lock = acquireLock(false);
         try {
             SQLiteStatement stmt = compileStatement(sql);
 
@@ -261,21 +411,23 @@ public class ShadowSQLiteDatabase {
                 stmt.bindString(i + 1, selectionArgs[i]);
             }
 
-            resultSet = Robolectric.shadowOf(stmt).getStatement().executeQuery();
+            // tracked before the lock is released, so a write can't get in before the cursor reads its rows
+            shadowOf(cursor).setResultSet(Robolectric.shadowOf(stmt).getStatement().executeQuery(), sqlBody);
+            trackUnreadRows(cursor);
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in query", e);
+        } finally {
+            releaseLock(lock);
         }
         //TODO: assert rawquery with args returns actual values
 
-        SQLiteCursor cursor = (SQLiteCursor) cursorFactory.newCursor(null, null, null, null);
-        shadowOf(cursor).setResultSet(resultSet, sqlBody);
         cursors.add(cursor);
         return cursor;
     }
 
     @Implementation
     public boolean isOpen() {
-        return (connection != null);
+        return (getConnection() != null);
     }
 
     @Implementation
@@ -283,9 +435,12 @@ public class ShadowSQLiteDatabase {
         if (!isOpen()) {
             return;
         }
+        OpenDatabase closing = openDatabase;
+        openDatabase = null;
+        releaseLock(transactionLock);
+        transactionLock = null;
         try {
-            connection.close();
-            connection = null;
+            release(closing);
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in close", e);
         }
@@ -293,8 +448,11 @@ public class ShadowSQLiteDatabase {
 
     @Implementation
     public void beginTransaction() {
+        if (transactionLock == null) {
+            transactionLock = acquireLock(true);
+        }
         try {
-            connection.setAutoCommit(false);
+            getConnection().setAutoCommit(false);
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in beginTransaction", e);
         } finally {
@@ -317,15 +475,17 @@ public class ShadowSQLiteDatabase {
         try {
             if (transactionSuccess) {
                 transactionSuccess = false;
-                connection.commit();
+                getConnection().commit();
             } else {
-                connection.rollback();
+                getConnection().rollback();
             }
-            connection.setAutoCommit(true);
+            getConnection().setAutoCommit(true);
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in beginTransaction", e);
         } finally {
             inTransaction = false;
+            releaseLock(transactionLock);
+            transactionLock = null;
         }
     }
 
@@ -350,12 +510,24 @@ public class ShadowSQLiteDatabase {
      * @return the connection
      */
     public Connection getConnection() {
-        return connection;
+        OpenDatabase database = openDatabase;
+        return database == null ? null : database.connection;
+    }
+
+    /**
+     * @return the cache of statements prepared on {@link #getConnection()}
+     */
+    public PreparedStatementCache getStatementCache() {
+        OpenDatabase database = openDatabase;
+        if (database == null) {
+            throw new IllegalStateException("database not open");
+        }
+        return database.statementCache;
     }
 
     @Implementation
     public SQLiteStatement compileStatement(String sql) throws SQLException {
-        lock();
+        Lock lock = acquireLock(false);
         String scrubbedSql = DatabaseConfig.getScrubSQL(sql);
         try {
             SQLiteStatement stmt = Robolectric.newInstanceOf(SQLiteStatement.class);
@@ -364,7 +536,7 @@ public class ShadowSQLiteDatabase {
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
-            unlock();
+            releaseLock(lock);
         }
     }
 
@@ -389,6 +561,14 @@ public class ShadowSQLiteDatabase {
         }
     }
 
+    /**
+     * @return true if a thread is waiting for this database's path lock
+     */
+    boolean hasThreadsWaitingForLock() {
+        OpenDatabase database = openDatabase;
+        return database != null && database.lock.hasQueuedThreads();
+    }
+
     public boolean hasOpenCursors() {
         for (Cursor cursor : cursors) {
             if (!cursor.isClosed()) {
@@ -401,4 +581,162 @@ public class ShadowSQLiteDatabase {
     public List<String> getQuerySql() {
         return querySql;
     }
+
+    /**
+     * Lets the cursor read its rows under this database's lock, and has it read the rest of them before anything
+     * writes to the path, so it keeps seeing the rows as they were when it was queried.
+     */
+    private void trackUnreadRows(SQLiteCursor cursor) {
+        OpenDatabase database = openDatabase;
+        if (database != null) {
+            shadowOf(cursor).readRowsUnder(this, database.cursorsWithUnreadRows);
+        }
+    }
+
+    /**
+     * Locks the path exclusively before a write, first having any cursors open on it read the rest of their rows.
+     *
+     * @return the path's lock, locked shared or exclusively, or null if locking is off or the database is closed
+     */
+    Lock acquireLock(boolean exclusive) {
+        OpenDatabase database = openDatabase;
+        if (database == null) {
+            return null;
+        }
+        Lock lock = null;
+        if (mLockingEnabled) {
+            lock = exclusive ? database.lock.writeLock() : database.lock.readLock();
+            lock.lock();
+        }
+        if (exclusive) {
+            database.readUnreadRows();
+        }
+        return lock;
+    }
+
+    static void releaseLock(Lock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    private static OpenDatabase acquire(String path) {
+        if (path == null || MEMORY_PATH.equals(path)) {
+            OpenDatabase database = new OpenDatabase(path, DatabaseConfig.getMemoryConnection(), null);
+            database.openCount++;
+            return database;
+        }
+
+        DatabaseConfig.DatabaseMap databaseMap = DatabaseConfig.getDatabaseMap();
+        DatabaseConfig.FileDatabaseMap fileMap = databaseMap instanceof DatabaseConfig.FileDatabaseMap
+                ? (DatabaseConfig.FileDatabaseMap) databaseMap : null;
+        String key = fileMap == null ? path : databaseFile(path).getAbsolutePath();
+        Map<String, OpenDatabase> openDatabases = openDatabasesForContext.get();
+        synchronized (openDatabases) {
+            OpenDatabase database = openDatabases.get(key);
+            if (database == null) {
+                Connection connection = fileMap == null ? DatabaseConfig.getMemoryConnection() : openFile(new File(key));
+                database = new OpenDatabase(key, connection, fileMap);
+                openDatabases.put(key, database);
+            }
+            database.openCount++;
+            return database;
+        }
+    }
+
+    private static void release(OpenDatabase database) throws SQLException {
+        Map<String, OpenDatabase> openDatabases = openDatabasesForContext.get();
+        synchronized (openDatabases) {
+            if (--database.openCount > 0) {
+                return;
+            }
+            // it may have been opened in an earlier test
+            if (openDatabases.get(database.path) == database) {
+                openDatabases.remove(database.path);
+            }
+        }
+        database.statementCache.close();
+        database.connection.close();
+    }
+
+    private static File databaseFile(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(ShadowContext.getDatabaseDirectory(), path);
+    }
+
+    private static Connection openFile(File file) {
+        File fixture;
+        Map<String, File> fixtures = fixturesForContext.get();
+        synchronized (fixtures) {
+            fixture = fixtures.get(file.getAbsolutePath());
+        }
+        file.getParentFile().mkdirs();
+        if (fixture != null && !file.exists()) {
+            try {
+                copy(fixture, file);
+            } catch (IOException e) {
+                throw new RuntimeException("couldn't copy database fixture " + fixture, e);
+            }
+        }
+        return DatabaseConfig.getFileConnection(file);
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        FileChannel in = new FileInputStream(from).getChannel();
+        try {
+            FileChannel out = new FileOutputStream(to).getChannel();
+            try {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * What every {@code SQLiteDatabase} open on the same path shares.
+     */
+    private static class OpenDatabase {
+        final String path;
+        final Connection connection;
+        final DatabaseConfig.FileDatabaseMap fileMap;
+        final PreparedStatementCache statementCache;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+        final Set<ShadowSQLiteCursor> cursorsWithUnreadRows =
+                Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<ShadowSQLiteCursor, Boolean>()));
+        int version;
+        int openCount;
+
+        /**
+         * @param fileMap the map that keeps the database in a file, or null if it's in memory
+         */
+        OpenDatabase(String path, Connection connection, DatabaseConfig.FileDatabaseMap fileMap) {
+            this.path = path;
+            this.connection = connection;
+            this.fileMap = fileMap;
+            this.statementCache = new PreparedStatementCache(connection);
+        }
+
+        /**
+         * Called before a write, with the path locked exclusively when locking is on.
+         */
+        void readUnreadRows() {
+            List<ShadowSQLiteCursor> unread;
+            synchronized (cursorsWithUnreadRows) {
+                if (cursorsWithUnreadRows.isEmpty()) {
+                    return;
+                }
+                unread = new ArrayList<ShadowSQLiteCursor>(cursorsWithUnreadRows);
+            }
+            for (ShadowSQLiteCursor cursor : unread) {
+                cursor.readRemainingRows();
+            }
+        }
+    }
 }
@@ -7,24 +7,50 @@ import android.database.sqlite.SQLiteOpenHelper;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
+import com.xtremelabs.robolectric.util.DatabaseTemplates;
+
+import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
 /**
  * Shadow for {@code SQLiteOpenHelper}.  Provides basic support for retrieving
  * databases and partially implements the subclass contract.  (Currently,
  * support for {@code #onUpgrade} is missing).
+ * <p/>
+ * The helper opens its database at its name, so helpers for the same name share a database, and only the first of
+ * them calls {@code onCreate}; a helper without a name gets a database of its own.
+ * <p/>
+ * With database templates turned on, the database {@code onCreate} sets up is saved as a template the first time,
+ * and helpers of the same class, for the same database name and version, start from a copy of it after that instead
+ * of calling {@code onCreate} again. See {@link #setUseDatabaseTemplates(boolean)}. Templates are skipped if the
+ * database map in use can't copy databases.
  */
 @Implements(SQLiteOpenHelper.class)
 public class ShadowSQLiteOpenHelper {
+    public static final String DATABASE_TEMPLATES_PROPERTY = "robolectric.databaseTemplates";
+
+    private static final RobolectricContext.Slot<Boolean> useDatabaseTemplates = new RobolectricContext.Slot<Boolean>() {
+        @Override protected Boolean initialValue() {
+            return Boolean.getBoolean(DATABASE_TEMPLATES_PROPERTY);
+        }
+    };
+
     @RealObject private SQLiteOpenHelper realHelper;
-    private static SQLiteDatabase database;
+    private SQLiteDatabase database;
     private String name;
+    private int version;
 
     public void __constructor__(Context context, String name, CursorFactory factory, int version) {
         this.name = name;
-        if (database != null) {
-            database.close();
-        }
-        database = null;
+        this.version = version;
+    }
+
+    /**
+     * Turns database templates on or off for the rest of the current test. They're off unless the
+     * {@value #DATABASE_TEMPLATES_PROPERTY} system property is true.
+     */
+    public static void setUseDatabaseTemplates(boolean useTemplates) {
+        useDatabaseTemplates.set(useTemplates);
     }
 
     @Implementation
@@ -38,8 +64,7 @@ public class ShadowSQLiteOpenHelper {
     @Implementation
     public synchronized SQLiteDatabase getReadableDatabase() {
         if (database == null) {
-            database = SQLiteDatabase.openDatabase("path", null, 0);
-            realHelper.onCreate(database);
+            database = createDatabase();
         }
 
         realHelper.onOpen(database);
@@ -49,8 +74,7 @@ public class ShadowSQLiteOpenHelper {
     @Implementation
     public synchronized SQLiteDatabase getWritableDatabase() {
         if (database == null) {
-            database = SQLiteDatabase.openDatabase("path", null, 0);
-            realHelper.onCreate(database);
+            database = createDatabase();
         }
 
         realHelper.onOpen(database);
@@ -61,4 +85,23 @@ public class ShadowSQLiteOpenHelper {
     public String getDatabaseName() {
         return name;
     }
+
+    private SQLiteDatabase createDatabase() {
+        SQLiteDatabase newDatabase = SQLiteDatabase.openDatabase(name, null, 0);
+        if (newDatabase.getVersion() != 0) {
+            return newDatabase;
+        }
+
+        if (!useDatabaseTemplates.get() || !DatabaseTemplates.isSupported()) {
+            realHelper.onCreate(newDatabase);
+        } else {
+            String templateName = realHelper.getClass().getName() + "/" + name + "@" + version;
+            if (!shadowOf(newDatabase).restoreTemplate(templateName)) {
+                realHelper.onCreate(newDatabase);
+                shadowOf(newDatabase).saveTemplate(templateName);
+            }
+        }
+        newDatabase.setVersion(version);
+        return newDatabase;
+    }
 }
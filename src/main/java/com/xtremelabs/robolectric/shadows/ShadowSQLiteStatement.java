@@ -8,6 +8,9 @@ import com.xtremelabs.robolectric.internal.Implements;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.locks.Lock;
+
+import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
 @Implements(SQLiteStatement.class)
 public class ShadowSQLiteStatement extends ShadowSQLiteProgram {
@@ -23,15 +26,19 @@ public class ShadowSQLiteStatement extends ShadowSQLiteProgram {
         if (!mDatabase.isOpen()) {
             throw new IllegalStateException("database " + mDatabase.getPath() + " already closed");
         }
+        Lock lock = shadowOf(mDatabase).acquireLock(true);
         try {
             actualDBstatement.execute();
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            ShadowSQLiteDatabase.releaseLock(lock);
         }
     }
 
     @Implementation
     public long executeInsert() {
+        Lock lock = shadowOf(mDatabase).acquireLock(true);
         try {
             actualDBstatement.executeUpdate();
             ResultSet resultSet = actualDBstatement.getGeneratedKeys();
@@ -43,6 +50,8 @@ public class ShadowSQLiteStatement extends ShadowSQLiteProgram {
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            ShadowSQLiteDatabase.releaseLock(lock);
         }
     }
 
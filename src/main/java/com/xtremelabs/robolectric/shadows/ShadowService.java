@@ -25,12 +25,12 @@ public class ShadowService extends ShadowContextWrapper {
 
     @Implementation
     public final Application getApplication() {
-        return Robolectric.application;
+        return Robolectric.getApplication();
     }
 
     @Implementation @Override
     public Context getApplicationContext() {
-        return Robolectric.application;
+        return Robolectric.getApplication();
     }
 
     @Implementation
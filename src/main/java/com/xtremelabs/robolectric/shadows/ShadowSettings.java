@@ -133,7 +133,7 @@ public class ShadowSettings {
      * @param isAirplaneMode new status for airplane mode
      */
     public static void setAirplaneMode(boolean isAirplaneMode) {
-        Settings.System.putInt(Robolectric.application.getContentResolver(), Settings.System.AIRPLANE_MODE_ON, isAirplaneMode ? 1 : 0);
+        Settings.System.putInt(Robolectric.getApplication().getContentResolver(), Settings.System.AIRPLANE_MODE_ON, isAirplaneMode ? 1 : 0);
     }
 
     /**
@@ -142,7 +142,7 @@ public class ShadowSettings {
      * @param isOn new status for wifi mode
      */
     public static void setWifiOn(boolean isOn) {
-        Settings.Secure.putInt(Robolectric.application.getContentResolver(), Settings.Secure.WIFI_ON, isOn ? 1 : 0);
+        Settings.Secure.putInt(Robolectric.getApplication().getContentResolver(), Settings.Secure.WIFI_ON, isOn ? 1 : 0);
     }
 
     /**
@@ -151,6 +151,6 @@ public class ShadowSettings {
      * @param use24HourTimeFormat new status for the time setting
      */
     public static void set24HourTimeFormat(boolean use24HourTimeFormat) {
-        Settings.System.putInt(Robolectric.application.getContentResolver(), Settings.System.TIME_12_24, use24HourTimeFormat ? 24 : 12);
+        Settings.System.putInt(Robolectric.getApplication().getContentResolver(), Settings.System.TIME_12_24, use24HourTimeFormat ? 24 : 12);
     }
 }
@@ -2,6 +2,7 @@ package com.xtremelabs.robolectric.shadows;
 
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 
 import android.os.StatFs;
 
@@ -13,7 +14,11 @@ import java.util.Map;
 public class ShadowStatFs {
     public static final int BLOCK_SIZE = 4096;
     private static final Stats DEFAULT_STATS = new Stats(0, 0, 0);
-    private static Map<String, Stats> stats = new HashMap<String, Stats>();
+    private static final RobolectricContext.Slot<Map<String, Stats>> stats = new RobolectricContext.Slot<Map<String, Stats>>() {
+        @Override protected Map<String, Stats> initialValue() {
+            return new HashMap<String, Stats>();
+        }
+    };
     private Stats stat;
 
     public void __constructor__(String path) {
@@ -42,7 +47,7 @@ public class ShadowStatFs {
 
     @Implementation
     public void restat(String path) {
-        stat = stats.get(path);
+        stat = stats.get().get(path);
         if (stat == null) {
             stat = DEFAULT_STATS;
         }
@@ -53,11 +58,11 @@ public class ShadowStatFs {
     }
 
     public static void registerStats(String path, int blockCount, int freeBlocks, int availableBlocks) {
-        stats.put(path, new Stats(blockCount, freeBlocks, availableBlocks));
+        stats.get().put(path, new Stats(blockCount, freeBlocks, availableBlocks));
     }
 
     public static void reset() {
-        stats.clear();
+        stats.get().clear();
     }
 
     private static class Stats {
@@ -16,7 +16,7 @@ public class ShadowTypedArray {
 
     @Implementation
     public Resources getResources() {
-        return Robolectric.application.getResources();
+        return Robolectric.getApplication().getResources();
     }
 
     public void add(Object attributeValue) {
@@ -15,6 +15,8 @@ public class TestAttributeSet implements AttributeSet {
     private AttrResourceLoader attrResourceLoader;
     private Class<? extends View> viewClass;
     private boolean isSystem = false;
+    private Map<String, ResolvedValue> resolvedValues;
+    private Map<String, ResolvedValue> resolvedAndroidValues;
 
     /**
      * Names of attributes to be validated for i18n-safe values.
@@ -54,9 +56,51 @@ public class TestAttributeSet implements AttributeSet {
 
     public TestAttributeSet put(String name, String value) {
         attributes.put(name, value);
+        resolvedValues = null;
+        resolvedAndroidValues = null;
         return this;
     }
 
+    /**
+     * Looks up each attribute's value, the enum value it names and the resource it refers to once, up front, so that
+     * reading them back is a single map lookup. Layout templates do this since their attribute sets are read every
+     * time they're inflated. Changing an attribute with {@link #put(String, String)} discards what was resolved.
+     *
+     * @return this attribute set
+     */
+    public TestAttributeSet resolveValues() {
+        Map<String, ResolvedValue> resolvedValues = new HashMap<String, ResolvedValue>();
+        Map<String, ResolvedValue> resolvedAndroidValues = new HashMap<String, ResolvedValue>();
+        for (String key : attributes.keySet()) {
+            String[] mappedKeys = splitKey(key);
+            boolean isAndroid = "android".equals(mappedKeys[0]);
+            if (resolvedValues.containsKey(mappedKeys[1]) && (!isAndroid || resolvedAndroidValues.containsKey(mappedKeys[1]))) {
+                continue;
+            }
+
+            ResolvedValue resolvedValue = resolve(mappedKeys[1], attributes.get(key));
+            if (!resolvedValues.containsKey(mappedKeys[1])) {
+                resolvedValues.put(mappedKeys[1], resolvedValue);
+            }
+            if (isAndroid && !resolvedAndroidValues.containsKey(mappedKeys[1])) {
+                resolvedAndroidValues.put(mappedKeys[1], resolvedValue);
+            }
+        }
+        this.resolvedValues = resolvedValues;
+        this.resolvedAndroidValues = resolvedAndroidValues;
+        return this;
+    }
+
+    private ResolvedValue resolve(String attribute, String value) {
+        value = rewriteSystemId(value);
+        String numericValue = value;
+        if (attrResourceLoader != null && attrResourceLoader.hasAttributeFor(viewClass, "xxx", attribute)) {
+            numericValue = attrResourceLoader.convertValueToEnum(viewClass, "xxx", attribute, value);
+        }
+        Integer resourceId = value == null || resourceExtractor == null ? null : resourceExtractor.getResourceId(value);
+        return new ResolvedValue(value, numericValue, resourceId);
+    }
+
     @Override
     public boolean getAttributeBooleanValue(String namespace, String attribute, boolean defaultValue) {
         String value = getAttributeValueInMap(namespace, attribute);
@@ -70,12 +114,7 @@ public class TestAttributeSet implements AttributeSet {
 
     @Override
     public int getAttributeIntValue(String namespace, String attribute, int defaultValue) {
-        String value = getAttributeValueInMap(namespace, attribute);
-
-        if (attrResourceLoader.hasAttributeFor(viewClass, "xxx", attribute)) {
-            value = attrResourceLoader.convertValueToEnum(viewClass, "xxx", attribute, value);
-        }
-
+        String value = getNumericValueInMap(namespace, attribute);
         return (value != null) ? Integer.valueOf(value) : defaultValue;
     }
 
@@ -122,12 +161,7 @@ public class TestAttributeSet implements AttributeSet {
 
     @Override
     public float getAttributeFloatValue(String namespace, String attribute, float defaultValue) {
-        String value = getAttributeValueInMap(namespace, attribute);
-
-        if (attrResourceLoader.hasAttributeFor(viewClass, "xxx", attribute)) {
-            value = attrResourceLoader.convertValueToEnum(viewClass, "xxx", attribute, value);
-        }
-
+        String value = getNumericValueInMap(namespace, attribute);
         return (value != null) ? Float.valueOf(value) : defaultValue;
     }
 
@@ -146,7 +180,7 @@ public class TestAttributeSet implements AttributeSet {
         String value = getAttributeValueInMap(namespace, attribute);
         Integer resourceId = defaultValue;
         if (value != null) {
-            resourceId = resourceExtractor.getResourceId(value);
+            resourceId = getResourceIdInMap(namespace, attribute, value);
         }
         return resourceId == null ? defaultValue : resourceId;
     }
@@ -155,7 +189,7 @@ public class TestAttributeSet implements AttributeSet {
     public int getAttributeResourceValue(int resourceId, int defaultValue) {
         String attrName = resourceExtractor.getResourceName(resourceId);
         String value = getAttributeValueInMap(null, attrName);
-        return (value == null) ? defaultValue : resourceExtractor.getResourceId(value);
+        return (value == null) ? defaultValue : getResourceIdInMap(null, attrName, value);
     }
 
     @Override
@@ -207,12 +241,45 @@ public class TestAttributeSet implements AttributeSet {
     }
 
     private String getAttributeValueInMap(String namespace, String attribute) {
+        ResolvedValue resolvedValue = getResolvedValue(namespace, attribute);
+        if (resolvedValue != null) {
+            return resolvedValue.value;
+        }
+        return resolvedValues == null ? lookUpAttributeValue(namespace, attribute) : null;
+    }
+
+    private String getNumericValueInMap(String namespace, String attribute) {
+        ResolvedValue resolvedValue = getResolvedValue(namespace, attribute);
+        if (resolvedValue != null) {
+            return resolvedValue.numericValue;
+        }
+        if (resolvedValues != null) {
+            return null;
+        }
+
+        String value = lookUpAttributeValue(namespace, attribute);
+        if (attrResourceLoader.hasAttributeFor(viewClass, "xxx", attribute)) {
+            value = attrResourceLoader.convertValueToEnum(viewClass, "xxx", attribute, value);
+        }
+        return value;
+    }
+
+    private Integer getResourceIdInMap(String namespace, String attribute, String value) {
+        ResolvedValue resolvedValue = getResolvedValue(namespace, attribute);
+        return resolvedValue != null ? resolvedValue.resourceId : resourceExtractor.getResourceId(value);
+    }
+
+    private ResolvedValue getResolvedValue(String namespace, String attribute) {
+        if (resolvedValues == null) {
+            return null;
+        }
+        return ("android".equals(namespace) ? resolvedAndroidValues : resolvedValues).get(attribute);
+    }
+
+    private String lookUpAttributeValue(String namespace, String attribute) {
         String value = null;
         for (String key : attributes.keySet()) {
-            String[] mappedKeys = {null, key};
-            if (key.contains(":")) {
-                mappedKeys = key.split(":");
-            }
+            String[] mappedKeys = splitKey(key);
 
             if (mappedKeys[1].equals(attribute) && (
                     namespace == null || !namespace.equals("android") ||
@@ -221,9 +288,29 @@ public class TestAttributeSet implements AttributeSet {
                 break;
             }
         }
+        return rewriteSystemId(value);
+    }
+
+    private String rewriteSystemId(String value) {
         if (value != null && isSystem && value.startsWith("@+id")) {
             value = value.replace("@+id", "@+android:id");
         }
         return value;
     }
+
+    private static String[] splitKey(String key) {
+        return key.contains(":") ? key.split(":") : new String[]{null, key};
+    }
+
+    private static class ResolvedValue {
+        private final String value;
+        private final String numericValue;
+        private final Integer resourceId;
+
+        private ResolvedValue(String value, String numericValue, Integer resourceId) {
+            this.value = value;
+            this.numericValue = numericValue;
+            this.resourceId = resourceId;
+        }
+    }
 }
@@ -193,7 +193,7 @@ public class TestMenuItem implements MenuItem {
         if (enabled && menuItemClickListener != null) {
             menuItemClickListener.onMenuItemClick(this);
         } else if (enabled && intent != null) {
-            Robolectric.application.startActivity(intent);
+            Robolectric.getApplication().startActivity(intent);
         }
     }
 
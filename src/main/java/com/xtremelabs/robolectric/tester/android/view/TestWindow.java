@@ -146,7 +146,7 @@ public class TestWindow extends Window {
     }
 
     @Override public View getDecorView() {
-        return new View(Robolectric.application);
+        return new View(Robolectric.getApplication());
     }
 
     @Override public View peekDecorView() {
@@ -1,5 +1,8 @@
 package com.xtremelabs.robolectric.util;
 
+import com.xtremelabs.robolectric.internal.RobolectricContext;
+
+import java.io.File;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
@@ -11,16 +14,20 @@ import java.sql.SQLException;
 
 
 public class DatabaseConfig {
-    private static DatabaseMap dbMap = null;
-    private static boolean isLoaded = false;
+    private static final RobolectricContext.Slot<DatabaseMap> dbMap = new RobolectricContext.Slot<DatabaseMap>();
+    private static final RobolectricContext.Slot<Boolean> isLoaded = new RobolectricContext.Slot<Boolean>() {
+        @Override protected Boolean initialValue() {
+            return false;
+        }
+    };
 
     public static void setDatabaseMap(DatabaseMap map) {
-        dbMap = map;
-        isLoaded = false; //make sure to reset isLoaded or mixing databases in a test suite will fail.
+        dbMap.set(map);
+        isLoaded.set(false); //make sure to reset isLoaded or mixing databases in a test suite will fail.
     }
 
     public static DatabaseMap getDatabaseMap() {
-        return dbMap;
+        return dbMap.get();
     }
 
     /**
@@ -29,7 +36,7 @@ public class DatabaseConfig {
      * @return
      */
     public static boolean isMapLoaded() {
-        return isLoaded;
+        return isLoaded.get();
     }
 
     /**
@@ -38,7 +45,7 @@ public class DatabaseConfig {
      * @return
      */
     public static boolean isMapNull() {
-        return dbMap == null;
+        return dbMap.get() == null;
     }
 
     /**
@@ -47,7 +54,7 @@ public class DatabaseConfig {
     private static void LoadSQLiteDriver() {
         if (isMapNull()) throw new NullDatabaseMapException("Error in DatabaseConfig: DatabaseMap has not been set.");
         try {
-            Class.forName(dbMap.getDriverClassName()).newInstance();
+            Class.forName(getDatabaseMap().getDriverClassName()).newInstance();
         } catch (InstantiationException e) {
             throw new CannotLoadDatabaseMapDriverException("Error in DatabaseConfig: SQLite driver could not be instantiated;", e);
         } catch (IllegalAccessException e) {
@@ -55,7 +62,7 @@ public class DatabaseConfig {
         } catch (ClassNotFoundException e) {
             throw new CannotLoadDatabaseMapDriverException("Error in DatabaseConfig: SQLite driver class could not be found;", e);
         }
-        isLoaded = true;
+        isLoaded.set(true);
     }
 
     /**
@@ -66,12 +73,30 @@ public class DatabaseConfig {
     public static Connection getMemoryConnection() {
         if (!isMapLoaded()) LoadSQLiteDriver();
         try {
-            return DriverManager.getConnection(dbMap.getConnectionString());
+            return DriverManager.getConnection(getDatabaseMap().getConnectionString());
         } catch (SQLException e) {
             throw new CannotLoadDatabaseMapDriverException("Error in DatabaseConfig, could not retrieve connection to in memory database.", e);
         }
     }
 
+    /**
+     * Gets a connection to the database kept in {@code file}, which is created if it doesn't exist.  Will load DB
+     * Driver if not already loaded.
+     *
+     * @return Connection to the file's database.
+     */
+    public static Connection getFileConnection(File file) {
+        if (!isMapLoaded()) LoadSQLiteDriver();
+        if (!(getDatabaseMap() instanceof FileDatabaseMap)) {
+            throw new UnsupportedOperationException(getDatabaseMap().getClass().getName() + " can't open database files");
+        }
+        try {
+            return DriverManager.getConnection(((FileDatabaseMap) getDatabaseMap()).getConnectionString(file));
+        } catch (SQLException e) {
+            throw new CannotLoadDatabaseMapDriverException("Error in DatabaseConfig, could not retrieve connection to database file " + file + ".", e);
+        }
+    }
+
     /**
      * Makes any edits necessary in the SQL string for it to be compatible with the database in use.
      *
@@ -80,17 +105,17 @@ public class DatabaseConfig {
      */
     public static String getScrubSQL(String sql) throws SQLException {
         if (isMapNull()) throw new NullDatabaseMapException("No database map set!");
-        return dbMap.getScrubSQL(sql);
+        return getDatabaseMap().getScrubSQL(sql);
     }
 
     public static String getSelectLastInsertIdentity() {
         if (isMapNull()) throw new NullDatabaseMapException("No database map set!");
-        return dbMap.getSelectLastInsertIdentity();
+        return getDatabaseMap().getSelectLastInsertIdentity();
     }
 
     public static int getResultSetType() {
         if (isMapNull()) throw new NullDatabaseMapException("No database map set!");
-        return dbMap.getResultSetType();
+        return getDatabaseMap().getResultSetType();
     }
 
     public interface DatabaseMap {
@@ -105,6 +130,43 @@ public class DatabaseConfig {
         int getResultSetType();
     }
 
+    /**
+     * A {@link DatabaseMap} that can copy a whole database, which {@link DatabaseTemplates} need.
+     */
+    public interface SnapshotableDatabaseMap extends DatabaseMap {
+        /**
+         * @return a copy of the schema and contents of the connection's database
+         */
+        DatabaseSnapshot takeSnapshot(Connection connection) throws SQLException;
+    }
+
+    public interface DatabaseSnapshot {
+        /**
+         * Copies the snapshot into the connection's database, which should be empty.
+         */
+        void restoreInto(Connection connection) throws SQLException;
+
+        /**
+         * Frees whatever the snapshot keeps, such as a file. It isn't restored again after this.
+         */
+        void discard();
+    }
+
+    /**
+     * A {@link DatabaseMap} that keeps databases opened at a path in files, as Android does, so a test can start from
+     * an existing database file. Databases without a path are still kept in memory.
+     */
+    public interface FileDatabaseMap extends DatabaseMap {
+        String getConnectionString(File file);
+
+        /**
+         * @return the schema version kept in the connection's database, which has to outlive the connection
+         */
+        int getVersion(Connection connection) throws SQLException;
+
+        void setVersion(Connection connection, int version) throws SQLException;
+    }
+
     public static class NullDatabaseMapException extends RuntimeException {
         private static final long serialVersionUID = -4580960157495617424L;
 
@@ -0,0 +1,141 @@
+package com.xtremelabs.robolectric.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Named copies of databases, taken once a test has set a database up and restored into new databases by later tests
+ * that want the same starting point, so they don't each have to create the schema and insert fixtures again.
+ * <p/>
+ * Unlike the rest of Robolectric's state, templates last for the life of the JVM. They're kept apart for each kind
+ * of {@link DatabaseConfig.DatabaseMap}, since a copy of one database engine's database can't be restored into
+ * another's. The map in use has to be a {@link DatabaseConfig.SnapshotableDatabaseMap}; see {@link #isSupported()}.
+ * A template that's replaced or cleared is discarded, along with any file its snapshot kept.
+ */
+public class DatabaseTemplates {
+    private static final Map<String, Template> templates = new HashMap<String, Template>();
+
+    /**
+     * @return true if the database map in use can copy databases, so templates can be saved
+     */
+    public static boolean isSupported() {
+        return DatabaseConfig.getDatabaseMap() instanceof DatabaseConfig.SnapshotableDatabaseMap;
+    }
+
+    /**
+     * Saves a copy of the connection's database as the template called {@code name}, replacing any template
+     * already called that.
+     */
+    public static void save(String name, Connection connection) {
+        DatabaseConfig.DatabaseMap databaseMap = DatabaseConfig.getDatabaseMap();
+        if (!(databaseMap instanceof DatabaseConfig.SnapshotableDatabaseMap)) {
+            throw new UnsupportedOperationException(databaseMap.getClass().getName() + " can't copy databases");
+        }
+        try {
+            DatabaseConfig.DatabaseSnapshot snapshot = ((DatabaseConfig.SnapshotableDatabaseMap) databaseMap).takeSnapshot(connection);
+            Template replaced;
+            synchronized (templates) {
+                replaced = templates.put(key(name), new Template(snapshot));
+            }
+            if (replaced != null) {
+                replaced.discard();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception saving database template " + name, e);
+        }
+    }
+
+    /**
+     * Copies the template called {@code name} into the connection's database, which should be empty.
+     *
+     * @return false if there's no such template
+     */
+    public static boolean restore(String name, Connection connection) {
+        String key = key(name);
+        try {
+            while (true) {
+                Template template;
+                synchronized (templates) {
+                    template = templates.get(key);
+                }
+                if (template == null) {
+                    return false;
+                }
+                if (template.restoreInto(connection)) {
+                    return true;
+                }
+                // replaced while we were getting it; try its replacement
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception restoring database template " + name, e);
+        }
+    }
+
+    public static boolean contains(String name) {
+        synchronized (templates) {
+            return templates.containsKey(key(name));
+        }
+    }
+
+    public static void clear() {
+        List<Template> cleared;
+        synchronized (templates) {
+            cleared = new ArrayList<Template>(templates.values());
+            templates.clear();
+        }
+        for (Template template : cleared) {
+            template.discard();
+        }
+    }
+
+    private static String key(String name) {
+        return DatabaseConfig.getDatabaseMap().getClass().getName() + ":" + name;
+    }
+
+    /**
+     * A snapshot that several threads can restore at once, and that's only discarded once none of them are.
+     */
+    private static class Template {
+        private final DatabaseConfig.DatabaseSnapshot snapshot;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean discarded;
+
+        Template(DatabaseConfig.DatabaseSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * @return false if the template was discarded first
+         */
+        boolean restoreInto(Connection connection) throws SQLException {
+            lock.readLock().lock();
+            try {
+                if (discarded) {
+                    return false;
+                }
+                snapshot.restoreInto(connection);
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void discard() {
+            lock.writeLock().lock();
+            try {
+                if (!discarded) {
+                    discarded = true;
+                    snapshot.discard();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
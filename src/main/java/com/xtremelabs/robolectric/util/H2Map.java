@@ -1,12 +1,16 @@
 package com.xtremelabs.robolectric.util;
 
+import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 
-public class H2Map implements DatabaseConfig.DatabaseMap {
+public class H2Map implements DatabaseConfig.SnapshotableDatabaseMap {
 
     @Override
     public String getDriverClassName() {
@@ -72,4 +76,38 @@ public class H2Map implements DatabaseConfig.DatabaseMap {
         return ResultSet.TYPE_SCROLL_INSENSITIVE;
     }
 
+    /**
+     * Keeps the statements H2's {@code SCRIPT} command generates to recreate the database; restoring runs them.
+     */
+    @Override
+    public DatabaseConfig.DatabaseSnapshot takeSnapshot(Connection connection) throws SQLException {
+        final List<String> script = new ArrayList<String>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery("SCRIPT");
+            while (resultSet.next()) {
+                script.add(resultSet.getString(1));
+            }
+        } finally {
+            statement.close();
+        }
+
+        return new DatabaseConfig.DatabaseSnapshot() {
+            @Override public void restoreInto(Connection connection) throws SQLException {
+                Statement statement = connection.createStatement();
+                try {
+                    for (String sql : script) {
+                        statement.execute(sql);
+                    }
+                } finally {
+                    statement.close();
+                }
+            }
+
+            @Override public void discard() {
+                script.clear();
+            }
+        };
+    }
+
 }
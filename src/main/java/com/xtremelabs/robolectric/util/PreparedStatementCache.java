@@ -0,0 +1,80 @@
+package com.xtremelabs.robolectric.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the statements most recently prepared on a connection, keyed by their SQL, so running the same SQL again,
+ * as seeding a table row by row does, doesn't have to parse it again. The least recently used statement is closed
+ * when the cache is full.
+ * <p/>
+ * Callers should synchronize on a statement while they bind its parameters and run it, since a statement has one
+ * set of parameters however many callers share it.
+ */
+public class PreparedStatementCache {
+    public static final int DEFAULT_SIZE = 64;
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    public PreparedStatementCache(Connection connection) {
+        this(connection, DEFAULT_SIZE);
+    }
+
+    public PreparedStatementCache(Connection connection, final int size) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= size) {
+                    return false;
+                }
+                close(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return a statement for {@code sql}, which returns generated keys, prepared the first time it's asked for
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes every statement in the cache, and empties it.
+     */
+    public synchronized void close() {
+        Iterator<PreparedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            close(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the statement's connection is probably closed already
+        }
+    }
+}
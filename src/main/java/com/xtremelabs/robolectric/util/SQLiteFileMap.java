@@ -0,0 +1,37 @@
+package com.xtremelabs.robolectric.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An {@link SQLiteMap} that keeps each database opened at a path in a file, so tests can open database files their
+ * app ships, however big, without inserting their rows again. Relative paths are kept under
+ * {@link com.xtremelabs.robolectric.shadows.ShadowContext#getDatabaseDirectory()}, which is emptied before each
+ * test; see {@link com.xtremelabs.robolectric.shadows.ShadowSQLiteDatabase#setFixture(String, java.io.File)} to start
+ * a database from a copy of a fixture file.
+ * <p/>
+ * The schema version is kept in the file, as {@code PRAGMA user_version}, as it is on Android.
+ */
+public class SQLiteFileMap extends SQLiteMap implements DatabaseConfig.FileDatabaseMap {
+
+    public String getConnectionString(File file) {
+        return "jdbc:sqlite:" + file.getAbsolutePath();
+    }
+
+    public int getVersion(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery("PRAGMA user_version");
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    public void setVersion(Connection connection, int version) throws SQLException {
+        execute(connection, "PRAGMA user_version = " + version);
+    }
+}
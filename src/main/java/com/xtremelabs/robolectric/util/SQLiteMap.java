@@ -1,8 +1,13 @@
 package com.xtremelabs.robolectric.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
-public class SQLiteMap implements DatabaseConfig.DatabaseMap {
+public class SQLiteMap implements DatabaseConfig.SnapshotableDatabaseMap {
 
     public String getDriverClassName() {
         return "org.sqlite.JDBC";
@@ -23,4 +28,37 @@ public class SQLiteMap implements DatabaseConfig.DatabaseMap {
     public int getResultSetType() {
         return ResultSet.TYPE_FORWARD_ONLY;
     }
+
+    /**
+     * Copies the database into a temporary file with SQLite's backup API; restoring copies the file's pages back.
+     */
+    public DatabaseConfig.DatabaseSnapshot takeSnapshot(Connection connection) throws SQLException {
+        final File file;
+        try {
+            file = File.createTempFile("robolectric-database", ".sqlite");
+        } catch (IOException e) {
+            throw new SQLException("couldn't create a file for the snapshot: " + e.getMessage());
+        }
+        file.deleteOnExit();
+        execute(connection, "backup to '" + file.getAbsolutePath() + "'");
+
+        return new DatabaseConfig.DatabaseSnapshot() {
+            public void restoreInto(Connection connection) throws SQLException {
+                execute(connection, "restore from '" + file.getAbsolutePath() + "'");
+            }
+
+            public void discard() {
+                file.delete();
+            }
+        };
+    }
+
+    static void execute(Connection connection, String command) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate(command);
+        } finally {
+            statement.close();
+        }
+    }
 }
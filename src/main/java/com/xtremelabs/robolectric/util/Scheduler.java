@@ -1,16 +1,79 @@
 package com.xtremelabs.robolectric.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.ListIterator;
-
+import com.xtremelabs.robolectric.internal.RobolectricContext;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs posted runnables in order of their scheduled time. Runnables scheduled for the same time run in the order they
+ * were posted, except that those posted with {@link #postAtFrontOfQueue(Runnable)} run before everything else
+ * scheduled for that time. The queue is a heap, so posting and running a runnable are O(log n).
+ * <p/>
+ * A runnable that posts itself again while it runs, as polling code does, reuses its queue entry.
+ * <p/>
+ * A scheduler made with an {@link Executor} still decides when runnables come due in the same way, but hands them to
+ * the executor to run instead of running them itself, in the {@link RobolectricContext} of the test that was running
+ * when they came due; {@link #waitForIdle()} waits for them to finish.
+ */
 public class Scheduler {
-    private List<PostedRunnable> postedRunnables = new ArrayList<PostedRunnable>();
+    private PriorityQueue<PostedRunnable> postedRunnables = new PriorityQueue<PostedRunnable>();
+    private long nextSequenceNumber = 1;
+    private long nextFrontOfQueueSequenceNumber = 0;
     private long currentTime = 0;
     private boolean paused = false;
     private Thread associatedThread = Thread.currentThread();
     private boolean isConstantlyIdling = false;
+    private final Executor executor;
+    private final Object dispatchLock = new Object();
+    private int dispatchedCount = 0;
+    private Throwable dispatchFailure;
+    private PostedRunnable runningPostedRunnable;
+    private long taskRunCount = 0;
+    private int maxQueueDepth = 0;
+
+    public Scheduler() {
+        this(null);
+    }
+
+    /**
+     * @param executor runs runnables once they come due, or null to run them on the thread that posts them or advances
+     *                 the scheduler
+     */
+    public Scheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return a pool of {@code threadCount} daemon threads, which go away when there's been no work for a second
+     */
+    public static Executor newWorkerPool(int threadCount) {
+        ThreadPoolExecutor workerPool = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "robolectric-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        workerPool.allowCoreThreadTimeOut(true);
+        return workerPool;
+    }
+
+    /**
+     * @return the executor runnables are handed to once they come due, or null if this scheduler runs them itself
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
 
     public synchronized long getCurrentTime() {
         return currentTime;
@@ -31,10 +94,9 @@ public class Scheduler {
 
     public synchronized void postDelayed(Runnable runnable, long delayMillis) {
         if ((!isConstantlyIdling && (paused || delayMillis > 0)) || Thread.currentThread() != associatedThread) {
-	        postedRunnables.add(new PostedRunnable(runnable, currentTime + delayMillis));
-	        Collections.sort(postedRunnables);
+	        enqueue(runnable, currentTime + delayMillis, nextSequenceNumber++);
         } else {
-            runnable.run();
+            run(runnable);
         }
     }
 
@@ -44,14 +106,14 @@ public class Scheduler {
 
     public synchronized void postAtFrontOfQueue(Runnable runnable) {
         if (paused || Thread.currentThread() != associatedThread) {
-        	postedRunnables.add(0, new PostedRunnable(runnable, currentTime));
+        	enqueue(runnable, currentTime, nextFrontOfQueueSequenceNumber--);
         } else {
-            runnable.run();
+            run(runnable);
         }
     }
 
     public synchronized void remove(Runnable runnable) {
-        ListIterator<PostedRunnable> iterator = postedRunnables.listIterator();
+        Iterator<PostedRunnable> iterator = postedRunnables.iterator();
         while (iterator.hasNext()) {
             PostedRunnable next = iterator.next();
             if (next.runnable == runnable) {
@@ -65,7 +127,11 @@ public class Scheduler {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(postedRunnables.size() - 1).scheduledTime);
+        long lastScheduledTime = Long.MIN_VALUE;
+        for (PostedRunnable postedRunnable : postedRunnables) {
+            lastScheduledTime = Math.max(lastScheduledTime, postedRunnable.scheduledTime);
+        }
+        return advanceTo(lastScheduledTime);
     }
 
     public synchronized boolean advanceToNextPostedRunnable() {
@@ -73,7 +139,7 @@ public class Scheduler {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(0).scheduledTime);
+        return advanceTo(postedRunnables.peek().scheduledTime);
     }
 
     public synchronized boolean advanceBy(long intervalMs) {
@@ -87,8 +153,9 @@ public class Scheduler {
         }
 
         int runCount = 0;
-        while (nextTaskIsScheduledBefore(endingTime)) {
-            runOneTask();
+        PostedRunnable next;
+        while ((next = postedRunnables.peek()) != null && next.scheduledTime <= endingTime) {
+            runNext();
             ++runCount;
         }
         currentTime = endingTime;
@@ -101,9 +168,7 @@ public class Scheduler {
             return false;
         }
 
-        PostedRunnable postedRunnable = postedRunnables.remove(0);
-        currentTime = postedRunnable.scheduledTime;
-        postedRunnable.run();
+        runNext();
         return true;
     }
 
@@ -113,9 +178,7 @@ public class Scheduler {
         }
 
         while (howMany > 0) {
-            PostedRunnable postedRunnable = postedRunnables.remove(0);
-            currentTime = postedRunnable.scheduledTime;
-            postedRunnable.run();
+            runNext();
             howMany--;
         }
         return true;
@@ -131,38 +194,151 @@ public class Scheduler {
 
     public synchronized void reset() {
         postedRunnables.clear();
+        nextSequenceNumber = 1;
+        nextFrontOfQueueSequenceNumber = 0;
         paused = false;
         isConstantlyIdling = false;
+        taskRunCount = 0;
+        maxQueueDepth = 0;
     }
 
     public synchronized int size() {
         return postedRunnables.size();
     }
 
+    /**
+     * @return how many runnables have run, or been handed to the executor, since this scheduler was created or
+     *         {@link #resetStatistics()} was last called
+     */
+    public synchronized long getTaskRunCount() {
+        return taskRunCount;
+    }
+
+    /**
+     * @return the most runnables that have been waiting at once since this scheduler was created or
+     *         {@link #resetStatistics()} was last called
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized void resetStatistics() {
+        taskRunCount = 0;
+        maxQueueDepth = postedRunnables.size();
+    }
+
     public void idleConstantly(boolean shouldIdleConstantly) {
         isConstantlyIdling = shouldIdleConstantly;
     }
 
+    /**
+     * Waits until every runnable handed to the executor has finished. Returns at once if this scheduler runs
+     * runnables itself.
+     *
+     * @throws RuntimeException if any of them threw, wrapping the first thing thrown
+     */
+    public void waitForIdle() throws InterruptedException {
+        synchronized (dispatchLock) {
+            while (dispatchedCount > 0) {
+                dispatchLock.wait();
+            }
+            Throwable failure = dispatchFailure;
+            dispatchFailure = null;
+            if (failure != null) {
+                throw new RuntimeException("a runnable failed in the background", failure);
+            }
+        }
+    }
+
+    private void enqueue(Runnable runnable, long scheduledTime, long sequenceNumber) {
+        PostedRunnable postedRunnable = runningPostedRunnable;
+        if (postedRunnable != null && postedRunnable.runnable == runnable) {
+            // it's out of the queue while it runs, so it can go straight back in
+            runningPostedRunnable = null;
+            postedRunnable.scheduledTime = scheduledTime;
+            postedRunnable.sequenceNumber = sequenceNumber;
+        } else {
+            postedRunnable = new PostedRunnable(runnable, scheduledTime, sequenceNumber);
+        }
+        postedRunnables.add(postedRunnable);
+        maxQueueDepth = Math.max(maxQueueDepth, postedRunnables.size());
+    }
+
+    private void runNext() {
+        PostedRunnable postedRunnable = postedRunnables.poll();
+        currentTime = postedRunnable.scheduledTime;
+        if (executor == null) {
+            runningPostedRunnable = postedRunnable;
+        }
+        try {
+            postedRunnable.run();
+        } finally {
+            runningPostedRunnable = null;
+        }
+    }
+
+    private void run(final Runnable runnable) {
+        taskRunCount++;
+        if (executor == null) {
+            runnable.run();
+            return;
+        }
+
+        synchronized (dispatchLock) {
+            dispatchedCount++;
+        }
+        // workers outlive tests, so each task runs in the context of the test that dispatched it
+        final RobolectricContext context = RobolectricContext.get();
+        executor.execute(new Runnable() {
+            @Override public void run() {
+                Throwable failure = null;
+                RobolectricContext workerContext = RobolectricContext.install(context);
+                try {
+                    runnable.run();
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    RobolectricContext.install(workerContext);
+                    synchronized (dispatchLock) {
+                        if (failure != null && dispatchFailure == null) {
+                            dispatchFailure = failure;
+                        }
+                        dispatchedCount--;
+                        dispatchLock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
     class PostedRunnable implements Comparable<PostedRunnable> {
         Runnable runnable;
         long scheduledTime;
+        long sequenceNumber;
 
-        PostedRunnable(Runnable runnable, long scheduledTime) {
+        PostedRunnable(Runnable runnable, long scheduledTime, long sequenceNumber) {
             this.runnable = runnable;
             this.scheduledTime = scheduledTime;
+            this.sequenceNumber = sequenceNumber;
         }
 
         @Override
         public int compareTo(PostedRunnable postedRunnable) {
-            return (int) (scheduledTime - postedRunnable.scheduledTime);
+            if (scheduledTime != postedRunnable.scheduledTime) {
+                return scheduledTime < postedRunnable.scheduledTime ? -1 : 1;
+            }
+            if (sequenceNumber != postedRunnable.sequenceNumber) {
+                return sequenceNumber < postedRunnable.sequenceNumber ? -1 : 1;
+            }
+            return 0;
         }
 
         public void run() {
-            runnable.run();
+            Scheduler.this.run(runnable);
         }
     }
 
     private boolean nextTaskIsScheduledBefore(long endingTime) {
-        return enqueuedTaskCount() > 0 && postedRunnables.get(0).scheduledTime <= endingTime;
+        return enqueuedTaskCount() > 0 && postedRunnables.peek().scheduledTime <= endingTime;
     }
 }
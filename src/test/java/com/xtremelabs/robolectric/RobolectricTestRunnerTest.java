@@ -1,8 +1,14 @@
 package com.xtremelabs.robolectric;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.model.InitializationError;
@@ -14,7 +20,9 @@ import android.widget.TextView;
 import com.xtremelabs.robolectric.annotation.DisableStrictI18n;
 import com.xtremelabs.robolectric.annotation.EnableStrictI18n;
 import com.xtremelabs.robolectric.annotation.Values;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.res.ResourceLoader;
+import com.xtremelabs.robolectric.shadows.ShadowApplication;
 
 @RunWith(RobolectricTestRunnerTest.RunnerForTesting.class)
 public class RobolectricTestRunnerTest {
@@ -90,6 +98,79 @@ public class RobolectricTestRunnerTest {
     	}
     }
     
+    @Test
+    public void setupApplicationState_shouldNotParseLayouts() {
+        // a different path to the same assets keeps the runner from reusing a ResourceLoader other tests have used
+        RobolectricConfig robolectricConfig = new RobolectricConfig(resourceFile("TestAndroidManifest.xml"),
+                resourceFile("res"), new File(resourceFile("assets"), "."));
+        RunnerForTesting.instance.setupApplicationState(robolectricConfig);
+
+        ResourceLoader loader = shadowOf(Robolectric.application).getResourceLoader();
+        assertFalse(loader.hasLoadedLayouts());
+        assertNotNull(loader.getLayoutViewNode("layout/main"));
+        assertTrue(loader.hasLoadedLayouts());
+    }
+
+    @Test
+    public void internalAfterTest_waitsForBackgroundTasksOnWorkerThreads() throws Exception {
+        System.setProperty(ShadowApplication.BACKGROUND_THREADS_PROPERTY, "1");
+        try {
+            Robolectric.application = new Application();
+        } finally {
+            System.clearProperty(ShadowApplication.BACKGROUND_THREADS_PROPERTY);
+        }
+        final AtomicBoolean finished = new AtomicBoolean();
+        Robolectric.getBackgroundScheduler().post(new Runnable() {
+            @Override public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                finished.set(true);
+            }
+        });
+
+        RunnerForTesting.instance.internalAfterTest(getClass().getMethod("internalAfterTest_waitsForBackgroundTasksOnWorkerThreads"));
+        assertTrue(finished.get());
+    }
+
+    @Test
+    public void backgroundTasksOnWorkerThreads_runAgainstTheTestThatPostedThem_whenStateIsPerThread() throws Exception {
+        RobolectricContext testContext = RobolectricContext.get();
+        Application testApplication = Robolectric.application;
+        boolean wasPerThread = RobolectricContext.isPerThread();
+        RobolectricContext.setPerThread(true);
+        try {
+            Method method = getClass().getMethod("backgroundTasksOnWorkerThreads_runAgainstTheTestThatPostedThem_whenStateIsPerThread");
+            for (int test = 0; test < 2; test++) {
+                RobolectricContext.reset();
+                System.setProperty(ShadowApplication.BACKGROUND_THREADS_PROPERTY, "1");
+                try {
+                    RunnerForTesting.instance.internalBeforeTest(method);
+                } finally {
+                    System.clearProperty(ShadowApplication.BACKGROUND_THREADS_PROPERTY);
+                }
+                Application application = Robolectric.getApplication();
+                assertNotNull(Robolectric.getBackgroundScheduler().getExecutor());
+
+                final AtomicReference<Application> applicationInTask = new AtomicReference<Application>();
+                Robolectric.getBackgroundScheduler().post(new Runnable() {
+                    @Override public void run() {
+                        applicationInTask.set(Robolectric.getApplication());
+                    }
+                });
+                Robolectric.waitForBackgroundTasks();
+                assertSame(application, applicationInTask.get());
+                RunnerForTesting.instance.internalAfterTest(method);
+            }
+        } finally {
+            RobolectricContext.setPerThread(wasPerThread);
+            RobolectricContext.install(testContext);
+            Robolectric.application = testApplication;
+        }
+    }
+
     public static class RunnerForTesting extends WithTestDefaultsRunner {
     	public static RunnerForTesting instance;
  
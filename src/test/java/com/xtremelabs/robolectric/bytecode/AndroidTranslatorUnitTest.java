@@ -45,6 +45,31 @@ public class AndroidTranslatorUnitTest {
         assertTrue(androidTranslator.shouldInstrument(classPool.makeClass("my.custom.Klazz")));
     }
 
+    @Test
+    public void shouldChangeInstrumentationFingerprintWhenCustomShadowClassIsAdded() throws Exception {
+        String fingerprint = androidTranslator.getInstrumentationFingerprint();
+        androidTranslator.addCustomShadowClass("my.custom.Klazz");
+        assertFalse(fingerprint.equals(androidTranslator.getInstrumentationFingerprint()));
+    }
+
+    @Test
+    public void shouldOnlyUseCallSitesForClassHandlersThatAcceptThem() throws Exception {
+        String useCallSites = System.getProperty(AndroidTranslator.USE_CALL_SITES);
+        System.setProperty(AndroidTranslator.USE_CALL_SITES, "true");
+        try {
+            assertTrue(new AndroidTranslator(mock(CallSiteAwareClassHandler.class), null)
+                    .getInstrumentationFingerprint().contains("callSites=true"));
+            assertTrue(new AndroidTranslator(mock(ClassHandler.class), null)
+                    .getInstrumentationFingerprint().contains("callSites=false"));
+        } finally {
+            if (useCallSites == null) {
+                System.clearProperty(AndroidTranslator.USE_CALL_SITES);
+            } else {
+                System.setProperty(AndroidTranslator.USE_CALL_SITES, useCallSites);
+            }
+        }
+    }
+
     @Test
     public void testOnLoadWithNonInstrumentedClass() throws Exception {
         ClassHandler handler = mock(ClassHandler.class);
@@ -53,6 +78,7 @@ public class AndroidTranslatorUnitTest {
         AndroidTranslator translator = new AndroidTranslator(handler, cache);
 
         translator.onLoad(classPool, "java.lang.Object");
+        verify(cache).setInstrumentationFingerprint(translator.getInstrumentationFingerprint());
         verify(cache).isWriting();
         verifyNoMoreInteractions(cache);
         verifyZeroInteractions(handler);
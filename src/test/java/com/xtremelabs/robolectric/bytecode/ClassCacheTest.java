@@ -1,10 +1,217 @@
 package com.xtremelabs.robolectric.bytecode;
 
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class ClassCacheTest {
+    private static final byte[] INSTRUMENTED_FOO = "instrumented Foo".getBytes();
+    private static final byte[] INSTRUMENTED_SHADOW_FOO = "instrumented ShadowFoo".getBytes();
+
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDirectory = File.createTempFile("class-cache", "");
+        cacheDirectory.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(cacheDirectory);
+    }
+
+    @Test
+    public void shouldReturnClassesSavedByAnEarlierCache() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.saveAllClassesToCache();
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        assertArrayEquals(INSTRUMENTED_FOO, reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+        assertNull(reopenedClassCache.getClassBytesFor(ShadowFoo.class.getName()));
+    }
+
+    @Test
+    public void shouldAppendToExistingCacheRatherThanReplaceIt() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.saveAllClassesToCache();
+        long classesLength = new File(cacheDirectory, ClassCache.CLASSES_FILE_NAME).length();
+
+        ClassCache secondClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        secondClassCache.addClass(ShadowFoo.class.getName(), INSTRUMENTED_SHADOW_FOO);
+        secondClassCache.saveAllClassesToCache();
+        assertEquals(classesLength + INSTRUMENTED_SHADOW_FOO.length, new File(cacheDirectory, ClassCache.CLASSES_FILE_NAME).length());
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        assertArrayEquals(INSTRUMENTED_FOO, reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+        assertArrayEquals(INSTRUMENTED_SHADOW_FOO, reopenedClassCache.getClassBytesFor(ShadowFoo.class.getName()));
+    }
+
+    @Test
+    public void shouldIgnoreClassesInstrumentedWithADifferentFingerprint() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        classCache.setInstrumentationFingerprint("some instrumentation");
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.saveAllClassesToCache();
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        reopenedClassCache.setInstrumentationFingerprint("other instrumentation");
+        assertNull(reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+        reopenedClassCache.setInstrumentationFingerprint("some instrumentation");
+        assertArrayEquals(INSTRUMENTED_FOO, reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+    }
+
+    @Test
+    public void shouldDiscardCacheWrittenByADifferentCacheVersion() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.saveAllClassesToCache();
+
+        assertNull(new ClassCache(cacheDirectory.getPath(), 2).getClassBytesFor(Foo.class.getName()));
+    }
+
+    @Test
+    public void shouldCompactAwayEntriesReplacedUnderNewFingerprints() throws Exception {
+        for (String fingerprint : new String[] {"first", "second", "third"}) {
+            ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+            classCache.setInstrumentationFingerprint(fingerprint);
+            classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+            classCache.saveAllClassesToCache();
+        }
+        assertEquals(INSTRUMENTED_FOO.length, new File(cacheDirectory, ClassCache.CLASSES_FILE_NAME).length());
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        reopenedClassCache.setInstrumentationFingerprint("third");
+        assertArrayEquals(INSTRUMENTED_FOO, reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+    }
+
+    @Test
+    public void shouldNotGrowPastItsMaximumSize() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, INSTRUMENTED_FOO.length);
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.addClass(ShadowFoo.class.getName(), INSTRUMENTED_SHADOW_FOO);
+        classCache.saveAllClassesToCache();
+        assertEquals(INSTRUMENTED_FOO.length, new File(cacheDirectory, ClassCache.CLASSES_FILE_NAME).length());
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1, INSTRUMENTED_FOO.length);
+        assertArrayEquals(INSTRUMENTED_FOO, reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+        assertNull(reopenedClassCache.getClassBytesFor(ShadowFoo.class.getName()));
+    }
 
+    @Test
+    public void shouldIgnorePartiallyWrittenIndexEntries() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.addClass(ShadowFoo.class.getName(), INSTRUMENTED_SHADOW_FOO);
+        classCache.saveAllClassesToCache();
+        truncate(new File(cacheDirectory, ClassCache.INDEX_FILE_NAME), 3);
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        assertArrayEquals(INSTRUMENTED_FOO, reopenedClassCache.getClassBytesFor(Foo.class.getName()));
+        assertNull(reopenedClassCache.getClassBytesFor(ShadowFoo.class.getName()));
+    }
+
+    @Test
+    public void shouldReportBytesRead() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        classCache.addClass(Foo.class.getName(), INSTRUMENTED_FOO);
+        classCache.saveAllClassesToCache();
+
+        ClassCache reopenedClassCache = new ClassCache(cacheDirectory.getPath(), 1);
+        reopenedClassCache.getClassBytesFor(Foo.class.getName());
+        assertTrue(reopenedClassCache.getStats(), reopenedClassCache.getStats().contains("read 1 classes (" + INSTRUMENTED_FOO.length + " bytes)"));
+    }
+
+    @Test
+    public void shouldLetSeveralJvmsWarmOneCacheDirectory() throws Exception {
+        String[] classNames = {
+                Foo.class.getName(), ShadowFoo.class.getName(), ClassCacheTest.class.getName(),
+                ShadowWranglerTest.class.getName(), MethodGeneratorTest.class.getName(),
+                AndroidTranslatorUnitTest.class.getName(), DirectCallPolicyTest.class.getName()
+        };
+        int jvmCount = 4;
+        int classesPerJvm = 4;
+
+        List<Process> processes = new ArrayList<Process>();
+        for (int i = 0; i < jvmCount; i++) {
+            List<String> command = new ArrayList<String>(Arrays.asList(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    CacheWriter.class.getName(), cacheDirectory.getPath()));
+            for (int j = 0; j < classesPerJvm; j++) {
+                command.add(classNames[(i * 2 + j) % classNames.length]);
+            }
+            processes.add(new ProcessBuilder(command).redirectErrorStream(true).start());
+        }
+        for (Process process : processes) {
+            assertEquals(0, process.waitFor());
+        }
+
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1);
+        Set<String> cachedClassNames = new HashSet<String>();
+        long expectedClassesLength = 0;
+        for (int i = 0; i < jvmCount * classesPerJvm; i++) {
+            String className = classNames[(i / classesPerJvm * 2 + i % classesPerJvm) % classNames.length];
+            if (cachedClassNames.add(className)) {
+                assertArrayEquals(CacheWriter.instrumentedBytesFor(className), classCache.getClassBytesFor(className));
+                expectedClassesLength += CacheWriter.instrumentedBytesFor(className).length;
+            }
+        }
+        assertEquals(expectedClassesLength, new File(cacheDirectory, ClassCache.CLASSES_FILE_NAME).length());
+    }
+
+    /**
+     * Run in a separate JVM by {@link #shouldLetSeveralJvmsWarmOneCacheDirectory()}; caches the named classes and lets
+     * the shutdown hook write them.
+     */
+    public static class CacheWriter {
+        public static void main(String[] args) {
+            ClassCache classCache = new ClassCache(args[0], 1);
+            for (int i = 1; i < args.length; i++) {
+                classCache.addClass(args[i], instrumentedBytesFor(args[i]));
+            }
+        }
+
+        static byte[] instrumentedBytesFor(String className) {
+            return ("instrumented " + className).getBytes();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private void truncate(File file, int byteCount) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(randomAccessFile.length() - byteCount);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
 
     @Test
     public void fixForCorberturaAndSonarCodeCoverage() throws InterruptedException {
@@ -116,7 +323,7 @@ public class ClassCacheTest {
 
         @Override
         public void run() {
-            classCache.saveAllClassesToCache(null, null);
+            classCache.saveAllClassesToCache();
             ready = true;
         }
     };
@@ -0,0 +1,53 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ClassLoaderPoolTest {
+    @Test
+    public void shouldShareOneClassLoaderPerConfiguration() throws Exception {
+        List<String> customClassNames = new ArrayList<String>(Arrays.asList("com.example.pool.Custom"));
+        RobolectricClassLoader classLoader = ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), customClassNames);
+
+        customClassNames.add("com.example.pool.Other");
+        assertSame(classLoader, ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), Arrays.asList("com.example.pool.Custom")));
+        assertNotSame(classLoader, ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), customClassNames));
+    }
+
+    @Test
+    public void shouldStopHandingOutALoaderForItsOldConfigurationOnceItInstrumentsAnotherClass() throws Exception {
+        ClassHandler classHandler = newClassHandler();
+        RobolectricClassLoader classLoader = ClassLoaderPool.getClassLoader(classHandler, null);
+
+        ClassLoaderPool.addCustomClass(classLoader, "com.example.pool.Added");
+
+        RobolectricClassLoader defaultLoader = ClassLoaderPool.getClassLoader(classHandler, null);
+        assertNotSame(classLoader, defaultLoader);
+        assertSame(defaultLoader, ClassLoaderPool.getClassLoader(classHandler, new ArrayList<String>()));
+        assertSame(classLoader, ClassLoaderPool.getClassLoader(classHandler, Arrays.asList("com.example.pool.Added")));
+    }
+
+    @Test
+    public void shouldTreatNoCustomClassesLikeAnEmptyList() throws Exception {
+        assertSame(ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), null),
+                ClassLoaderPool.getClassLoader(ShadowWrangler.getInstance(), new ArrayList<String>()));
+    }
+
+    private static ClassHandler newClassHandler() {
+        return (ClassHandler) Proxy.newProxyInstance(ClassHandler.class.getClassLoader(), new Class[]{ClassHandler.class},
+                new InvocationHandler() {
+                    @Override public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,74 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class DispatchHistogramTest {
+    @Before
+    public void setUp() throws Exception {
+        DispatchHistogram.clear();
+        DispatchHistogram.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DispatchHistogram.setEnabled(System.getProperty(DispatchHistogram.FILE_PROPERTY) != null);
+        DispatchHistogram.clear();
+    }
+
+    @Test
+    public void shouldCountShadowedAndUnshadowedCallsBusiestFirst() throws Exception {
+        DispatchHistogram.countsFor("android.view.View.getId()").countCall(true);
+        DispatchHistogram.countsFor("android.view.View.invalidate()").countCall(false);
+        DispatchHistogram.countsFor("android.view.View.invalidate()").countCall(false);
+        DispatchHistogram.countsFor("android.view.View.invalidate()").countCall(true);
+
+        List<DispatchHistogram.Counts> counts = DispatchHistogram.getCounts();
+        assertThat(counts.size(), equalTo(2));
+        assertThat(counts.get(0).getMethodDescription(), equalTo("android.view.View.invalidate()"));
+        assertThat(counts.get(0).getShadowed(), equalTo(1L));
+        assertThat(counts.get(0).getUnshadowed(), equalTo(2L));
+        assertThat(counts.get(1).getMethodDescription(), equalTo("android.view.View.getId()"));
+        assertThat(counts.get(1).getTotal(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldShareCountsForTheSameMethod() throws Exception {
+        assertThat(DispatchHistogram.countsFor("android.view.View.getId()"),
+                sameInstance(DispatchHistogram.countsFor("android.view.View.getId()")));
+    }
+
+    @Test
+    public void shouldCountCallsFromManyThreads() throws Exception {
+        final DispatchHistogram.Counts counts = DispatchHistogram.countsFor("android.view.View.getId()");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counts.countCall(true);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(counts.getShadowed(), equalTo(40000L));
+    }
+
+    @Test
+    public void shouldNotCountAnythingWhenDisabled() throws Exception {
+        DispatchHistogram.setEnabled(false);
+        assertThat(DispatchHistogram.countsFor("android.view.View.getId()"), nullValue());
+    }
+}
@@ -0,0 +1,121 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentedJarTest {
+    private File inputJar;
+    private File outputJar;
+
+    @Before
+    public void setUp() throws Exception {
+        inputJar = File.createTempFile("input", ".jar");
+        inputJar.deleteOnExit();
+        outputJar = File.createTempFile("instrumented", ".jar");
+        outputJar.deleteOnExit();
+
+        writeInputJar(Foo.class, ClassCacheTest.class);
+    }
+
+    @Test
+    public void shouldOnlyWriteClassesThatWouldBeInstrumented() throws Exception {
+        AndroidTranslator androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        assertEquals(1, InstrumentedJar.build(outputJar, Arrays.asList(inputJar), androidTranslator));
+
+        InstrumentedJar instrumentedJar = new InstrumentedJar(outputJar);
+        assertNotNull(instrumentedJar.getClassBytesFor(Foo.class.getName()));
+        assertNull(instrumentedJar.getClassBytesFor(ClassCacheTest.class.getName()));
+    }
+
+    @Test
+    public void shouldWriteInstrumentedBytecode() throws Exception {
+        AndroidTranslator androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        InstrumentedJar.build(outputJar, Arrays.asList(inputJar), androidTranslator);
+
+        byte[] classBytes = new InstrumentedJar(outputJar).getClassBytesFor(Foo.class.getName());
+        CtClass ctClass = new ClassPool(true).makeClass(new ByteArrayInputStream(classBytes));
+        assertNotNull(ctClass.getField(ShadowWrangler.SHADOW_FIELD_NAME));
+    }
+
+    @Test
+    public void shouldOnlyBeCompatibleWithTranslatorsThatInstrumentTheSameWay() throws Exception {
+        AndroidTranslator androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        InstrumentedJar.build(outputJar, Arrays.asList(inputJar), androidTranslator);
+
+        InstrumentedJar instrumentedJar = new InstrumentedJar(outputJar, classLoaderFor(inputJar));
+        assertEquals(androidTranslator.getInstrumentationFingerprint(), instrumentedJar.getFingerprint());
+        assertTrue(instrumentedJar.isCompatibleWith(new AndroidTranslator(ShadowWrangler.getInstance(), null)));
+
+        androidTranslator.addCustomShadowClass("com.example.CustomView");
+        assertFalse(instrumentedJar.isCompatibleWith(androidTranslator));
+    }
+
+    @Test
+    public void shouldNotBeCompatibleIfTheInputJarHasChanged() throws Exception {
+        AndroidTranslator androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        InstrumentedJar.build(outputJar, Arrays.asList(inputJar), androidTranslator);
+
+        writeInputJar(Foo.class);
+        InstrumentedJar instrumentedJar = new InstrumentedJar(outputJar, classLoaderFor(inputJar));
+        assertFalse(instrumentedJar.isCompatibleWith(androidTranslator));
+    }
+
+    @Test
+    public void shouldNotBeCompatibleIfTheInputJarIsNotOnTheClassPath() throws Exception {
+        AndroidTranslator androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), null);
+        InstrumentedJar.build(outputJar, Arrays.asList(inputJar), androidTranslator);
+
+        // test classes come from a directory, not from the jar the instrumented classes were built from
+        InstrumentedJar instrumentedJar = new InstrumentedJar(outputJar);
+        assertFalse(instrumentedJar.isCompatibleWith(androidTranslator));
+    }
+
+    private ClassLoader classLoaderFor(File jar) throws Exception {
+        return new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+    }
+
+    private void writeInputJar(Class<?>... classes) throws Exception {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(inputJar));
+        try {
+            for (Class<?> clazz : classes) {
+                addClass(out, clazz);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void addClass(JarOutputStream out, Class<?> clazz) throws Exception {
+        String entryName = clazz.getName().replace('.', '/') + ".class";
+        out.putNextEntry(new JarEntry(entryName));
+        InputStream in = getClass().getClassLoader().getResourceAsStream(entryName);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        out.closeEntry();
+    }
+}
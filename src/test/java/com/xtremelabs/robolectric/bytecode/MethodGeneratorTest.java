@@ -6,6 +6,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MethodGeneratorTest {
     private ClassPool classPool;
@@ -89,4 +90,53 @@ public class MethodGeneratorTest {
                 "if (x != null) return ((java.lang.Boolean) x).booleanValue();\n" +
                 "return super.equals($1);}\n", methodBody);
     }
+
+    @Test
+    public void whenUsingCallSites_shouldGenerateMethodBodyThatDispatchesThroughCallSiteField() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        String methodBody = new MethodGenerator(ctClass, true).generateMethodBody(
+                ctClass.getDeclaredMethod("substring", new CtClass[]{CtClass.intType}),
+                ctClass, Type.OBJECT, false, false);
+        assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite_0__ == null) __callSite_0__ = com.xtremelabs.robolectric.bytecode.RobolectricInternals.callSite(java.lang.String.class, \"substring\", new String[] {\"int\"});\n" +
+                "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
+                "  __callSite_0__, this, com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1));\n" +
+                "if (x != null) return ((java.lang.String) x);\n" +
+                "return null;\n" +
+                "}\n", methodBody);
+        assertEquals("com.xtremelabs.robolectric.bytecode.MethodCallSite", ctClass.getDeclaredField("__callSite_0__").getType().getName());
+    }
+
+    @Test
+    public void whenUsingCallSites_shouldPassParamsInAnArrayOnlyForMethodsWithMoreThanThree() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        MethodGenerator methodGenerator = new MethodGenerator(ctClass, true);
+        String fourParamBody = methodGenerator.generateMethodBody(
+                ctClass.getDeclaredMethod("regionMatches", new CtClass[]{CtClass.intType, ctClass, CtClass.intType, CtClass.intType}),
+                CtClass.booleanType, Type.BOOLEAN, false, false);
+        assertTrue(fourParamBody.contains("__callSite_0__, this, new Object[] {"));
+
+        String twoParamBody = methodGenerator.generateMethodBody(
+                ctClass.getDeclaredMethod("indexOf", new CtClass[]{CtClass.intType, CtClass.intType}),
+                CtClass.intType, Type.INT, false, false);
+        assertTrue(twoParamBody.contains("__callSite_1__, this, com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1), " +
+                "com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($2));"));
+    }
+
+    @Test
+    public void whenUsingCallSites_shouldShareEmptyParamArrayForNoArgMethods() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        MethodGenerator methodGenerator = new MethodGenerator(ctClass, true);
+        methodGenerator.generateMethodBody(ctClass.getDeclaredMethod("isEmpty"), CtClass.booleanType, Type.BOOLEAN, false, false);
+        String methodBody = methodGenerator.generateMethodBody(
+                ctClass.getDeclaredMethod("length"),
+                CtClass.intType, Type.INT, false, false);
+        assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__callSite_1__ == null) __callSite_1__ = com.xtremelabs.robolectric.bytecode.RobolectricInternals.callSite(java.lang.String.class, \"length\", new String[0]);\n" +
+                "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
+                "  __callSite_1__, this, com.xtremelabs.robolectric.bytecode.MethodCallSite.NO_PARAMS);\n" +
+                "if (x != null) return ((java.lang.Integer) x).intValue();\n" +
+                "return 0;\n" +
+                "}\n", methodBody);
+    }
 }
@@ -0,0 +1,116 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RunnerProfilerTest {
+    private File reportDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        RunnerProfiler.clearFinishedTests();
+        RunnerProfiler.setEnabled(true);
+        reportDirectory = File.createTempFile("robolectric-profile", "");
+        reportDirectory.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RunnerProfiler.setEnabled(System.getProperty(RunnerProfiler.REPORT_DIRECTORY_PROPERTY) != null);
+        RunnerProfiler.clearFinishedTests();
+        if (reportDirectory.exists()) {
+            for (File file : reportDirectory.listFiles()) {
+                file.delete();
+            }
+            reportDirectory.delete();
+        }
+    }
+
+    @Test
+    public void shouldReportPhasesAndCountsForEachTest() throws Exception {
+        RunnerProfiler.startTest("FooTest.shouldFoo");
+        long phaseStart = RunnerProfiler.startPhase();
+        phaseStart = RunnerProfiler.endPhase("setup", phaseStart);
+        RunnerProfiler.endPhase("test", phaseStart);
+        RunnerProfiler.classLoaded();
+        RunnerProfiler.classLoaded();
+        RunnerProfiler.classInstrumented();
+        RunnerProfiler.shadowMethodInvoked();
+        RunnerProfiler.finishTest();
+
+        RunnerProfiler.startTest("FooTest.shouldBar");
+        RunnerProfiler.endPhase("test", RunnerProfiler.startPhase());
+        RunnerProfiler.finishTest();
+
+        RunnerProfiler.writeReports(reportDirectory);
+
+        List<String> csv = readLines(new File(reportDirectory, "robolectric-profile.csv"));
+        assertThat(csv.size(), equalTo(3));
+        assertThat(csv.get(0), equalTo("test,setupNanos,testNanos,classesLoaded,classesInstrumented,shadowDispatches"));
+        assertTrue(csv.get(1), csv.get(1).startsWith("\"FooTest.shouldFoo\","));
+        assertTrue(csv.get(1), csv.get(1).endsWith(",2,1,1"));
+        assertTrue(csv.get(2), csv.get(2).matches("\"FooTest.shouldBar\",0,\\d+,0,0,0"));
+
+        List<String> json = readLines(new File(reportDirectory, "robolectric-profile.json"));
+        assertTrue(json.contains("  \"tests\": 2,"));
+        assertTrue(json.contains("  \"classesLoaded\": 2,"));
+        assertTrue(json.contains("  \"shadowDispatches\": 1"));
+    }
+
+    @Test
+    public void shouldKeepTestsRunningOnDifferentThreadsApart() throws Exception {
+        RunnerProfiler.startTest("FooTest.shouldFoo");
+        Thread otherTest = new Thread() {
+            @Override public void run() {
+                RunnerProfiler.startTest("BarTest.shouldBar");
+                RunnerProfiler.classLoaded();
+                RunnerProfiler.finishTest();
+            }
+        };
+        otherTest.start();
+        otherTest.join();
+        RunnerProfiler.shadowMethodInvoked();
+        RunnerProfiler.finishTest();
+
+        RunnerProfiler.writeReports(reportDirectory);
+
+        List<String> csv = readLines(new File(reportDirectory, "robolectric-profile.csv"));
+        assertThat(csv.get(1), equalTo("\"BarTest.shouldBar\",1,0,0"));
+        assertThat(csv.get(2), equalTo("\"FooTest.shouldFoo\",0,0,1"));
+    }
+
+    @Test
+    public void shouldNotRecordAnythingWhenDisabled() throws Exception {
+        RunnerProfiler.setEnabled(false);
+        RunnerProfiler.startTest("FooTest.shouldFoo");
+        RunnerProfiler.shadowMethodInvoked();
+        RunnerProfiler.finishTest();
+
+        assertTrue(RunnerProfiler.getFinishedTests().isEmpty());
+    }
+
+    private List<String> readLines(File file) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -7,6 +7,7 @@ import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.Instrument;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -15,6 +16,7 @@ import org.junit.runner.RunWith;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.not;
@@ -109,6 +111,59 @@ public class ShadowWranglerTest {
         assertThat(shadowOf(textFoo), instanceOf(ShadowTextFoo.class));
     }
 
+    @Test
+    public void shouldDispatchCallSitesWithUnwrappedParams() throws Throwable {
+        MethodCallSite findFooById = new MethodCallSite(Foo.class, "findFooById", new String[] {"int"});
+
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        assertNull(ShadowWrangler.getInstance().methodInvoked(findFooById, new Foo(name), (Object) 7));
+
+        Robolectric.bindShadowClass(ShadowFooWithFindById.class);
+        Foo foo = new Foo(name);
+        ShadowWrangler.getInstance().methodInvoked(findFooById, foo, (Object) 7);
+        assertEquals(7, ((ShadowFooWithFindById) Robolectric.shadowOf_(foo)).foundId);
+    }
+
+    @Test
+    public void shouldPickUpNewBindingsAfterMethodHasBeenInvoked() throws Exception {
+        Foo unshadowedFoo = new Foo(name);
+        assertNull(unshadowedFoo.getName());
+
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        assertSame(name, new Foo(name).getName());
+
+        Robolectric.bindShadowClass(WithToString.class);
+        assertNull(new Foo(name).getName());
+    }
+
+    @Test
+    public void shouldResolveShadowMethodsAgainstEachInstancesOwnShadow() throws Exception {
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        Foo fooWithShadowFoo = new Foo(name);
+        assertSame(name, fooWithShadowFoo.getName());
+
+        Robolectric.bindShadowClass(ShadowFoo_WithDefaultConstructorAndNoConstructorDelegate.class);
+        Foo fooWithoutGetName = new Foo(name);
+        assertNull(fooWithoutGetName.getName());
+        assertSame(name, fooWithShadowFoo.getName());
+    }
+
+    @Test
+    public void shouldKeepCustomBindingsForOtherClassesWhenDefaultShadowsAreBound() throws Exception {
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        Robolectric.bindDefaultShadowClasses();
+        assertSame(name, new Foo(name).getName());
+    }
+
+    @Test
+    public void shouldForgetCustomBindingsBeforeTheNextTest() throws Exception {
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        assertSame(name, new Foo(name).getName());
+
+        ShadowWrangler.getInstance().beforeTest();
+        assertNull(new Foo(name).getName());
+    }
+
     @Test
     public void testPrimitiveArrays() throws Exception {
         Class<?> objArrayClass = ShadowWrangler.loadClass("java.lang.Object[]", getClass().getClassLoader());
@@ -150,6 +205,35 @@ public class ShadowWranglerTest {
         assertThat(stackTrace, not(containsString(RobolectricInternals.class.getName() + ".")));
     }
     
+    @Test
+    public void shouldDispatchToEachThreadsOwnShadowsWhenStateIsPerThread() throws Exception {
+        RobolectricContext testContext = RobolectricContext.get();
+        boolean wasPerThread = RobolectricContext.isPerThread();
+        RobolectricContext.setPerThread(true);
+        try {
+            RobolectricContext.reset();
+            Robolectric.bindShadowClass(ShadowFoo.class);
+            assertSame(name, new Foo(name).getName());
+
+            final AtomicReference<String> nameInOtherThread = new AtomicReference<String>();
+            Thread otherThread = new Thread() {
+                @Override public void run() {
+                    RobolectricContext.reset();
+                    Robolectric.bindShadowClass(ShadowFooWithAnotherName.class);
+                    nameInOtherThread.set(new Foo(name).getName());
+                }
+            };
+            otherThread.start();
+            otherThread.join();
+
+            assertEquals("another name", nameInOtherThread.get());
+            assertSame(name, new Foo(name).getName());
+        } finally {
+            RobolectricContext.setPerThread(wasPerThread);
+            RobolectricContext.install(testContext);
+        }
+    }
+
     @Test(expected=RuntimeException.class)
     @EnableStrictI18n
     public void shouldThrowExceptionOnI18nStrictMode() {
@@ -214,6 +298,14 @@ public class ShadowWranglerTest {
     	}
     }
 
+    @Implements(Foo.class)
+    public static class ShadowFooWithAnotherName {
+        @Implementation
+        public String getName() {
+            return "another name";
+        }
+    }
+
     @Implements(Foo.class)
     public static class ShadowFooParent {
         @RealObject
@@ -225,6 +317,16 @@ public class ShadowWranglerTest {
         }
     }
 
+    @Implements(Foo.class)
+    public static class ShadowFooWithFindById {
+        int foundId;
+
+        @Implementation
+        public void findFooById(int id) {
+            foundId = id;
+        }
+    }
+
     @Implements(Foo.class)
     public static class ShadowFoo_WithDefaultConstructorAndNoConstructorDelegate {
     }
@@ -0,0 +1,90 @@
+package com.xtremelabs.robolectric.internal;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RobolectricContextTest {
+    private final RobolectricContext.Slot<String> slot = new RobolectricContext.Slot<String>() {
+        @Override protected String initialValue() {
+            return "initial";
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        RobolectricContext.setPerThread(false);
+        RobolectricContext.reset();
+    }
+
+    @Test
+    public void shouldStartSlotsAtTheirInitialValues() throws Exception {
+        assertEquals("initial", slot.get());
+        assertNull(new RobolectricContext.Slot<String>().get());
+    }
+
+    @Test
+    public void shouldGoBackToInitialValuesOnReset() throws Exception {
+        slot.set("changed");
+        assertEquals("changed", slot.get());
+
+        RobolectricContext.reset();
+        assertEquals("initial", slot.get());
+    }
+
+    @Test
+    public void shouldKeepNullValues() throws Exception {
+        slot.set(null);
+        assertNull(slot.get());
+    }
+
+    @Test
+    public void shouldShareOneContextBetweenThreadsByDefault() throws Exception {
+        slot.set("main");
+        assertEquals("main", runInNewThread(new ReadSlot()));
+    }
+
+    @Test
+    public void shouldShareTheTestsContextWithThreadsItStartsWhenPerThread() throws Exception {
+        RobolectricContext.setPerThread(true);
+        RobolectricContext.reset();
+        slot.set("main");
+
+        assertEquals("main", runInNewThread(new ReadSlot()));
+    }
+
+    @Test
+    public void shouldGiveATestInAnotherThreadItsOwnContextWhenPerThread() throws Exception {
+        RobolectricContext.setPerThread(true);
+        RobolectricContext.reset();
+        slot.set("main");
+
+        assertEquals("other", runInNewThread(new ReadSlot() {
+            @Override public void run() {
+                RobolectricContext.reset();
+                slot.set("other");
+                super.run();
+            }
+        }));
+        assertEquals("main", slot.get());
+    }
+
+    private String runInNewThread(ReadSlot readSlot) throws Exception {
+        Thread thread = new Thread(readSlot);
+        thread.start();
+        thread.join();
+        return readSlot.value.get();
+    }
+
+    private class ReadSlot implements Runnable {
+        final AtomicReference<String> value = new AtomicReference<String>();
+
+        @Override public void run() {
+            value.set(slot.get());
+        }
+    }
+}
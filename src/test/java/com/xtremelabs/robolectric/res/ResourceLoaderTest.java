@@ -35,6 +35,13 @@ public class ResourceLoaderTest {
         assertNotNull(node);
     }
 
+    @Test
+    public void shouldLoadLayoutsWhenTheyAreFirstAskedFor() throws Exception {
+        ResourceLoader resourceLoader = new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("assets"));
+        assertNotNull(resourceLoader.getLayoutViewNode("layout/main"));
+        assertEquals("Local Copy", resourceLoader.getStringValue(R.string.copy));
+    }
+
     @Test
     public void shouldLoadLocalResources() throws Exception {
         ResourceLoader resourceLoader = new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("assets"));
@@ -0,0 +1,99 @@
+package com.xtremelabs.robolectric.res;
+
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+
+import static com.xtremelabs.robolectric.Robolectric.DEFAULT_SDK_VERSION;
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(WithTestDefaultsRunner.class)
+public class ResourceSnapshotTest {
+    private File snapshotDir;
+    private String originalSnapshotDir;
+
+    @Before
+    public void setUp() throws Exception {
+        snapshotDir = File.createTempFile("resource-snapshots", "");
+        snapshotDir.delete();
+        originalSnapshotDir = System.getProperty(ResourceSnapshot.DIRECTORY_PROPERTY);
+        System.setProperty(ResourceSnapshot.DIRECTORY_PROPERTY, snapshotDir.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (originalSnapshotDir == null) {
+            System.clearProperty(ResourceSnapshot.DIRECTORY_PROPERTY);
+        } else {
+            System.setProperty(ResourceSnapshot.DIRECTORY_PROPERTY, originalSnapshotDir);
+        }
+    }
+
+    @Test
+    public void shouldSaveSnapshotWhenFirstLoadingResources() throws Exception {
+        newResourceLoader().getStringValue(R.string.hello);
+
+        assertEquals(1, snapshotDir.listFiles().length);
+    }
+
+    @Test
+    public void shouldRestoreTheSameResourcesFromSnapshot() throws Exception {
+        ResourceLoader parsedResourceLoader = newResourceLoader();
+        parsedResourceLoader.getStringValue(R.string.hello);
+        long snapshotModified = snapshotDir.listFiles()[0].lastModified();
+
+        ResourceLoader restoredResourceLoader = newResourceLoader();
+        assertEquals(parsedResourceLoader.getStringValue(R.string.hello), restoredResourceLoader.getStringValue(R.string.hello));
+        assertEquals(parsedResourceLoader.getPluralStringValue(R.plurals.beer, 0), restoredResourceLoader.getPluralStringValue(R.plurals.beer, 0));
+        assertArrayEquals(parsedResourceLoader.getStringArrayValue(R.array.greetings), restoredResourceLoader.getStringArrayValue(R.array.greetings));
+        assertEquals(parsedResourceLoader.getColorValue(R.color.foreground), restoredResourceLoader.getColorValue(R.color.foreground));
+        assertEquals(parsedResourceLoader.getDimenValue(R.dimen.test_dp_dimen), restoredResourceLoader.getDimenValue(R.dimen.test_dp_dimen), 0.0f);
+        assertEquals(parsedResourceLoader.getIntegerValue(R.integer.test_integer1), restoredResourceLoader.getIntegerValue(R.integer.test_integer1));
+        assertNotNull(restoredResourceLoader.getLayoutViewNode("layout/main"));
+        assertEquals(snapshotModified, snapshotDir.listFiles()[0].lastModified());
+    }
+
+    @Test
+    public void shouldChangeKeyWhenResourceFilesChange() throws Exception {
+        File resDir = File.createTempFile("res", "");
+        resDir.delete();
+        File valuesDir = new File(resDir, "values");
+        valuesDir.mkdirs();
+        File stringsFile = writeFile(new File(valuesDir, "strings.xml"), "<resources/>");
+
+        String key = ResourceSnapshot.keyFor(Arrays.asList(resDir));
+        assertEquals(key, ResourceSnapshot.keyFor(Arrays.asList(resDir)));
+
+        stringsFile.setLastModified(stringsFile.lastModified() - 10000);
+        String keyAfterTouch = ResourceSnapshot.keyFor(Arrays.asList(resDir));
+        assertFalse(key.equals(keyAfterTouch));
+
+        writeFile(new File(valuesDir, "colors.xml"), "<resources/>");
+        assertFalse(keyAfterTouch.equals(ResourceSnapshot.keyFor(Arrays.asList(resDir))));
+    }
+
+    private ResourceLoader newResourceLoader() throws Exception {
+        return new ResourceLoader(DEFAULT_SDK_VERSION, R.class, resourceFile("res"), resourceFile("assets"));
+    }
+
+    private File writeFile(File file, String contents) throws Exception {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
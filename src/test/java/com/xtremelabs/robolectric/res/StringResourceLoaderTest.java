@@ -6,13 +6,15 @@ import org.junit.Test;
 
 import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class StringResourceLoaderTest {
+    private ResourceExtractor resourceExtractor;
     private StringResourceLoader stringResourceLoader;
 
     @Before public void setUp() throws Exception {
-        ResourceExtractor resourceExtractor = new ResourceExtractor();
+        resourceExtractor = new ResourceExtractor();
         resourceExtractor.addLocalRClass(R.class);
         stringResourceLoader = new StringResourceLoader(resourceExtractor);
         new DocumentLoader(stringResourceLoader).loadResourceXmlDir(resourceFile("res", "values"));
@@ -33,4 +35,14 @@ public class StringResourceLoaderTest {
     public void shouldResolveStringReferences() throws Exception {
         assertThat(stringResourceLoader.getValue(R.string.greeting), equalTo("Howdy"));
     }
+
+    @Test
+    public void shouldFindStringsLoadedAfterTheFirstLookup() throws Exception {
+        StringResourceLoader lateStringResourceLoader = new StringResourceLoader(resourceExtractor);
+        assertThat(lateStringResourceLoader.getValue(R.string.hello), nullValue());
+
+        new DocumentLoader(lateStringResourceLoader).loadResourceXmlDir(resourceFile("res", "values"));
+        assertThat(lateStringResourceLoader.getValue(R.string.hello), equalTo("Hello"));
+        assertThat(lateStringResourceLoader.getValue("string/hello", false), equalTo("Hello"));
+    }
 }
@@ -152,4 +152,33 @@ public class TestAttributeSetTest {
         int nonExistantResource = 12345;
         assertThat(testAttributeSet.getAttributeValue(nonExistantResource), nullValue());
     }
+
+    @Test
+    public void resolveValues_shouldNotChangeWhatIsReadBack() throws Exception {
+        attributes.put("android:id", "@+id/text1");
+        attributes.put("message", "@string/howdy");
+        attributes.put("itemType", "string");
+        attributes.put("xxx:isSugary", "true");
+
+        AttrResourceLoader attrResourceLoader = new AttrResourceLoader(resourceExtractor);
+        new DocumentLoader(attrResourceLoader).loadResourceXmlDir(resourceFile("res", "values"));
+        TestAttributeSet testAttributeSet = new TestAttributeSet(attributes, resourceExtractor, attrResourceLoader, CustomView.class, false)
+                .resolveValues();
+
+        assertThat(testAttributeSet.getAttributeResourceValue("android", "id", 0), equalTo(R.id.text1));
+        assertThat(testAttributeSet.getAttributeResourceValue("com.some.namespace", "message", 0), equalTo(R.string.howdy));
+        assertThat(testAttributeSet.getAttributeResourceValue("android", "message", -1), equalTo(-1));
+        assertThat(testAttributeSet.getAttributeIntValue("some namespace", "itemType", 0), equalTo(1));
+        assertThat(testAttributeSet.getAttributeBooleanValue("com.some.namespace", "isSugary", false), equalTo(true));
+        assertThat(testAttributeSet.getAttributeValue("com.some.namespace", "missing"), nullValue());
+    }
+
+    @Test
+    public void put_shouldDiscardResolvedValues() throws Exception {
+        attributes.put("message", "@string/howdy");
+        TestAttributeSet testAttributeSet = new TestAttributeSet(attributes, resourceExtractor, null, null, false).resolveValues();
+
+        testAttributeSet.put("message", "@string/copy");
+        assertThat(testAttributeSet.getAttributeResourceValue("com.some.namespace", "message", 0), equalTo(R.string.copy));
+    }
 }
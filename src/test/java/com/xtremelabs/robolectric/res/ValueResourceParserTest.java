@@ -0,0 +1,109 @@
+package com.xtremelabs.robolectric.res;
+
+import com.xtremelabs.robolectric.R;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ValueResourceParserTest {
+    private ResourceExtractor resourceExtractor;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceExtractor = new ResourceExtractor();
+        resourceExtractor.addLocalRClass(R.class);
+    }
+
+    @Test
+    public void shouldKeepTextOfNestedElements() throws Exception {
+        ValueResourceParser.ParsedValueFile strings = ValueResourceParser.parse(resourceFile("res", "values", "strings.xml"), false);
+        StringResourceLoader stringResourceLoader = new StringResourceLoader(resourceExtractor);
+        new ValueResourceParser(stringResourceLoader).loadParsedValueFile(strings);
+
+        assertThat(stringResourceLoader.getValue(R.string.some_html), equalTo("Hello, world"));
+        assertThat(stringResourceLoader.getValue(R.string.greeting), equalTo("Howdy"));
+    }
+
+    @Test
+    public void shouldLoadTheSameValuesAsTheDocumentLoader() throws Exception {
+        StringResourceLoader streamedStrings = new StringResourceLoader(resourceExtractor);
+        PluralResourceLoader streamedPlurals = new PluralResourceLoader(resourceExtractor, streamedStrings);
+        StringArrayResourceLoader streamedStringArrays = new StringArrayResourceLoader(resourceExtractor, streamedStrings);
+        ColorResourceLoader streamedColors = new ColorResourceLoader(resourceExtractor);
+        IntegerResourceLoader streamedIntegers = new IntegerResourceLoader(resourceExtractor);
+        AttrResourceLoader streamedAttrs = new AttrResourceLoader(resourceExtractor);
+        ValueResourceParser.DeferredLoader deferredPlurals = new ValueResourceParser.DeferredLoader(streamedPlurals);
+        ValueResourceParser.DeferredLoader deferredStringArrays = new ValueResourceParser.DeferredLoader(streamedStringArrays);
+        new ValueResourceParser(streamedStrings, deferredPlurals, deferredStringArrays, streamedColors, streamedIntegers, streamedAttrs)
+                .loadResourceXmlDirs(false, resourceFile("res", "values"));
+        deferredPlurals.loadDeferred();
+        deferredStringArrays.loadDeferred();
+
+        StringResourceLoader parsedStrings = new StringResourceLoader(resourceExtractor);
+        PluralResourceLoader parsedPlurals = new PluralResourceLoader(resourceExtractor, parsedStrings);
+        StringArrayResourceLoader parsedStringArrays = new StringArrayResourceLoader(resourceExtractor, parsedStrings);
+        ColorResourceLoader parsedColors = new ColorResourceLoader(resourceExtractor);
+        IntegerResourceLoader parsedIntegers = new IntegerResourceLoader(resourceExtractor);
+        AttrResourceLoader parsedAttrs = new AttrResourceLoader(resourceExtractor);
+        new DocumentLoader(parsedStrings).loadResourceXmlDir(resourceFile("res", "values"));
+        new DocumentLoader(parsedPlurals, parsedStringArrays, parsedColors, parsedIntegers, parsedAttrs).loadResourceXmlDir(resourceFile("res", "values"));
+
+        assertEquals(parsedPlurals.getValue(R.plurals.beer, 0), streamedPlurals.getValue(R.plurals.beer, 0));
+        assertEquals(parsedPlurals.getValue(R.plurals.beer, 2), streamedPlurals.getValue(R.plurals.beer, 2));
+        assertArrayEquals(parsedStringArrays.getArrayValue(R.array.greetings), streamedStringArrays.getArrayValue(R.array.greetings));
+        assertEquals(parsedColors.getValue(R.color.foreground), streamedColors.getValue(R.color.foreground));
+        assertEquals(parsedIntegers.getValue(R.integer.test_large_hex), streamedIntegers.getValue(R.integer.test_large_hex));
+        assertEquals(parsedAttrs.classAttrEnumToValue, streamedAttrs.classAttrEnumToValue);
+        assertEquals(parsedAttrs.knownClassAttrs, streamedAttrs.knownClassAttrs);
+    }
+
+    @Test
+    public void shouldFeedDomNodesToLoadersThatStillOverrideProcessNode() throws Exception {
+        final List<String> names = new ArrayList<String>();
+        XpathResourceXmlLoader legacyLoader = new XpathResourceXmlLoader(resourceExtractor, "/resources/string") {
+            @Override protected void processNode(Node node, String name, boolean isSystem) {
+                names.add(name + "=" + node.getTextContent());
+            }
+        };
+
+        new ValueResourceParser(legacyLoader).loadParsedValueFile(ValueResourceParser.parse(resourceFile("res", "values", "strings.xml"), false));
+        assertTrue(names.contains("greeting=@string/howdy"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRefuseToConstructAnXpathLoaderThatOverridesNeitherProcessMethod() throws Exception {
+        new XpathResourceXmlLoader(resourceExtractor, "/resources/string") {
+        };
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRefuseToConstructAnXTagLoaderThatOverridesNeitherProcessMethod() throws Exception {
+        new XTagXmlResourceLoader(resourceExtractor, "string") {
+        };
+    }
+
+    @Test
+    public void shouldEvaluateExpressionsOtherThanRootAndElementNamesAgainstADom() throws Exception {
+        final List<String> names = new ArrayList<String>();
+        XpathResourceXmlLoader loader = new XpathResourceXmlLoader(resourceExtractor, "/resources/string[@name='greeting']") {
+            @Override protected void processElement(ValueElement element, String name, boolean isSystem) {
+                names.add(name);
+            }
+        };
+
+        new DocumentLoader(loader).loadResourceXmlDir(resourceFile("res", "values"));
+        new ValueResourceParser(loader).loadResourceXmlDirs(false, resourceFile("res", "values"));
+        assertEquals(Arrays.asList("greeting", "greeting"), names);
+    }
+}
@@ -165,6 +165,27 @@ public class ViewLoaderTest {
         assertThat(overrideIncludeView.findViewById(R.id.snippet_text).getVisibility(), is(View.INVISIBLE));
     }
 
+    @Test
+    public void includeShouldNotChangeTheIncludedLayout() throws Exception {
+        viewLoader.inflateView(context, "layout/media");
+        viewLoader.inflateView(context, "layout/override_include");
+
+        View snippet = viewLoader.inflateView(context, "layout/snippet");
+        assertThat(snippet.getId(), equalTo(R.id.snippet_text));
+        assertThat(snippet.getVisibility(), is(View.GONE));
+    }
+
+    @Test
+    public void shouldInflateNewViewsEachTime() throws Exception {
+        ViewGroup first = (ViewGroup) viewLoader.inflateView(context, "layout/media");
+        ViewGroup second = (ViewGroup) viewLoader.inflateView(context, "layout/media");
+
+        assertNotSame(first, second);
+        assertNotSame(first.findViewById(R.id.title), second.findViewById(R.id.title));
+        assertInstanceOf(TextView.class, second.findViewById(R.id.include_id));
+        assertThat(second.getChildCount(), equalTo(first.getChildCount()));
+    }
+
     @Test
     public void shouldNotCountRequestFocusElementAsChild() throws Exception {
         ViewGroup viewGroup = (ViewGroup) viewLoader.inflateView(context, "layout/request_focus");
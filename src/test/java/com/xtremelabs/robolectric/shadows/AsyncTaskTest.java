@@ -1,16 +1,21 @@
 package com.xtremelabs.robolectric.shadows;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import android.app.Application;
 import android.os.AsyncTask;
 
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
 import com.xtremelabs.robolectric.util.Join;
+import com.xtremelabs.robolectric.util.Scheduler;
 import com.xtremelabs.robolectric.util.Transcript;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -120,6 +125,44 @@ public class AsyncTaskTest {
         assertThat(asyncTask.getStatus(), is(AsyncTask.Status.FINISHED));
     }
 
+    @Test
+    public void shouldRunDoInBackgroundOnSharedWorkerThreadsWhenBackgroundThreadsAreConfigured() throws Exception {
+        Scheduler firstScheduler = useApplicationWithBackgroundThreads();
+        Scheduler secondScheduler = useApplicationWithBackgroundThreads();
+        assertNotNull(secondScheduler.getExecutor());
+        assertSame(firstScheduler.getExecutor(), secondScheduler.getExecutor());
+
+        final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+        AsyncTask<String, String, String> asyncTask = new MyAsyncTask() {
+            @Override protected String doInBackground(String... strings) {
+                threadNames.add(Thread.currentThread().getName());
+                return super.doInBackground(strings);
+            }
+        };
+
+        asyncTask.execute("a");
+        transcript.assertEventsSoFar("onPreExecute");
+
+        Robolectric.runBackgroundTasks();
+        transcript.assertEventsSoFar("doInBackground a");
+        assertThat(threadNames.size(), is(1));
+        assertTrue(threadNames.get(0), threadNames.get(0).startsWith("robolectric-worker-"));
+
+        Robolectric.runUiThreadTasks();
+        transcript.assertEventsSoFar("onPostExecute c");
+    }
+
+    private Scheduler useApplicationWithBackgroundThreads() {
+        System.setProperty(ShadowApplication.BACKGROUND_THREADS_PROPERTY, "2");
+        try {
+            Robolectric.application = new Application();
+        } finally {
+            System.clearProperty(ShadowApplication.BACKGROUND_THREADS_PROPERTY);
+        }
+        Robolectric.getBackgroundScheduler().pause();
+        return Robolectric.getBackgroundScheduler();
+    }
+
     private class MyAsyncTask extends AsyncTask<String, String, String> {
         @Override protected void onPreExecute() {
             transcript.add("onPreExecute");
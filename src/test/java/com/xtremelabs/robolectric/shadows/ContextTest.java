@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import com.xtremelabs.robolectric.R;
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import com.xtremelabs.robolectric.tester.android.util.TestAttributeSet;
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.core.IsEqual;
@@ -20,6 +21,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
@@ -272,4 +274,38 @@ public class ContextTest {
         assertThat(typedArray.getString(R.styleable.HeaderBar_textStyle2), equalTo("one"));
         assertThat(typedArray.getString(R.styleable.HeaderBar_textStyle3), equalTo("two"));
     }
+
+    @Test
+    public void shouldKeepEachTestsFilesApartWhenStateIsPerThread() throws Exception {
+        final File file = new File(context.getFilesDir(), "test.txt");
+        assertTrue(file.createNewFile());
+
+        RobolectricContext testContext = RobolectricContext.get();
+        RobolectricContext.setPerThread(true);
+        try {
+            RobolectricContext.install(testContext);
+            final AtomicReference<File> otherTestsFile = new AtomicReference<File>();
+            Thread otherTest = new Thread() {
+                @Override public void run() {
+                    RobolectricContext.reset();
+                    File otherFile = new File(ShadowContext.getFilesDirectory(), "test.txt");
+                    try {
+                        otherFile.createNewFile();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    otherTestsFile.set(otherFile);
+                    ShadowContext.clearFilesAndCache();
+                }
+            };
+            otherTest.start();
+            otherTest.join();
+
+            assertThat(otherTestsFile.get().getParentFile(), not(equalTo(context.getFilesDir())));
+            assertFalse(otherTestsFile.get().exists());
+            assertTrue(file.exists());
+        } finally {
+            RobolectricContext.setPerThread(false);
+        }
+    }
 }
@@ -4,6 +4,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.util.PreparedStatementCache;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +17,7 @@ import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -475,6 +477,33 @@ public abstract class DatabaseTestBase {
         assertThat(key2, not(equalTo(key)));
     }
 
+    @Test
+    public void testRepeatedInsertsShareOnePreparedStatement() throws Exception {
+        int cachedStatementCount = shDatabase.getStatementCache().size();
+        for (int i = 0; i < 10; i++) {
+            ContentValues values = new ContentValues();
+            values.put("name", "Chuck " + i);
+            database.insert("table_name", null, values);
+        }
+
+        assertThat(shDatabase.getStatementCache().size(), equalTo(cachedStatementCount + 1));
+        Cursor cursor = database.query("table_name", new String[]{"name"}, null, null, null, null, "id");
+        assertThat(cursor.getCount(), equalTo(10));
+        cursor.moveToLast();
+        assertThat(cursor.getString(0), equalTo("Chuck 9"));
+    }
+
+    @Test
+    public void testCloseEmptiesStatementCache() throws Exception {
+        database.delete("table_name", null, null);
+        PreparedStatementCache statementCache = shDatabase.getStatementCache();
+        assertThat(statementCache.size(), not(equalTo(0)));
+
+        database.close();
+
+        assertThat(statementCache.size(), equalTo(0));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testClose() throws Exception {
         database.close();
@@ -482,6 +511,180 @@ public abstract class DatabaseTestBase {
         database.execSQL("INSERT INTO table_name (id, name) VALUES(1234, 'Chuck');");
     }
 
+    @Test
+    public void testOpenDatabaseFromTemplateStartsFromAFreshCopy() throws Exception {
+        String templateName = getClass().getName() + "/rawtable";
+        shDatabase.saveTemplate(templateName);
+        database.close();
+
+        database = ShadowSQLiteDatabase.openDatabaseFromTemplate(templateName);
+        assertThat(countRows("rawtable"), equalTo(2));
+        ContentValues values = new ContentValues();
+        values.put("first_column", "column_value3");
+        assertThat(database.insert("rawtable", null, values), equalTo(3L));
+        assertThat(countRows("rawtable"), equalTo(3));
+        database.close();
+
+        database = ShadowSQLiteDatabase.openDatabaseFromTemplate(templateName);
+        assertThat(countRows("rawtable"), equalTo(2));
+        assertThat(countRows("exectable"), equalTo(0));
+    }
+
+    @Test
+    public void testOpenDatabaseFromMissingTemplate() throws Exception {
+        assertNull(ShadowSQLiteDatabase.openDatabaseFromTemplate(getClass().getName() + "/no such template"));
+    }
+
+    @Test
+    public void testDatabasesOpenedOnTheSamePathShareTheirContents() throws Exception {
+        SQLiteDatabase samePath = SQLiteDatabase.openDatabase("path", null, 0);
+        assertThat(countRows(samePath, "rawtable"), equalTo(2));
+
+        samePath.execSQL("INSERT INTO rawtable (first_column) VALUES ('column_value3');");
+        assertThat(countRows("rawtable"), equalTo(3));
+
+        samePath.close();
+        assertThat(samePath.isOpen(), equalTo(false));
+        assertThat(database.isOpen(), equalTo(true));
+        assertThat(countRows("rawtable"), equalTo(3));
+    }
+
+    @Test
+    public void testDatabasesOpenedOnDifferentPathsAreSeparate() throws Exception {
+        SQLiteDatabase otherPath = SQLiteDatabase.openDatabase("other path", null, 0);
+        otherPath.execSQL("CREATE TABLE rawtable (first_column VARCHAR(255));");
+        assertThat(countRows(otherPath, "rawtable"), equalTo(0));
+        assertThat(countRows("rawtable"), equalTo(2));
+        assertThat(otherPath.getPath(), equalTo("other path"));
+
+        otherPath.close();
+        assertThat(database.isOpen(), equalTo(true));
+    }
+
+    @Test
+    public void testTransactionHoldsOffWritesFromOtherThreads() throws Exception {
+        Thread writer = startWriterThread();
+        writer.join(5000);
+        assertThat(writer.isAlive(), equalTo(false));
+
+        database.beginTransaction();
+        writer = startWriterThread();
+        waitForAThreadWaitingForTheLock();
+        assertThat(writer.isAlive(), equalTo(true));
+        assertThat(countRows("rawtable"), equalTo(3));
+
+        database.setTransactionSuccessful();
+        database.endTransaction();
+        writer.join(5000);
+        assertThat(writer.isAlive(), equalTo(false));
+        assertThat(countRows("rawtable"), equalTo(4));
+    }
+
+    @Test
+    public void testTransactionDoesNotHoldOffWritesFromOtherThreadsWithLockingDisabled() throws Exception {
+        database.setLockingEnabled(false);
+        database.beginTransaction();
+        Thread writer = startWriterThread();
+        writer.join(5000);
+        assertThat(writer.isAlive(), equalTo(false));
+
+        database.setTransactionSuccessful();
+        database.endTransaction();
+        assertThat(countRows("rawtable"), equalTo(3));
+    }
+
+    @Test
+    public void testCursorKeepsItsRowsWhenTheTableChangesWhileIterating() throws Exception {
+        int rowCount = insertNamedRows(ShadowSQLiteCursor.WINDOW_SIZE * 2 + 10);
+        Cursor cursor = database.query("table_name", new String[]{"id", "name"}, null, null, null, null, "id");
+
+        int rowsSeen = 0;
+        while (cursor.moveToNext()) {
+            long id = cursor.getLong(0);
+            assertThat(cursor.getString(1), equalTo("row " + rowsSeen));
+            if (rowsSeen == 0) {
+                database.delete("table_name", "id > ?", new String[]{String.valueOf(id + ShadowSQLiteCursor.WINDOW_SIZE)});
+            }
+            ContentValues values = new ContentValues();
+            values.put("name", "updated");
+            database.update("table_name", values, "id = ?", new String[]{String.valueOf(id)});
+            rowsSeen++;
+        }
+
+        assertThat(rowsSeen, equalTo(rowCount));
+        assertThat(cursor.getCount(), equalTo(rowCount));
+        assertThat(countRows("table_name"), equalTo(ShadowSQLiteCursor.WINDOW_SIZE + 1));
+        cursor.close();
+    }
+
+    @Test
+    public void testCursorKeepsItsRowsWhenAnotherThreadChangesTheTable() throws Exception {
+        int rowCount = insertNamedRows(ShadowSQLiteCursor.WINDOW_SIZE * 2 + 10);
+        Cursor cursor = database.query("table_name", new String[]{"id", "name"}, null, null, null, null, "id");
+        assertThat(cursor.moveToPosition(ShadowSQLiteCursor.WINDOW_SIZE - 1), equalTo(true));
+
+        Thread writer = new Thread() {
+            @Override public void run() {
+                database.delete("table_name", null, null);
+            }
+        };
+        writer.start();
+        writer.join(5000);
+        assertThat(writer.isAlive(), equalTo(false));
+        assertThat(countRows("table_name"), equalTo(0));
+
+        int rowsSeen = ShadowSQLiteCursor.WINDOW_SIZE;
+        while (cursor.moveToNext()) {
+            assertThat(cursor.getString(1), equalTo("row " + rowsSeen));
+            rowsSeen++;
+        }
+        assertThat(rowsSeen, equalTo(rowCount));
+        cursor.close();
+    }
+
+    private int insertNamedRows(int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            ContentValues values = new ContentValues();
+            values.put("name", "row " + i);
+            database.insert("table_name", null, values);
+        }
+        return rowCount;
+    }
+
+    private void waitForAThreadWaitingForTheLock() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!shDatabase.hasThreadsWaitingForLock()) {
+            assertThat(System.currentTimeMillis() < deadline, equalTo(true));
+            Thread.sleep(1);
+        }
+    }
+
+    private Thread startWriterThread() {
+        Thread writer = new Thread() {
+            @Override public void run() {
+                ContentValues values = new ContentValues();
+                values.put("first_column", "written in the background");
+                database.insert("rawtable", null, values);
+            }
+        };
+        writer.start();
+        return writer;
+    }
+
+    private int countRows(String table) {
+        return countRows(database, table);
+    }
+
+    protected int countRows(SQLiteDatabase database, String table) {
+        Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM " + table, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Test
     public void testIsOpen() throws Exception {
         assertThat(database.isOpen(), equalTo(true));
@@ -37,9 +37,9 @@ public class DrawableTest {
     public void reset__shouldClearStaticState() throws Exception {
         String src = "source1";
         ShadowDrawable.addCorruptStreamSource(src);
-        assertTrue(ShadowDrawable.corruptStreamSources.contains(src));
+        assertTrue(ShadowDrawable.corruptStreamSources.get().contains(src));
         ShadowDrawable.reset();
-        assertFalse(ShadowDrawable.corruptStreamSources.contains(src));
+        assertFalse(ShadowDrawable.corruptStreamSources.get().contains(src));
     }
 
     @Test
@@ -29,6 +29,7 @@ import android.widget.ArrayAdapter;
 import android.widget.BaseAdapter;
 import android.widget.LinearLayout;
 import android.widget.ListView;
+import android.widget.TextView;
 
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
 import com.xtremelabs.robolectric.util.Transcript;
@@ -470,6 +471,66 @@ public class ListViewTest {
         assertFalse(listView.getCheckedItemPositions().get(checkedItemPosition));
     }
 
+    @Test
+    public void withAMaterializedWindow_shouldOnlyGetViewsForItemsInTheWindow() throws Exception {
+        RecyclingAdapter adapter = new RecyclingAdapter(10000);
+        shadowOf(listView).setMaterializedWindowSize(5);
+        listView.setAdapter(adapter);
+        ShadowHandler.idleMainLooper();
+
+        assertThat(listView.getChildCount(), equalTo(5));
+        assertThat(listView.getFirstVisiblePosition(), equalTo(0));
+        assertThat(listView.getLastVisiblePosition(), equalTo(4));
+        assertThat(adapter.createdViewCount, equalTo(5));
+    }
+
+    @Test
+    public void scrollWindowTo_shouldReuseViewsThatLeaveTheWindow() throws Exception {
+        RecyclingAdapter adapter = new RecyclingAdapter(10000);
+        shadowOf(listView).setMaterializedWindowSize(5);
+        listView.setAdapter(adapter);
+        ShadowHandler.idleMainLooper();
+
+        shadowOf(listView).scrollWindowTo(100);
+
+        assertThat(listView.getFirstVisiblePosition(), equalTo(100));
+        assertThat(((TextView) listView.getChildAt(0)).getText().toString(), equalTo("Item 100"));
+        assertThat(((TextView) listView.getChildAt(4)).getText().toString(), equalTo("Item 104"));
+        assertThat(adapter.createdViewCount, equalTo(5));
+    }
+
+    @Test
+    public void scrollWindowTo_shouldStopAtTheEndOfTheList() throws Exception {
+        shadowOf(listView).setMaterializedWindowSize(5);
+        listView.setAdapter(new RecyclingAdapter(10000));
+        ShadowHandler.idleMainLooper();
+
+        shadowOf(listView).scrollWindowTo(9999);
+        assertThat(listView.getFirstVisiblePosition(), equalTo(9995));
+        assertThat(listView.getLastVisiblePosition(), equalTo(9999));
+
+        shadowOf(listView).scrollWindowBy(-10000);
+        assertThat(listView.getFirstVisiblePosition(), equalTo(0));
+    }
+
+    @Test
+    public void withAMaterializedWindow_shouldReportAdapterPositions() throws Exception {
+        shadowOf(listView).setMaterializedWindowSize(5);
+        listView.setAdapter(new RecyclingAdapter(10000));
+        ShadowHandler.idleMainLooper();
+        shadowOf(listView).scrollWindowTo(50);
+        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                transcript.add("clicked on " + ((TextView) view).getText() + " at " + position);
+            }
+        });
+
+        assertThat(listView.getPositionForView(listView.getChildAt(2)), equalTo(52));
+        shadowOf(listView).clickFirstItemContainingText("Item 53");
+        transcript.assertEventsSoFar("clicked on Item 53 at 53");
+    }
+
     private ListAdapterBuilder prepareListAdapter() {
         return new ListAdapterBuilder();
     }
@@ -551,6 +612,41 @@ public class ListViewTest {
         }
     }
 
+    private static class RecyclingAdapter extends BaseAdapter {
+        private final int count;
+        int createdViewCount;
+
+        RecyclingAdapter(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView textView = (TextView) convertView;
+            if (textView == null) {
+                textView = new TextView(null);
+                createdViewCount++;
+            }
+            textView.setText("Item " + position);
+            return textView;
+        }
+    }
+
     private class TranscriptAdapter extends BaseAdapter {
         @Override
         public int getCount() {
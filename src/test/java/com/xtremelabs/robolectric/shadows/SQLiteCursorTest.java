@@ -324,6 +324,49 @@ public class SQLiteCursorTest {
         assertThat(cursor.isNull(5), equalTo(true));
     }
 
+    @Test
+    public void testGetStringOfNumbers() throws Exception {
+        cursor.moveToFirst();
+
+        assertThat(cursor.getString(0), equalTo("1234"));
+        assertThat(cursor.getString(4), equalTo("3.14159"));
+    }
+
+    @Test
+    public void testMovingThroughMoreRowsThanOneWindowHolds() throws Exception {
+        int rowCount = ShadowSQLiteCursor.WINDOW_SIZE * 2 + 10;
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("DELETE FROM table_name;");
+        for (int i = 0; i < rowCount; i++) {
+            statement.executeUpdate("INSERT INTO table_name (id, name, long_value) VALUES(" + i + ", 'name " + i + "', " + (i * 10L) + ");");
+        }
+        setupCursor();
+
+        int position = 0;
+        while (cursor.moveToNext()) {
+            assertThat(cursor.getInt(0), equalTo(position));
+            assertThat(cursor.getString(1), equalTo("name " + position));
+            position++;
+        }
+        assertThat(position, equalTo(rowCount));
+        assertThat(cursor.getCount(), equalTo(rowCount));
+
+        assertThat(cursor.moveToPosition(ShadowSQLiteCursor.WINDOW_SIZE + 3), equalTo(true));
+        assertThat(cursor.getLong(2), equalTo((ShadowSQLiteCursor.WINDOW_SIZE + 3) * 10L));
+        assertThat(cursor.moveToLast(), equalTo(true));
+        assertThat(cursor.getInt(0), equalTo(rowCount - 1));
+        assertThat(cursor.moveToPosition(rowCount), equalTo(false));
+    }
+
+    @Test
+    public void testMoveToPositionBeforeReadingEarlierRows() throws Exception {
+        assertThat(cursor.moveToPosition(2), equalTo(true));
+        assertThat(cursor.getString(1), equalTo("Chris"));
+        assertThat(cursor.moveToPosition(0), equalTo(true));
+        assertThat(cursor.getString(1), equalTo("Chuck"));
+        assertThat(cursor.getCount(), equalTo(3));
+    }
+
     private void addPeople() throws Exception {
         String[] inserts = {
                 "INSERT INTO table_name (id, name, long_value, float_value, double_value) VALUES(1234, 'Chuck', 3463, 1.5, 3.14159);",
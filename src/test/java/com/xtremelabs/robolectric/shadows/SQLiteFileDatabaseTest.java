@@ -0,0 +1,78 @@
+package com.xtremelabs.robolectric.shadows;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import com.xtremelabs.robolectric.util.DatabaseConfig;
+import com.xtremelabs.robolectric.util.SQLiteFileMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static com.xtremelabs.robolectric.Robolectric.shadowOf;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@DatabaseConfig.UsingDatabaseMap(SQLiteFileMap.class)
+@RunWith(WithTestDefaultsRunner.class)
+public class SQLiteFileDatabaseTest extends DatabaseTestBase {
+
+    @Test
+    public void shouldKeepTheDatabaseInTheDatabaseDirectory() throws Exception {
+        assertThat(new File(ShadowContext.DATABASE_DIR, "path").exists(), equalTo(true));
+
+        SQLiteDatabase samePath = SQLiteDatabase.openDatabase(new File(ShadowContext.DATABASE_DIR, "path").getAbsolutePath(), null, 0);
+        assertThat(shadowOf(samePath).getConnection(), equalTo(shDatabase.getConnection()));
+        samePath.close();
+    }
+
+    @Test
+    public void shouldKeepTheVersionInTheFile() throws Exception {
+        database.setVersion(3);
+        database.close();
+
+        database = SQLiteDatabase.openDatabase("path", null, 0);
+        assertThat(database.getVersion(), equalTo(3));
+        assertThat(countRows(database, "rawtable"), equalTo(2));
+    }
+
+    @Test
+    public void shouldStartFromACopyOfAFixture() throws Exception {
+        File fixture = createFixture();
+        ShadowSQLiteDatabase.setFixture("fixture.db", fixture);
+
+        SQLiteDatabase fixtureDatabase = SQLiteDatabase.openDatabase("fixture.db", null, 0);
+        assertThat(fixtureDatabase.getVersion(), equalTo(2));
+        assertThat(countRows(fixtureDatabase, "people"), equalTo(1));
+
+        ContentValues values = new ContentValues();
+        values.put("name", "Julie");
+        fixtureDatabase.insert("people", null, values);
+        assertThat(countRows(fixtureDatabase, "people"), equalTo(2));
+        fixtureDatabase.close();
+
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + fixture.getAbsolutePath());
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM people");
+        resultSet.next();
+        assertThat(resultSet.getInt(1), equalTo(1));
+        connection.close();
+    }
+
+    private File createFixture() throws Exception {
+        File fixture = File.createTempFile("fixture", ".db");
+        fixture.deleteOnExit();
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + fixture.getAbsolutePath());
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("CREATE TABLE people (name VARCHAR(255))");
+        statement.executeUpdate("INSERT INTO people (name) VALUES ('Chuck')");
+        statement.executeUpdate("PRAGMA user_version = 2");
+        connection.close();
+        return fixture;
+    }
+}
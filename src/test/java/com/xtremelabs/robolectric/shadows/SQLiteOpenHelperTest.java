@@ -2,15 +2,23 @@ package com.xtremelabs.robolectric.shadows;
 
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import com.xtremelabs.robolectric.util.DatabaseConfig;
+import com.xtremelabs.robolectric.util.SQLiteMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
+import java.io.FilenameFilter;
+
+import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
@@ -79,6 +87,92 @@ public class SQLiteOpenHelperTest {
         assertThat(database.isOpen(), equalTo(false));
     }
 
+    @Test
+    public void testHelpersForTheSameNameShareADatabase() throws Exception {
+        helper.getWritableDatabase().execSQL("CREATE TABLE people (name VARCHAR(255))");
+
+        TestOpenHelper sameName = new TestOpenHelper(null, "path", null, 1);
+        SQLiteDatabase database = sameName.getReadableDatabase();
+        assertThat(sameName.onCreateCalled, equalTo(false));
+        assertThat(sameName.onOpenCalled, equalTo(true));
+        assertThat(database.getVersion(), equalTo(1));
+        assertThat(database.rawQuery("SELECT name FROM people", null).getCount(), equalTo(0));
+    }
+
+    @Test
+    public void testHelpersForDifferentNamesHaveSeparateDatabases() throws Exception {
+        SQLiteDatabase database = helper.getWritableDatabase();
+
+        TestOpenHelper otherName = new TestOpenHelper(null, "other path", null, 1);
+        SQLiteDatabase otherDatabase = otherName.getWritableDatabase();
+        assertThat(otherName.onCreateCalled, equalTo(true));
+        assertThat(otherDatabase, not(sameInstance(database)));
+        assertThat(shadowOf(otherDatabase).getConnection(), not(sameInstance(shadowOf(database).getConnection())));
+
+        otherName.close();
+        assertThat(database.isOpen(), equalTo(true));
+    }
+
+    @Test
+    public void testDatabaseTemplates() throws Exception {
+        ShadowSQLiteOpenHelper.setUseDatabaseTemplates(true);
+        String name = "templated-" + System.nanoTime();
+
+        TemplatedOpenHelper first = new TemplatedOpenHelper(name);
+        first.getWritableDatabase().execSQL("INSERT INTO people (name) VALUES ('Julie')");
+        assertThat(first.onCreateCalled, equalTo(true));
+        first.close();
+
+        TemplatedOpenHelper second = new TemplatedOpenHelper(name);
+        Cursor cursor = second.getReadableDatabase().rawQuery("SELECT name FROM people", null);
+        assertThat(second.onCreateCalled, equalTo(false));
+        assertThat(second.onOpenCalled, equalTo(true));
+        assertThat(cursor.getCount(), equalTo(1));
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), equalTo("Chuck"));
+        cursor.close();
+    }
+
+    @Test
+    public void testDatabaseTemplatesAreSkippedWhenTheDatabaseMapCantCopyDatabases() throws Exception {
+        DatabaseConfig.setDatabaseMap(new UncopyableSQLiteMap());
+        ShadowSQLiteOpenHelper.setUseDatabaseTemplates(true);
+        String name = "templated-" + System.nanoTime();
+
+        TemplatedOpenHelper first = new TemplatedOpenHelper(name);
+        assertThat(first.getWritableDatabase().isOpen(), equalTo(true));
+        assertThat(first.onCreateCalled, equalTo(true));
+        first.close();
+
+        TemplatedOpenHelper second = new TemplatedOpenHelper(name);
+        assertThat(second.getWritableDatabase().isOpen(), equalTo(true));
+        assertThat(second.onCreateCalled, equalTo(true));
+    }
+
+    @Test
+    public void testReplacingADatabaseTemplateDeletesTheOldSnapshot() throws Exception {
+        SQLiteDatabase database = helper.getWritableDatabase();
+        String name = "replaced-" + System.nanoTime();
+        shadowOf(database).saveTemplate(name);
+        int snapshotFiles = countSnapshotFiles();
+
+        database.execSQL("CREATE TABLE people (name VARCHAR(255))");
+        shadowOf(database).saveTemplate(name);
+        assertThat(countSnapshotFiles(), equalTo(snapshotFiles));
+
+        SQLiteDatabase copy = ShadowSQLiteDatabase.openDatabaseFromTemplate(name);
+        assertThat(copy.rawQuery("SELECT name FROM people", null).getCount(), equalTo(0));
+    }
+
+    private int countSnapshotFiles() {
+        String[] files = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+            @Override public boolean accept(File dir, String name) {
+                return name.startsWith("robolectric-database") && name.endsWith(".sqlite");
+            }
+        });
+        return files == null ? 0 : files.length;
+    }
+
     private void assertInitialDB(SQLiteDatabase database) {
         assertDatabaseOpened(database);
         assertThat(helper.onCreateCalled, equalTo(true));
@@ -96,6 +190,43 @@ public class SQLiteOpenHelperTest {
         assertThat(helper.onUpgradeCalled, equalTo(false));
     }
 
+    private static class UncopyableSQLiteMap implements DatabaseConfig.DatabaseMap {
+        private final SQLiteMap map = new SQLiteMap();
+
+        public String getDriverClassName() {
+            return map.getDriverClassName();
+        }
+
+        public String getConnectionString() {
+            return map.getConnectionString();
+        }
+
+        public String getScrubSQL(String sql) {
+            return map.getScrubSQL(sql);
+        }
+
+        public String getSelectLastInsertIdentity() {
+            return map.getSelectLastInsertIdentity();
+        }
+
+        public int getResultSetType() {
+            return map.getResultSetType();
+        }
+    }
+
+    private class TemplatedOpenHelper extends TestOpenHelper {
+        public TemplatedOpenHelper(String name) {
+            super(null, name, null, 1);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase database) {
+            super.onCreate(database);
+            database.execSQL("CREATE TABLE people (name VARCHAR(255))");
+            database.execSQL("INSERT INTO people (name) VALUES ('Chuck')");
+        }
+    }
+
     private class TestOpenHelper extends SQLiteOpenHelper {
 
         public boolean onCreateCalled;
@@ -4,6 +4,7 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
 import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import com.xtremelabs.robolectric.internal.RobolectricContext;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -60,4 +61,27 @@ public class StatFsTest {
         assertThat(statsFs.getFreeBlocks(), equalTo(2));
         assertThat(statsFs.getAvailableBlocks(), equalTo(1));
     }
+
+    @Test
+    public void shouldKeepStatsWhenATestOnAnotherThreadResetsWhenStateIsPerThread() throws Exception {
+        ShadowStatFs.registerStats("/tmp", 100, 20, 10);
+
+        RobolectricContext testContext = RobolectricContext.get();
+        RobolectricContext.setPerThread(true);
+        try {
+            RobolectricContext.install(testContext);
+            Thread otherTest = new Thread() {
+                @Override public void run() {
+                    RobolectricContext.reset();
+                    ShadowStatFs.reset();
+                }
+            };
+            otherTest.start();
+            otherTest.join();
+        } finally {
+            RobolectricContext.setPerThread(false);
+        }
+
+        assertThat(new StatFs("/tmp").getBlockCount(), equalTo(100));
+    }
 }
@@ -0,0 +1,75 @@
+package com.xtremelabs.robolectric.util;
+
+import com.xtremelabs.robolectric.WithTestDefaultsRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(WithTestDefaultsRunner.class)
+public class PreparedStatementCacheTest {
+    private Connection connection;
+    private PreparedStatementCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DatabaseConfig.getMemoryConnection();
+        connection.createStatement().execute("CREATE TABLE numbers (value INTEGER)");
+        cache = new PreparedStatementCache(connection, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void shouldPrepareEachStatementOnce() throws Exception {
+        PreparedStatement insert = cache.prepare("INSERT INTO numbers (value) VALUES (?)");
+
+        assertThat(cache.prepare("INSERT INTO numbers (value) VALUES (?)"), sameInstance(insert));
+        assertThat(cache.prepare("DELETE FROM numbers"), not(sameInstance(insert)));
+        assertThat(cache.size(), equalTo(2));
+    }
+
+    @Test
+    public void shouldCloseTheLeastRecentlyUsedStatementWhenFull() throws Exception {
+        PreparedStatement insert = cache.prepare("INSERT INTO numbers (value) VALUES (?)");
+        PreparedStatement delete = cache.prepare("DELETE FROM numbers");
+        cache.prepare("INSERT INTO numbers (value) VALUES (?)");
+
+        cache.prepare("SELECT value FROM numbers");
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.prepare("INSERT INTO numbers (value) VALUES (?)"), sameInstance(insert));
+        assertClosed(delete);
+    }
+
+    @Test
+    public void shouldCloseEveryStatementOnClose() throws Exception {
+        PreparedStatement delete = cache.prepare("DELETE FROM numbers");
+
+        cache.close();
+
+        assertThat(cache.size(), equalTo(0));
+        assertClosed(delete);
+    }
+
+    private void assertClosed(PreparedStatement statement) {
+        try {
+            statement.executeUpdate();
+            fail("statement should have been closed");
+        } catch (SQLException expected) {
+        }
+    }
+}
@@ -3,8 +3,21 @@ package com.xtremelabs.robolectric.util;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SchedulerTest {
     private Transcript transcript;
@@ -149,6 +162,135 @@ public class SchedulerTest {
         assertThat(runnable2.wasRun, equalTo(true));
     }
 
+    @Test
+    public void shouldRunRunnablesPostedForTheSameTimeInTheOrderTheyWerePosted() throws Exception {
+        final List<Integer> order = new ArrayList<Integer>();
+        final int count = 100000;
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            scheduler.postDelayed(new Runnable() {
+                @Override public void run() {
+                    order.add(index);
+                }
+            }, (count - i) % 10);
+        }
+
+        scheduler.advanceBy(10);
+
+        assertThat(order.size(), equalTo(count));
+        for (int i = 1; i < count; i++) {
+            int previous = order.get(i - 1);
+            int current = order.get(i);
+            int previousDelay = (count - previous) % 10;
+            int currentDelay = (count - current) % 10;
+            assertTrue(previousDelay < currentDelay || (previousDelay == currentDelay && previous < current));
+        }
+    }
+
+    @Test
+    public void postAtFrontOfQueueShouldStayAheadOfRunnablesPostedAfterIt() throws Exception {
+        scheduler.post(new AddToTranscript("one"));
+        scheduler.postAtFrontOfQueue(new AddToTranscript("two"));
+        scheduler.postAtFrontOfQueue(new AddToTranscript("three"));
+        scheduler.post(new AddToTranscript("four"));
+
+        scheduler.advanceBy(0);
+        transcript.assertEventsSoFar("three", "two", "one", "four");
+    }
+
+    @Test
+    public void shouldRunARunnableThatRepostsItselfOncePerPeriod() throws Exception {
+        final int[] runs = new int[1];
+        scheduler.postDelayed(new Runnable() {
+            @Override public void run() {
+                runs[0]++;
+                scheduler.postDelayed(this, 10);
+            }
+        }, 10);
+
+        scheduler.advanceBy(60 * 60 * 1000);
+        assertThat(runs[0], equalTo(360000));
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(1));
+        assertThat(scheduler.getCurrentTime(), equalTo(60 * 60 * 1000L));
+
+        scheduler.advanceBy(10);
+        assertThat(runs[0], equalTo(360001));
+    }
+
+    @Test
+    public void shouldCountTasksRunAndTheDeepestTheQueueGot() throws Exception {
+        scheduler.post(new AddToTranscript("one"));
+        scheduler.post(new AddToTranscript("two"));
+        scheduler.postDelayed(new AddToTranscript("three"), 100);
+        scheduler.advanceBy(0);
+
+        assertThat(scheduler.getTaskRunCount(), equalTo(2L));
+        assertThat(scheduler.getMaxQueueDepth(), equalTo(3));
+
+        scheduler.resetStatistics();
+        assertThat(scheduler.getTaskRunCount(), equalTo(0L));
+        assertThat(scheduler.getMaxQueueDepth(), equalTo(1));
+
+        scheduler.advanceBy(100);
+        assertThat(scheduler.getTaskRunCount(), equalTo(1L));
+        transcript.assertEventsSoFar("one", "two", "three");
+    }
+
+    @Test
+    public void shouldHandDueRunnablesToTheExecutorAndWaitForThem() throws Exception {
+        Scheduler workerScheduler = new Scheduler(Scheduler.newWorkerPool(4));
+        workerScheduler.pause();
+        final CountDownLatch allStarted = new CountDownLatch(4);
+        final AtomicInteger finished = new AtomicInteger();
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        for (int i = 0; i < 4; i++) {
+            workerScheduler.post(new Runnable() {
+                @Override public void run() {
+                    threads.add(Thread.currentThread());
+                    allStarted.countDown();
+                    try {
+                        // only returns if all four run at once
+                        assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    finished.incrementAndGet();
+                }
+            });
+        }
+        workerScheduler.postDelayed(new AddToTranscript("later"), 100);
+
+        workerScheduler.advanceBy(0);
+        workerScheduler.waitForIdle();
+        assertThat(finished.get(), equalTo(4));
+        assertThat(threads.size(), equalTo(4));
+        assertFalse(threads.contains(Thread.currentThread()));
+        transcript.assertNoEventsSoFar();
+
+        workerScheduler.advanceBy(100);
+        workerScheduler.waitForIdle();
+        transcript.assertEventsSoFar("later");
+    }
+
+    @Test
+    public void waitForIdleShouldRethrowWhatAWorkerThrew() throws Exception {
+        Scheduler workerScheduler = new Scheduler(Scheduler.newWorkerPool(1));
+        final IllegalStateException failure = new IllegalStateException("boom");
+        workerScheduler.post(new Runnable() {
+            @Override public void run() {
+                throw failure;
+            }
+        });
+
+        try {
+            workerScheduler.waitForIdle();
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(failure, e.getCause());
+        }
+        workerScheduler.waitForIdle();
+    }
+
     private class AddToTranscript implements Runnable {
         private String event;
 